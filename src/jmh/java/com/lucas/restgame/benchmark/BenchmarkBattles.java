@@ -0,0 +1,28 @@
+package com.lucas.restgame.benchmark;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Goblin;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+
+// battles in the shape they have in production, for the persistence benchmarks
+final class BenchmarkBattles {
+
+    private BenchmarkBattles() { }
+
+    // a battle far enough along that its event log is full
+    static Battle midFight() {
+        Battle battle = new Battle(new Player(), new Enemy());
+        battle.addEnemy(new Goblin());
+        battle.setBattleID("5d1f3c8e-0d7b-4a52-9c55-2f4b7f0e9a61");
+        battle.setVersion(42L);
+        while (battle.getLastEventSeq() < Battle.MAX_EVENTS) {
+            battle.getPlayer().setHealth(100);
+            battle.getEnemy(0).setHealth(100);
+            new BattleManager(battle).performTurn(BattleAction.DEFEND);
+        }
+        return battle;
+    }
+}
@@ -0,0 +1,35 @@
+package com.lucas.restgame.benchmark;
+
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Goblin;
+import com.lucas.restgame.model.BattleAction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+cost of an enemy sampling its next action
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnemyActionBenchmark {
+
+    private final Enemy enemy = new Enemy();
+    private final Enemy goblin = new Goblin();
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Benchmark
+    public BattleAction enemy() {
+        return enemy.battleAction(random);
+    }
+
+    @Benchmark
+    public BattleAction goblin() {
+        return goblin.battleAction(random);
+    }
+}
@@ -0,0 +1,42 @@
+package com.lucas.restgame.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucas.restgame.entity.Battle;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+cost of writing and reading a Battle with the ObjectMapper Spring MVC uses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Battle battle;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        battle = BenchmarkBattles.midFight();
+        json = objectMapper.writeValueAsBytes(battle);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(battle);
+    }
+
+    @Benchmark
+    public Battle deserialize() throws IOException {
+        return objectMapper.readValue(json, Battle.class);
+    }
+}
@@ -0,0 +1,84 @@
+package com.lucas.restgame.benchmark;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.AttributeTransformer;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.repository.CompactItemTransformer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+cost of converting a Battle to and from a DynamoDB item, in each storage
+format. only the mapper's table model and the item transformer are
+exercised, nothing is sent over the network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MarshallingBenchmark {
+
+    @Param({"document", "binary"})
+    public String format;
+
+    private DynamoDBMapperTableModel<Battle> tableModel;
+    private AttributeTransformer transformer;
+    private Battle battle;
+    private Map<String, AttributeValue> item;
+
+    @Setup
+    public void setup() {
+        // the client is never called, it only has to exist
+        DynamoDBMapper mapper = new DynamoDBMapper(AmazonDynamoDBClientBuilder
+                .standard()
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration(
+                                "http://localhost:8000",
+                                "us-east-1"))
+                .build());
+        tableModel = mapper.getTableModel(Battle.class);
+        transformer = format.equals("binary")
+                ? new CompactItemTransformer(Set.of("status", "version"))
+                : null;
+        battle = BenchmarkBattles.midFight();
+        item = marshal();
+    }
+
+    @Benchmark
+    public Map<String, AttributeValue> marshal() {
+        Map<String, AttributeValue> converted = tableModel.convert(battle);
+        return transformer == null
+                ? converted
+                : transformer.transform(parameters(converted));
+    }
+
+    @Benchmark
+    public Battle unmarshal() {
+        return tableModel.unconvert(transformer == null
+                ? item
+                : transformer.untransform(parameters(item)));
+    }
+
+    private static AttributeTransformer.Parameters<Battle> parameters(
+            Map<String, AttributeValue> values) {
+        return new AttributeTransformer.Parameters<>() {
+            public Map<String, AttributeValue> getAttributeValues() { return values; }
+            public boolean isPartialUpdate() { return false; }
+            public Class<Battle> getModelClass() { return Battle.class; }
+            public DynamoDBMapperConfig getMapperConfig() { return DynamoDBMapperConfig.DEFAULT; }
+            public String getTableName() { return "battles"; }
+            public String getHashKeyName() { return "battleID"; }
+            public String getRangeKeyName() { return null; }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package com.lucas.restgame.benchmark;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+cost of a turn as the number of enemies grows. should scale linearly, with
+allocation coming only from the events each exchange logs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RaidTurnBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int enemyCount;
+
+    @Param({"ATTACK", "DEFEND"})
+    public BattleAction playerAction;
+
+    private Battle battle;
+    private Player player;
+    private List<Enemy> enemies;
+
+    @Setup
+    public void setup() {
+        player = new Player();
+        enemies = new ArrayList<>();
+        for (int i = 0; i < enemyCount; i++) {
+            enemies.add(new Enemy());
+        }
+        battle = new Battle(player, new ArrayList<>(enemies));
+    }
+
+    @Benchmark
+    public Battle performTurn() {
+        // keep everyone alive so the battle never concludes
+        player.setHealth(1_000_000);
+        for (Enemy enemy : enemies) {
+            enemy.setHealth(100);
+        }
+        return new BattleManager(battle).performTurn(playerAction, enemyCount - 1);
+    }
+}
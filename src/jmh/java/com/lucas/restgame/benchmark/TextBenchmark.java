@@ -0,0 +1,49 @@
+package com.lucas.restgame.benchmark;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/*
+cost of rendering a Battle's retained events as text, from the compiled
+templates and with String.format as getText used to
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextBenchmark {
+
+    private Battle battle;
+
+    @Setup
+    public void setup() {
+        battle = BenchmarkBattles.midFight();
+    }
+
+    @Benchmark
+    public String compiled() {
+        return battle.getText();
+    }
+
+    @Benchmark
+    public String compiledFrench() {
+        return battle.renderText(Locale.FRENCH);
+    }
+
+    @Benchmark
+    public String format() {
+        StringJoiner text = new StringJoiner("\n");
+        for (BattleEvent event : battle.getEvents()) {
+            text.add(String.format(event.getType().getTemplate(), event.getActor(),
+                    event.getTarget(), event.getAction(), event.getAmount()));
+        }
+        return text.toString();
+    }
+}
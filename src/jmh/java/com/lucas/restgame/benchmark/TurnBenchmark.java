@@ -0,0 +1,64 @@
+package com.lucas.restgame.benchmark;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+
+/*
+cost of resolving a single turn for every pair of player and enemy actions.
+the benchmark profile runs with -prof gc, so gc.alloc.rate.norm is the
+bytes allocated per turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TurnBenchmark {
+
+    @Param({"ATTACK", "DEFEND", "DODGE", "SPELL"})
+    public BattleAction playerAction;
+
+    @Param({"ATTACK", "DEFEND", "DODGE", "SPELL"})
+    public BattleAction enemyAction;
+
+    private Battle battle;
+    private Player player;
+    private Enemy enemy;
+
+    // always picks the same action, so each run measures one action pair
+    private static class FixedEnemy extends Enemy {
+        private final BattleAction action;
+
+        FixedEnemy(BattleAction action) {
+            this.action = action;
+        }
+
+        @Override
+        public BattleAction battleAction(RandomGenerator random) {
+            return action;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        player = new Player();
+        enemy = new FixedEnemy(enemyAction);
+        battle = new Battle(player, enemy);
+    }
+
+    @Benchmark
+    public Battle performTurn() {
+        // keep both combatants alive so the battle never concludes
+        player.setHealth(100);
+        enemy.setHealth(100);
+        return new BattleManager(battle).performTurn(playerAction);
+    }
+}
@@ -0,0 +1,188 @@
+package com.lucas.restgame.benchmark;
+
+import com.lucas.restgame.RestGameApplication;
+import com.lucas.restgame.config.VirtualThreads;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.repository.BattleConflictException;
+import com.lucas.restgame.repository.BattleItemCodec;
+import com.lucas.restgame.repository.BattleRepository;
+import com.lucas.restgame.repository.BattleStore;
+import com.lucas.restgame.repository.InMemoryBattleStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+turns per second through POST /battles/{id} with requests on Tomcat's
+worker pool versus virtual threads. write-behind is off and every store
+call sleeps for storeLatencyMs, like a DynamoDB round trip, so each turn
+blocks its request for a write. the client shares the machine, so run it
+on enough cores that the server is the bottleneck. the virtual mode needs
+Java 21.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TurnEndpointBenchmark {
+
+    // turns in flight at once, one per battle, more than Tomcat's 200 workers
+    private static final int CONCURRENCY = 400;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"5"})
+    public int storeLatencyMs;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest[] turns;
+
+    // the in-memory store, slowed down to a network round trip
+    public static class SlowStoreConfig {
+
+        @Bean
+        @Primary
+        public BattleStore slowBattleStore(
+                BattleItemCodec codec,
+                @Value("${benchmark.store.latency-ms}") long latencyMillis) {
+            return new SlowBattleStore(new InMemoryBattleStore(codec), latencyMillis);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        boolean virtual = threads.equals("virtual");
+        if (virtual && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("The virtual mode needs Java 21 or later");
+        }
+        context = new SpringApplicationBuilder(RestGameApplication.class, SlowStoreConfig.class)
+                .profiles("memory")
+                .properties(
+                        "server.port=0",
+                        // room for every connection to open at once
+                        "server.tomcat.accept-count=" + CONCURRENCY,
+                        "battle.threads.virtual=" + virtual,
+                        "battle.cache.write-behind=false",
+                        "benchmark.store.latency-ms=" + storeLatencyMs,
+                        "logging.level.root=WARN")
+                .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        BattleRepository battleRepository = context.getBean(BattleRepository.class);
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        turns = new HttpRequest[CONCURRENCY];
+        for (int i = 0; i < CONCURRENCY; i++) {
+            Player player = new Player();
+            // never dies, so the battle never concludes
+            player.setHealth(Integer.MAX_VALUE);
+            Battle battle = battleRepository.createBattle(new Battle(player, new Enemy()));
+            turns[i] = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/battles/" + battle.getBattleID()))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"action\":\"DEFEND\"}"))
+                    .build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public void performTurns() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[CONCURRENCY];
+        for (int i = 0; i < CONCURRENCY; i++) {
+            responses[i] = client.sendAsync(turns[i], HttpResponse.BodyHandlers.discarding())
+                    .thenAccept(response -> {
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException("Turn failed with " + response.statusCode());
+                        }
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+    }
+
+    private static final class SlowBattleStore implements BattleStore {
+
+        private final BattleStore store;
+        private final long latencyMillis;
+
+        SlowBattleStore(BattleStore store, long latencyMillis) {
+            this.store = store;
+            this.latencyMillis = latencyMillis;
+        }
+
+        private void roundTrip() {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public BattlePage getBattles(BattleStatus status, int limit, String nextToken) {
+            roundTrip();
+            return store.getBattles(status, limit, nextToken);
+        }
+
+        @Override
+        public Iterable<Battle> scanAllBattles() {
+            return store.scanAllBattles();
+        }
+
+        @Override
+        public Battle createBattle(Battle battle) {
+            roundTrip();
+            return store.createBattle(battle);
+        }
+
+        @Override
+        public Battle getBattleByID(String battleID) {
+            roundTrip();
+            return store.getBattleByID(battleID);
+        }
+
+        @Override
+        public Map<String, Battle> getBattlesByID(Collection<String> battleIDs) {
+            roundTrip();
+            return store.getBattlesByID(battleIDs);
+        }
+
+        @Override
+        public boolean deleteBattleByID(String battleID) {
+            roundTrip();
+            return store.deleteBattleByID(battleID);
+        }
+
+        @Override
+        public String updateBattle(String battleID, Battle battle)
+                throws BattleConflictException {
+            roundTrip();
+            return store.updateBattle(battleID, battle);
+        }
+    }
+}
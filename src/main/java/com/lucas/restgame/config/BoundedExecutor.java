@@ -0,0 +1,93 @@
+package com.lucas.restgame.config;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+an executor bounded in both threads and queued tasks: once the queue is
+full, tasks are rejected with a RejectedExecutionException rather than
+piling up. with virtual threads, every task gets its own virtual thread
+instead, and the same total of threads plus queue bounds how many tasks
+can be in flight at once.
+ */
+public class BoundedExecutor implements Executor {
+
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService virtualThreads;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    public BoundedExecutor(String name, int threads, int queueCapacity, boolean virtual) {
+        this.maxInFlight = threads + queueCapacity;
+        if (virtual) {
+            this.pool = null;
+            this.virtualThreads = VirtualThreads.newPerTaskExecutor();
+            this.inFlight = new Semaphore(maxInFlight);
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        this.virtualThreads = null;
+        this.inFlight = null;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (pool != null) {
+            pool.execute(command);
+            return;
+        }
+        if (!inFlight.tryAcquire()) {
+            throw new RejectedExecutionException("Too many tasks in flight");
+        }
+        try {
+            virtualThreads.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    // tasks waiting for a thread, always none with virtual threads
+    public int getQueuedCount() {
+        return pool != null ? pool.getQueue().size() : 0;
+    }
+
+    public int getActiveCount() {
+        return pool != null
+                ? pool.getActiveCount()
+                : maxInFlight - inFlight.availablePermits();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        } else {
+            virtualThreads.shutdown();
+        }
+    }
+}
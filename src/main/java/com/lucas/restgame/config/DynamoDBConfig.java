@@ -1,14 +1,23 @@
 package com.lucas.restgame.config;
 
 import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.client.builder.AwsClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.metrics.ConsumedCapacityHandler;
+import com.lucas.restgame.repository.CompactItemTransformer;
 import org.socialsignin.spring.data.dynamodb.repository.config.EnableDynamoDBRepositories;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.Set;
 
 @Configuration
 @EnableDynamoDBRepositories
@@ -18,21 +27,30 @@ public class DynamoDBConfig {
     @Value("${amazon.dynamodb.endpoint}")
     private String amazonDynamoDBEndpoint;
 
+    @Value("${amazon.aws.region:us-east-1}")
+    private String amazonAWSRegion;
+
     @Value("${amazon.aws.accesskey}")
     private String amazonAWSAccessKey;
 
     @Value("${amazon.aws.secretkey}")
     private String amazonAWSSecretKey;
 
+    @Value("${battle.storage.format:document}")
+    private String storageFormat;
+
     @Bean
-    public AmazonDynamoDB amazonDynamoDB() {
+    public AmazonDynamoDB amazonDynamoDB(BattleMetrics battleMetrics) {
         return AmazonDynamoDBClientBuilder
             .standard()
             .withEndpointConfiguration(
                 new AwsClientBuilder.EndpointConfiguration(
-                    "http://localhost:8000",
-                    "us-east-1")
+                    amazonDynamoDBEndpoint,
+                    amazonAWSRegion)
                 )
+            .withCredentials(
+                new AWSStaticCredentialsProvider(amazonAWSCredentials()))
+            .withRequestHandlers(new ConsumedCapacityHandler(battleMetrics))
             .build();
     }
 
@@ -41,4 +59,29 @@ public class DynamoDBConfig {
         return new BasicAWSCredentials(
             amazonAWSAccessKey, amazonAWSSecretKey);
     }
+
+    /*
+    the mapper every repository uses. in the binary storage format, a
+    battle's state is packed into one attribute, leaving only its key, the
+    status index key, the version and the TTL attribute at the top level.
+    saves then replace the whole item, which also clears out attributes left
+    over from the document format. items in either format can be read in
+    both modes.
+     */
+    @Bean
+    @Primary
+    public DynamoDBMapper dynamoDBMapper(AmazonDynamoDB amazonDynamoDB) {
+        if (storageFormat.equalsIgnoreCase("document")) {
+            return new DynamoDBMapper(amazonDynamoDB);
+        } else if (storageFormat.equalsIgnoreCase("binary")) {
+            return new DynamoDBMapper(amazonDynamoDB,
+                DynamoDBMapperConfig.builder()
+                    .withSaveBehavior(DynamoDBMapperConfig.SaveBehavior.PUT)
+                    .build(),
+                new CompactItemTransformer(
+                        Set.of("status", "statusShard", "version", "expiresAt")));
+        }
+        throw new IllegalArgumentException(
+            "battle.storage.format must be document or binary, not " + storageFormat);
+    }
 }
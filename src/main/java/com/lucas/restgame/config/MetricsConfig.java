@@ -0,0 +1,38 @@
+package com.lucas.restgame.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucas.restgame.metrics.BattleMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+@Configuration
+public class MetricsConfig {
+
+    /*
+    replaces Spring Boot's json converter with one that times every body it
+    writes. it writes straight to the response, so the time includes
+    flushing to the client.
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+            ObjectMapper objectMapper, BattleMetrics battleMetrics) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+                    throws IOException, HttpMessageNotWritableException {
+                long start = System.nanoTime();
+                try {
+                    super.writeInternal(object, type, outputMessage);
+                } finally {
+                    battleMetrics.recordJsonWrite(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+}
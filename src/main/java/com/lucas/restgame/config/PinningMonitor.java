@@ -0,0 +1,74 @@
+package com.lucas.restgame.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+watches for virtual threads pinned to their carrier for longer than the
+threshold, typically by blocking inside a synchronized block, and logs
+where it happened. it listens to the JVM's own flight recorder event, so
+it costs nothing until a pin is long enough to report.
+ */
+public class PinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(PinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    // frames shown per report, enough to get past the JDK into our code
+    private static final int REPORTED_FRAMES = 8;
+
+    private final RecordingStream stream;
+    private final LongAdder pinned = new LongAdder();
+
+    public PinningMonitor(long thresholdMillis) {
+        this.stream = new RecordingStream();
+        stream.enable(PINNED_EVENT)
+                .withThreshold(Duration.ofMillis(thresholdMillis))
+                .withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+    }
+
+    private void report(RecordedEvent event) {
+        pinned.increment();
+        log.warn("Virtual thread {} was pinned for {} ms{}",
+                event.getThread() != null ? event.getThread().getJavaName() : "?",
+                event.getDuration().toMillis(),
+                describe(event.getStackTrace()));
+    }
+
+    private static String describe(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+        StringBuilder description = new StringBuilder();
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        for (int i = 0; i < Math.min(REPORTED_FRAMES, frames.size()); i++) {
+            RecordedFrame frame = frames.get(i);
+            description.append("\n\tat ")
+                    .append(frame.getMethod().getType().getName())
+                    .append('.')
+                    .append(frame.getMethod().getName())
+                    .append(':')
+                    .append(frame.getLineNumber());
+        }
+        return description.toString();
+    }
+
+    // pins reported since startup
+    public long getPinnedCount() {
+        return pinned.sum();
+    }
+
+    public void close() {
+        stream.close();
+    }
+}
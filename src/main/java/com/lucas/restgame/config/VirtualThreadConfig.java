@@ -0,0 +1,35 @@
+package com.lucas.restgame.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/*
+battle.threads.virtual=true hands every request to its own virtual thread
+instead of Tomcat's worker pool, so a request blocked on the store no
+longer holds up a platform thread. needs Java 21, and startup fails on
+anything older rather than quietly running on the pool.
+
+a virtual thread that blocks inside a synchronized block pins its carrier
+thread, which undoes the benefit. battle locks are ReentrantLocks for that
+reason, and PinningMonitor reports any pinning that slips through.
+ */
+@Configuration
+@ConditionalOnProperty(name = "battle.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadRequests() {
+        return protocolHandler ->
+                protocolHandler.setExecutor(VirtualThreads.newPerTaskExecutor());
+    }
+
+    @Bean
+    public PinningMonitor pinningMonitor(
+            @Value("${battle.threads.pinned-threshold-ms:20}") long thresholdMillis) {
+        return new PinningMonitor(thresholdMillis);
+    }
+}
@@ -0,0 +1,43 @@
+package com.lucas.restgame.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+virtual threads are final in Java 21, but the project still builds for 17,
+so they are reached through reflection and only when switched on.
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_EXECUTOR = findNewExecutor();
+
+    private VirtualThreads() { }
+
+    private static Method findNewExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    // starts a new virtual thread for every task
+    public static ExecutorService newPerTaskExecutor() throws IllegalStateException {
+        if (NEW_EXECUTOR == null) {
+            throw new IllegalStateException(
+                    "Virtual threads need Java 21 or later, this is Java "
+                            + Runtime.version().feature());
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create a virtual thread executor", e);
+        }
+    }
+}
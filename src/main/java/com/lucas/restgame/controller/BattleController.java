@@ -1,82 +1,360 @@
 package com.lucas.restgame.controller;
 
 import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
 import com.lucas.restgame.model.BattleAction;
-import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleReplay;
 import com.lucas.restgame.model.BattleRequest;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.BattleTurnRequest;
+import com.lucas.restgame.model.EnemyArchetypes;
+import com.lucas.restgame.model.TurnDelta;
+import com.lucas.restgame.model.TurnResult;
+import com.lucas.restgame.repository.BattleCache;
+import com.lucas.restgame.repository.BattleConflictException;
 import com.lucas.restgame.repository.BattleRepository;
+import com.lucas.restgame.service.BattleExporter;
+import com.lucas.restgame.service.BattleService;
+import com.lucas.restgame.service.BattleSpawner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
+/*
+handlers that touch the store return futures, so the request thread is
+handed back as soon as the call is queued, rather than waiting out the
+round trip. the response is written once the future completes.
+ */
 @RestController
 public class BattleController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    // battle text can be in any language, and text/plain defaults to ISO-8859-1
+    private static final String TEXT_UTF8_VALUE = "text/plain;charset=UTF-8";
+    private static final String RETURN_MINIMAL = "return=minimal";
+
     @Autowired
     private BattleRepository battleRepository;
 
+    @Autowired
+    private BattleCache battleCache;
+
+    @Autowired
+    private BattleService battleService;
+
+    @Autowired
+    private BattleSpawner battleSpawner;
+
+    @Autowired
+    private BattleExporter battleExporter;
+
     // TODO this makes more sense as a PUT!
     /*
     it's totally non-RESTful, but battle lookup based on Player/auth token
     instead of battleID could be more secure and make combat easier
      */
+    /*
+    responds with the whole battle, or with only what the turn changed to
+    clients that send Prefer: return=minimal
+     */
     @PostMapping("/battles/{id}")
-    public Battle performBattleAction(
+    public CompletableFuture<ResponseEntity<?>> performBattleAction(
             @PathVariable("id") String battleID,
+            @RequestHeader(value = "Prefer", required = false)
+            String prefer,
             @RequestBody BattleRequest request) {
-        Battle battle = battleRepository.getBattleByID(battleID);
-        if (battle == null) {
-            throw new ResponseStatusException(
-                    HttpStatus.NOT_FOUND,
-                    String.format(
-                            "Battle with ID %s does not exist",
-                            battleID
-                    )
-            );
-        }
-        BattleManager battleManager = new BattleManager(battle);
         BattleAction action = request.getAction();
-        int target = request.getTarget(); // unused for now
-        Battle updatedBattle = battleManager.performTurn(action);
-        // should updateBattle return a Battle?
-        battleRepository.updateBattle(battleID, updatedBattle);
-        return updatedBattle;
+        int target = request.getTarget();
+        if (prefersMinimal(prefer)) {
+            return async(() -> battleService.performTurnDeltaAsync(battleID, action, target))
+                    .thenApply(delta -> ResponseEntity.ok()
+                            .header("Preference-Applied", RETURN_MINIMAL)
+                            .varyBy("Prefer")
+                            .body(found(delta, battleID)));
+        }
+        return async(() -> battleService.performTurnAsync(battleID, action, target))
+                .thenApply(updatedBattle -> ResponseEntity.ok()
+                        .varyBy("Prefer")
+                        .body(found(updatedBattle, battleID)));
+    }
+
+    /*
+    plays several turns on one battle in a single request. responds 404 if
+    the battle does not exist, and 409 if it kept conflicting, in which case
+    none of the turns were saved.
+     */
+    @PostMapping("/battles/{id}/turns")
+    public CompletableFuture<List<TurnResult>> performBattleTurns(
+            @PathVariable("id") String battleID,
+            @RequestBody List<BattleRequest> requests) {
+        return async(() -> battleService.performTurnSequenceAsync(battleID, requests))
+                .thenApply(results -> found(results, battleID));
+    }
+
+    // plays turns across many battles, reporting each turn's own outcome
+    @PostMapping("/battles/turns")
+    public CompletableFuture<List<TurnResult>> performBatchTurns(
+            @RequestBody List<BattleTurnRequest> requests) {
+        return async(() -> battleService.performTurnBatchAsync(requests));
     }
 
     @GetMapping("/battles")
-    public List<Battle> getAllBattles(
+    public CompletableFuture<BattlePage> getAllBattles(
             @RequestParam(value = "active", defaultValue = "false")
-            boolean active) {
-        if (active) {
-            return battleRepository.getActiveBattles();
-        } else {
-            return battleRepository.getAllBattles();
+            boolean active,
+            @RequestParam(value = "limit", defaultValue = "25")
+            int limit,
+            @RequestParam(value = "nextToken", required = false)
+            String nextToken) {
+        BattleStatus status = active ? BattleStatus.ONGOING : null;
+        return async(() -> battleRepository.getBattlesAsync(status, limit, nextToken));
+    }
+
+    /*
+    exports every battle as newline-delimited json, see BattleExporter.
+    responds 503 if too many exports are already running.
+     */
+    @GetMapping(value = "/battles/stream", produces = NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamBattles() {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(BattleExporter.NDJSON)
+                    .body(battleExporter.export());
+        } catch (RejectedExecutionException e) {
+            throw toResponseStatus(e);
         }
     }
 
+    /*
+    tagged with the battle's version and last event, which change whenever
+    anything in it does. a client that already has that state gets a 304
+    without the battle being serialized again.
+     */
     @GetMapping("/battles/{id}")
-    public Battle getBattleByID(@PathVariable("id") String battleID) {
-        return battleRepository.getBattleByID(battleID);
+    public CompletableFuture<ResponseEntity<Battle>> getBattleByID(
+            @PathVariable("id") String battleID,
+            @RequestHeader(value = "If-None-Match", required = false)
+            String ifNoneMatch) {
+        return async(() -> battleCache.readAsync(battleID, Battle::snapshot)).thenApply(battle -> {
+            if (battle == null) {
+                return ResponseEntity.ok(null);
+            }
+            String etag = etagOf(battle);
+            if (matchesETag(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(battle);
+        });
+    }
+
+    /*
+    returns the events after the given sequence number, so clients can keep
+    up with a battle without downloading its whole log every turn. only the
+    most recent Battle.MAX_EVENTS events are retained.
+     */
+    @GetMapping("/battles/{id}/events")
+    public CompletableFuture<List<BattleEvent>> getBattleEvents(
+            @PathVariable("id") String battleID,
+            @RequestParam(value = "after", defaultValue = "0")
+            long after) {
+        return async(() -> battleCache.readAsync(battleID, battle -> battle.getEventsAfter(after)))
+                .thenApply(events -> found(events, battleID));
+    }
+
+    /*
+    the retained events as plain text, one per line, in the best language
+    of the Accept-Language header that there are templates for. anything
+    without its own templates, or no header at all, gets English.
+     */
+    @GetMapping(value = "/battles/{id}/text", produces = TEXT_UTF8_VALUE)
+    public CompletableFuture<String> getBattleText(
+            @PathVariable("id") String battleID,
+            @RequestHeader(value = "Accept-Language", required = false)
+            String acceptLanguage) {
+        Locale locale = locale(acceptLanguage);
+        return async(() -> battleCache.readAsync(battleID, battle -> battle.renderText(locale)))
+                .thenApply(text -> found(text, battleID));
+    }
+
+    /*
+    the same events as a server-sent event stream, pushed as turns are
+    played. the stream ends when the battle concludes. a client that
+    reconnects with Last-Event-ID resumes after the last event it received.
+     */
+    @GetMapping(value = "/battles/{id}/events",
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBattleEvents(
+            @PathVariable("id") String battleID,
+            @RequestHeader(value = "Last-Event-ID", required = false)
+            Long lastEventID,
+            @RequestParam(value = "after", defaultValue = "0")
+            long after) {
+        return found(battleService.subscribe(battleID,
+                lastEventID != null ? lastEventID : after), battleID);
+    }
+
+    /*
+    re-runs the battle from the state it was created in, turn by turn, and
+    checks every turn and the stored battle against what was recorded.
+    only battles created with journaling on have a history to replay.
+    responds 404 if the battle does not exist.
+     */
+    @GetMapping("/battles/{id}/replay")
+    public CompletableFuture<BattleReplay> replayBattle(
+            @PathVariable("id") String battleID,
+            @RequestParam(value = "steps", defaultValue = "true")
+            boolean steps) {
+        return async(() -> battleRepository.replayBattleAsync(battleID, steps))
+                .thenApply(replay -> found(replay, battleID));
     }
 
     @PostMapping("/battles")
-    public Battle createBattle(@RequestBody Battle battle) {
-        return battleRepository.createBattle(battle);
+    public CompletableFuture<Battle> createBattle(@RequestBody Battle battle) {
+        return async(() -> battleRepository.createBattleAsync(battle));
+    }
+
+    /*
+    a new battle against one enemy of the archetype, usually handed out from
+    a pool of battles created ahead of time. responds 400 for an unknown
+    archetype.
+     */
+    @PostMapping("/battles/spawn")
+    public CompletableFuture<Battle> spawnBattle(
+            @RequestParam(value = "archetype", defaultValue = EnemyArchetypes.DEFAULT_ID)
+            String archetype) {
+        return async(() -> battleSpawner.spawnAsync(archetype));
     }
 
     @DeleteMapping("/battles/{id}")
-    public Boolean deleteBattleByID(@PathVariable("id") String battleID) {
-        return battleRepository.deleteBattleByID(battleID);
+    public CompletableFuture<Boolean> deleteBattleByID(@PathVariable("id") String battleID) {
+        battleCache.evict(battleID);
+        return async(() -> battleRepository.deleteBattleByIDAsync(battleID));
     }
 
     @PutMapping("/battles/{id}")
     public String updateBattle(
             @PathVariable("id") String battleID,
             @RequestBody Battle battle) {
-        return battleRepository
-                .updateBattle(battleID, battle);
+        try {
+            return battleCache.updateBattle(battleID, battle);
+        } catch (BattleConflictException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    private static boolean prefersMinimal(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            // ignore any parameters after the preference itself
+            int end = preference.indexOf(';');
+            String name = (end < 0 ? preference : preference.substring(0, end)).trim();
+            if (name.equalsIgnoreCase(RETURN_MINIMAL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String etagOf(Battle battle) {
+        long version = battle.getVersion() != null ? battle.getVersion() : 0;
+        return "\"" + version + "." + battle.getLastEventSeq() + "\"";
+    }
+
+    // weak comparison, as If-None-Match calls for
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the most preferred language, or Locale.ROOT for none, * or a malformed header
+    private static Locale locale(String acceptLanguage) {
+        if (acceptLanguage == null || acceptLanguage.isBlank()) {
+            return Locale.ROOT;
+        }
+        try {
+            List<Locale.LanguageRange> ranges = Locale.LanguageRange.parse(acceptLanguage);
+            if (ranges.isEmpty() || ranges.get(0).getRange().equals("*")) {
+                return Locale.ROOT;
+            }
+            return Locale.forLanguageTag(ranges.get(0).getRange());
+        } catch (IllegalArgumentException e) {
+            return Locale.ROOT;
+        }
+    }
+
+    private static <T> T found(T value, String battleID) {
+        if (value == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.NOT_FOUND,
+                    String.format(
+                            "Battle with ID %s does not exist",
+                            battleID
+                    )
+            );
+        }
+        return value;
+    }
+
+    /*
+    starts an async call and turns its failures into the responses the
+    blocking handlers gave. a failure can come from starting the call, e.g.
+    a full store queue, or from any of its stages.
+     */
+    private static <T> CompletableFuture<T> async(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.exceptionally(e -> {
+            throw toResponseStatus(e);
+        });
+    }
+
+    private static RuntimeException toResponseStatus(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null
+                ? e.getCause()
+                : e;
+        if (cause instanceof IllegalArgumentException) {
+            return new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, cause.getMessage());
+        } else if (cause instanceof BattleConflictException) {
+            return new ResponseStatusException(
+                    HttpStatus.CONFLICT, cause.getMessage());
+        } else if (cause instanceof RejectedExecutionException) {
+            return new ResponseStatusException(
+                    HttpStatus.SERVICE_UNAVAILABLE, "Too many requests in flight");
+        } else if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new CompletionException(cause);
     }
 }
@@ -0,0 +1,104 @@
+package com.lucas.restgame.controller;
+
+import com.lucas.restgame.config.PinningMonitor;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.metrics.PrometheusWriter;
+import com.lucas.restgame.repository.BattleArchive;
+import com.lucas.restgame.repository.BattleCache;
+import com.lucas.restgame.repository.BattleLocks;
+import com.lucas.restgame.repository.StoreExecutor;
+import com.lucas.restgame.service.BattleArchiver;
+import com.lucas.restgame.service.BattlePublisher;
+import com.lucas.restgame.service.BattleSpawner;
+import com.lucas.restgame.service.TurnExecutor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/*
+serves every metric in the Prometheus text format for scraping. gauges are
+read from their components at scrape time, so nothing is sampled in
+between.
+ */
+@RestController
+public class MetricsController {
+
+    @Autowired
+    private BattleMetrics battleMetrics;
+
+    @Autowired
+    private BattleCache battleCache;
+
+    @Autowired
+    private BattleLocks battleLocks;
+
+    @Autowired
+    private BattlePublisher battlePublisher;
+
+    @Autowired
+    private StoreExecutor storeExecutor;
+
+    @Autowired
+    private TurnExecutor turnExecutor;
+
+    @Autowired
+    private BattleArchive battleArchive;
+
+    @Autowired
+    private BattleArchiver battleArchiver;
+
+    @Autowired
+    private BattleSpawner battleSpawner;
+
+    // only there with virtual threads on
+    @Autowired
+    private ObjectProvider<PinningMonitor> pinningMonitor;
+
+    @GetMapping(value = "/metrics", produces = PrometheusWriter.CONTENT_TYPE)
+    public ResponseEntity<String> scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        battleMetrics.writeTo(writer);
+        writer.gauge("battle_sessions_active",
+                "Battles held in memory, i.e. played recently", battleCache.size());
+        writer.gauge("battle_cache_dirty",
+                "Cached battles with changes not yet written", battleCache.dirtyCount());
+        writer.counter("battle_cache_discarded_total",
+                "Battles written behind whose changes were discarded after a conflict",
+                battleCache.getDiscardedBattles());
+        writer.counter("battle_cache_discarded_turns_total",
+                "Acknowledged turns lost with discarded battles", battleCache.getDiscardedTurns());
+        writer.counter("battle_lock_acquisitions_total",
+                "Battle lock acquisitions", battleLocks.getAcquisitions());
+        writer.counter("battle_lock_contentions_total",
+                "Battle lock acquisitions that had to wait", battleLocks.getContentions());
+        writer.gauge("battle_lock_waiting",
+                "Threads waiting on a battle lock", battleLocks.getQueueLength());
+        writer.gauge("battle_event_subscribers",
+                "Open battle event streams", battlePublisher.getSubscriberCount());
+        writer.counter("battle_event_subscribers_dropped_total",
+                "Event streams closed for falling behind", battlePublisher.getDroppedCount());
+        writer.gauge("battle_store_io_active",
+                "Store calls running", storeExecutor.getActiveCount());
+        writer.gauge("battle_store_io_queued",
+                "Store calls waiting for a thread", storeExecutor.getQueuedCount());
+        writer.gauge("battle_turn_active",
+                "Loaded async turns being played", turnExecutor.getActiveCount());
+        writer.gauge("battle_turn_queued",
+                "Loaded async turns waiting for a thread", turnExecutor.getQueuedCount());
+        writer.gauge("battle_archive_battles",
+                "Concluded battles in the archive", battleArchive.size());
+        writer.counter("battle_archive_moved_total",
+                "Battles moved from the store to the archive", battleArchiver.getArchivedCount());
+        writer.gauge("battle_spawn_pooled",
+                "Battles created ahead of time, waiting to be spawned", battleSpawner.getPooledCount());
+        writer.counter("battle_spawn_pool_hits_total",
+                "Spawns served from a pool", battleSpawner.getPoolHits());
+        writer.counter("battle_spawn_pool_misses_total",
+                "Spawns that found their pool empty", battleSpawner.getPoolMisses());
+        pinningMonitor.ifAvailable(monitor -> writer.counter("battle_virtual_threads_pinned_total",
+                "Virtual threads pinned past the reporting threshold", monitor.getPinnedCount()));
+        return ResponseEntity.ok(writer.toString());
+    }
+}
@@ -1,22 +1,43 @@
 package com.lucas.restgame.entity;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.lucas.restgame.model.BattleRandom;
 import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.BattleText;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
 
 @DynamoDBTable(tableName = "battles")
 public class Battle {
 
+    /*
+    keyed by getStatusShard and projecting only keys, so the index stays
+    small and no status piles up in one partition. listings query it a
+    shard at a time and load the battles it names.
+     */
+    public static final String STATUS_INDEX = "status-index";
+    public static final int STATUS_SHARDS = 16;
+    // only the most recent events are kept, so items stay small in long fights
+    public static final int MAX_EVENTS = 50;
+
     private String battleID;
     private Player player;
     private List<Enemy> enemies;
     private BattleStatus status;
     private int priority;
-    private String text;
+    private final ArrayDeque<BattleEvent> events = new ArrayDeque<>();
+    private long lastEventSeq;
+    private long turnCount;
+    private final BattleRandom random =
+            new BattleRandom(ThreadLocalRandom.current().nextLong());
+    private Long version;
+    private Long expiresAt;
 
     // temporary constructors for debug purposes
     public Battle(Player player, Enemy enemy) {
@@ -25,7 +46,6 @@ public class Battle {
         this.enemies.add(enemy);
         this.status = BattleStatus.ONGOING;
         this.priority = -1;
-        this.text = "";
     }
 
     public Battle(Player player, List<Enemy> enemies) {
@@ -33,7 +53,6 @@ public class Battle {
         this.enemies = enemies;
         this.status = BattleStatus.ONGOING;
         this.priority = -1;
-        this.text = "";
     }
 
     public Battle() {
@@ -42,7 +61,31 @@ public class Battle {
         this.enemies.add(new Enemy());
         this.status = BattleStatus.ONGOING;
         this.priority = -1;
-        this.text = "";
+    }
+
+    /*
+    a copy that later turns on this battle leave alone, for handing out
+    while the battle itself stays cached and keeps being played. events are
+    shared, since they never change once logged. take it under the battle's
+    lock so it doesn't catch a turn halfway through.
+     */
+    public Battle snapshot() {
+        List<Enemy> enemyCopies = new ArrayList<>(this.enemies.size());
+        for (Enemy enemy : this.enemies) {
+            enemyCopies.add(enemy.copy());
+        }
+        Battle copy = new Battle(this.player.copy(), enemyCopies);
+        copy.battleID = this.battleID;
+        copy.status = this.status;
+        copy.priority = this.priority;
+        copy.events.addAll(this.events);
+        copy.lastEventSeq = this.lastEventSeq;
+        copy.turnCount = this.turnCount;
+        copy.random.setSeed(this.random.getSeed());
+        copy.random.setPosition(this.random.getPosition());
+        copy.version = this.version;
+        copy.expiresAt = this.expiresAt;
+        return copy;
     }
 
     @DynamoDBHashKey
@@ -54,6 +97,21 @@ public class Battle {
         this.battleID = battleID;
     }
 
+    // incremented on every save, which fails if the stored version differs
+    @DynamoDBVersionAttribute
+    public Long getVersion() { return this.version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    /*
+    when DynamoDB may delete a concluded battle, in epoch seconds, as the
+    table's TTL attribute. null while the battle is ongoing, unless it is
+    still waiting unplayed in a spawn pool.
+     */
+    @DynamoDBAttribute
+    @JsonIgnore
+    public Long getExpiresAt() { return this.expiresAt; }
+    public void setExpiresAt(Long expiresAt) { this.expiresAt = expiresAt; }
+
     @DynamoDBAttribute
     @DynamoDBTyped(DynamoDBMapperFieldModel.DynamoDBAttributeType.M)
     public Player getPlayer() {
@@ -73,29 +131,114 @@ public class Battle {
     public BattleStatus getStatus() { return this.status; }
     public void setStatus(BattleStatus status) { this.status = status; }
 
+    /*
+    the status index's key, the status and one of STATUS_SHARDS buckets,
+    e.g. ONGOING#3. the bucket comes from the random seed, which a battle
+    has from the start, unlike its ID. it's derived, so the stored copy is
+    ignored when loading.
+     */
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = STATUS_INDEX)
+    @JsonIgnore
+    public String getStatusShard() {
+        return statusShard(this.status, Math.floorMod(this.random.getSeed(), STATUS_SHARDS));
+    }
+    public void setStatusShard(String statusShard) { }
+
+    public static String statusShard(BattleStatus status, int shard) {
+        return status + "#" + shard;
+    }
+
+    /*
+    who moves first next turn: -1 for nobody, 0 for the player, or i + 1 for
+    the enemy at index i
+     */
     @DynamoDBAttribute
     public int getPriority() { return this.priority; }
     public void setPriority(int priority) throws IllegalArgumentException {
-        if (priority > 1 || priority < -1) {
-            throw new IllegalArgumentException("Valid values: -1, 0, 1");
+        if (priority < -1) {
+            throw new IllegalArgumentException("Valid values: -1, 0, or an enemy index + 1");
         }
         this.priority = priority;
     }
 
     @DynamoDBAttribute
-    public String getText() { return this.text; }
-    public void setText(String text) { this.text = text; }
+    @DynamoDBTyped(DynamoDBMapperFieldModel.DynamoDBAttributeType.L)
+    public List<BattleEvent> getEvents() { return new ArrayList<>(this.events); }
+    public void setEvents(List<BattleEvent> events) {
+        this.events.clear();
+        if (events != null) {
+            events.forEach(this::keepEvent);
+        }
+    }
+
+    // sequence number of the most recent event, 0 before the first
+    @DynamoDBAttribute
+    public long getLastEventSeq() { return this.lastEventSeq; }
+    public void setLastEventSeq(long lastEventSeq) { this.lastEventSeq = lastEventSeq; }
+
+    /*
+    number of turns played. a battle rebuilt from the TurnLog replays the
+    turns numbered after the count in its snapshot.
+     */
+    @DynamoDBAttribute
+    public long getTurnCount() { return this.turnCount; }
+    public void setTurnCount(long turnCount) { this.turnCount = turnCount; }
+
+    /*
+    the generator all of this battle's turns draw from. its seed and position
+    are saved with the battle, so a turn can be replayed from any saved copy.
+    they're kept out of responses so clients can't predict the next roll.
+     */
+    @DynamoDBIgnore
+    @JsonIgnore
+    public BattleRandom getRandom() { return this.random; }
+
+    @DynamoDBAttribute
+    @JsonIgnore
+    public long getRandomSeed() { return this.random.getSeed(); }
+    public void setRandomSeed(long seed) { this.random.setSeed(seed); }
 
-    public void resetText() {
-        this.text = "";
+    @DynamoDBAttribute
+    @JsonIgnore
+    public long getRandomPosition() { return this.random.getPosition(); }
+    public void setRandomPosition(long position) { this.random.setPosition(position); }
+
+    public void addEvent(BattleEvent event) {
+        event.setSeq(++this.lastEventSeq);
+        keepEvent(event);
     }
 
-    public void addText(String text) {
-        if (this.text.isEmpty()) {
-            this.text = text;
-        } else {
-            this.text += "/n" + text;
+    private void keepEvent(BattleEvent event) {
+        if (this.events.size() == MAX_EVENTS) {
+            this.events.removeFirst();
         }
+        this.events.addLast(event);
+    }
+
+    public void clearEvents() {
+        this.events.clear();
+    }
+
+    // the retained events with a sequence number greater than seq
+    public List<BattleEvent> getEventsAfter(long seq) {
+        List<BattleEvent> newer = new ArrayList<>();
+        for (BattleEvent event : this.events) {
+            if (event.getSeq() > seq) {
+                newer.add(event);
+            }
+        }
+        return newer;
+    }
+
+    // the retained events rendered as text, one per line
+    @DynamoDBIgnore
+    public String getText() {
+        return renderText(Locale.ROOT);
+    }
+
+    // getText, with the templates for the given locale
+    public String renderText(Locale locale) {
+        return BattleText.render(this.events, locale);
     }
 
     @DynamoDBIgnore
@@ -0,0 +1,75 @@
+package com.lucas.restgame.entity;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBDocument;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTyped;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleEventType;
+import com.lucas.restgame.model.BattleText;
+
+import java.util.Locale;
+
+/*
+a single thing that happened in a battle. events are stored instead of text
+and only rendered when someone asks for the text. names are interned, so
+the events of every loaded battle share one copy of each.
+ */
+@DynamoDBDocument
+public class BattleEvent {
+
+    private long seq;
+    private BattleEventType type;
+    private String actor;
+    private String target;
+    private BattleAction action;
+    private int amount;
+
+    public BattleEvent() { }
+
+    public BattleEvent(
+            BattleEventType type,
+            String actor,
+            String target,
+            BattleAction action,
+            int amount) {
+        this.type = type;
+        this.actor = intern(actor);
+        this.target = intern(target);
+        this.action = action;
+        this.amount = amount;
+    }
+
+    // position in the battle's event log, starting at 1
+    public long getSeq() { return this.seq; }
+    public void setSeq(long seq) { this.seq = seq; }
+
+    @DynamoDBTyped(DynamoDBMapperFieldModel.DynamoDBAttributeType.S)
+    public BattleEventType getType() { return this.type; }
+    public void setType(BattleEventType type) { this.type = type; }
+
+    public String getActor() { return this.actor; }
+    public void setActor(String actor) { this.actor = intern(actor); }
+
+    public String getTarget() { return this.target; }
+    public void setTarget(String target) { this.target = intern(target); }
+
+    @DynamoDBTyped(DynamoDBMapperFieldModel.DynamoDBAttributeType.S)
+    public BattleAction getAction() { return this.action; }
+    public void setAction(BattleAction action) { this.action = action; }
+
+    // damage dealt, for DAMAGE events
+    public int getAmount() { return this.amount; }
+    public void setAmount(int amount) { this.amount = amount; }
+
+    public String render() {
+        return BattleText.render(this);
+    }
+
+    public String render(Locale locale) {
+        return BattleText.render(this, locale);
+    }
+
+    private static String intern(String name) {
+        return name == null ? null : name.intern();
+    }
+}
@@ -1,17 +1,38 @@
 package com.lucas.restgame.entity;
 
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.EnemyArchetype;
+import com.lucas.restgame.model.EnemyArchetypes;
 
+import java.util.random.RandomGenerator;
+
+/*
+an enemy is its archetype plus whatever differs from it. stats that were
+never changed are read from the archetype, and only the archetype ID,
+health and changed stats are stored, so a stored goblin comes back as a
+goblin. the effective stats are what clients see, along with the archetype.
+enemies stored without an archetype get the default one, with their stored
+stats as changes.
+ */
 public class Enemy extends Entity {
-    private final float[] actionCDF = {0.25f, 0.25f, 0.25f, 0.25f};
+
+    private EnemyArchetype archetype;
+    // null until changed from the archetype's
+    private Integer health;
+    private String name;
+    private Integer power;
+    private Integer defense;
+    private Float dodgeChance;
 
     public Enemy() {
-        this.setName("Enemy");
-        this.setHealth(100);
-        this.setPower(25);
-        this.setDefense(5);
-        this.setDodgeChance(0.5f);
+        this(EnemyArchetypes.getDefault());
+    }
+
+    public Enemy(EnemyArchetype archetype) {
+        this.archetype = archetype;
     }
 
     public Enemy(
@@ -20,20 +41,129 @@ public class Enemy extends Entity {
             int power,
             int defense,
             float dodgeChance) {
-        super(name, health, power, defense, dodgeChance);
+        this();
+        this.setName(name);
+        this.setHealth(health);
+        this.setPower(power);
+        this.setDefense(defense);
+        this.setDodgeChance(dodgeChance);
+    }
+
+    // the same archetype and changes, which later changes to this one don't touch
+    public Enemy copy() {
+        Enemy copy = new Enemy(this.archetype);
+        copy.health = this.health;
+        copy.name = this.name;
+        copy.power = this.power;
+        copy.defense = this.defense;
+        copy.dodgeChance = this.dodgeChance;
+        return copy;
+    }
+
+    public String getArchetype() {
+        return this.archetype.getId();
+    }
+    // throws IllegalArgumentException for an archetype that isn't registered
+    public void setArchetype(String archetype) throws IllegalArgumentException {
+        this.archetype = EnemyArchetypes.get(archetype);
+    }
+
+    @Override
+    public int getHealth() {
+        return this.health != null ? this.health : archetype.getHealth();
+    }
+    @Override
+    public void setHealth(int health) {
+        this.health = health;
+    }
+
+    @Override
+    @DynamoDBIgnore
+    public String getName() {
+        return this.name != null ? this.name : archetype.getName();
+    }
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    @DynamoDBIgnore
+    public int getPower() {
+        return this.power != null ? this.power : archetype.getPower();
+    }
+    @Override
+    public void setPower(int power) {
+        this.power = power;
+    }
+
+    @Override
+    @DynamoDBIgnore
+    public int getDefense() {
+        return this.defense != null ? this.defense : archetype.getDefense();
+    }
+    @Override
+    public void setDefense(int defense) {
+        this.defense = defense;
+    }
+
+    @Override
+    @DynamoDBIgnore
+    public float getDodgeChance() {
+        return this.dodgeChance != null ? this.dodgeChance : archetype.getDodgeChance();
+    }
+    @Override
+    public void setDodgeChance(float dodgeChance) {
+        this.dodgeChance = dodgeChance;
+    }
+
+    /*
+    the stored stats. each is null, and left out of the item, while it
+    matches the archetype's, whichever order the mapper sets them in.
+     */
+    @JsonIgnore
+    @DynamoDBAttribute(attributeName = "name")
+    public String getChangedName() {
+        return name == null || name.equals(archetype.getName()) ? null : name;
+    }
+    @JsonIgnore
+    public void setChangedName(String name) {
+        this.name = name;
+    }
+
+    @JsonIgnore
+    @DynamoDBAttribute(attributeName = "power")
+    public Integer getChangedPower() {
+        return power == null || power == archetype.getPower() ? null : power;
+    }
+    @JsonIgnore
+    public void setChangedPower(Integer power) {
+        this.power = power;
+    }
+
+    @JsonIgnore
+    @DynamoDBAttribute(attributeName = "defense")
+    public Integer getChangedDefense() {
+        return defense == null || defense == archetype.getDefense() ? null : defense;
+    }
+    @JsonIgnore
+    public void setChangedDefense(Integer defense) {
+        this.defense = defense;
+    }
+
+    @JsonIgnore
+    @DynamoDBAttribute(attributeName = "dodgeChance")
+    public Float getChangedDodgeChance() {
+        return dodgeChance == null || dodgeChance == archetype.getDodgeChance()
+                ? null : dodgeChance;
+    }
+    @JsonIgnore
+    public void setChangedDodgeChance(Float dodgeChance) {
+        this.dodgeChance = dodgeChance;
     }
 
     @DynamoDBIgnore
-    public BattleAction battleAction() {
-        double value = Math.random();
-        float cur = 0;
-        int i;
-        for (i = 0; i < actionCDF.length; i++) {
-            cur += actionCDF[i];
-            if (value < cur) {
-                break;
-            }
-        }
-        return BattleAction.values()[i];
+    public BattleAction battleAction(RandomGenerator random) {
+        return archetype.sampleAction(random);
     }
 }
@@ -3,6 +3,8 @@ package com.lucas.restgame.entity;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBDocument;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
 
+import java.util.random.RandomGenerator;
+
 @DynamoDBDocument
 public class Entity {
     private String name;
@@ -54,10 +56,10 @@ public class Entity {
         this.dodgeChance = dodgeChance;
     }
 
-    public boolean attemptDodge() {
-        return Math.random() < dodgeChance;
+    public boolean attemptDodge(RandomGenerator random) {
+        return random.nextFloat() < getDodgeChance();
     }
 
     @DynamoDBIgnore
-    public boolean isDead() { return this.health == 0; }
+    public boolean isDead() { return getHealth() == 0; }
 }
@@ -1,14 +1,11 @@
 package com.lucas.restgame.entity;
 
-public class Goblin extends Enemy {
+import com.lucas.restgame.model.EnemyArchetypes;
 
-    private final float[] actionCDF = {0.5f, 0.3f, 0.2f, 0.0f};
+// an enemy of the goblin archetype, stored and loaded back as a plain Enemy
+public class Goblin extends Enemy {
 
     public Goblin() {
-        this.setName("Goblin");
-        this.setHealth(80);
-        this.setPower(20);
-        this.setDefense(5);
-        this.setDodgeChance(0.5f);
+        super(EnemyArchetypes.get("goblin"));
     }
 }
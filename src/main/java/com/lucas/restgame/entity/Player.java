@@ -18,4 +18,8 @@ public class Player extends Entity {
             float dodgeChance) {
         super(name, health, power, defense, dodgeChance);
     }
+
+    public Player copy() {
+        return new Player(getName(), getHealth(), getPower(), getDefense(), getDodgeChance());
+    }
 }
@@ -0,0 +1,140 @@
+package com.lucas.restgame.entity;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.TurnDelta;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+one turn of a battle, as appended to the TurnLog. a record is never
+changed once written. the action and target are all it takes to replay
+the turn, since every roll comes from the battle's generator starting at
+randomPosition. the rest is what the turn led to, so a replay can be
+checked against the original. a battle's history starts with a record for
+turn 0 that holds the battle as it was created, for replays from the start.
+ */
+@DynamoDBTable(tableName = "battle-turns")
+public class TurnRecord {
+
+    private String battleID;
+    private long turn;
+    private BattleAction action;
+    private int target;
+    private long randomPosition;
+    private long randomPositionAfter;
+    private List<Integer> health;
+    private BattleStatus status;
+    private int priority;
+    private long lastEventSeq;
+    private ByteBuffer origin;
+    private Long expiresAt;
+
+    public TurnRecord() { }
+
+    // the record a battle's history starts with, holding its encoded item
+    public static TurnRecord origin(Battle battle, ByteBuffer item) {
+        TurnRecord record = new TurnRecord();
+        record.battleID = battle.getBattleID();
+        record.turn = battle.getTurnCount();
+        record.randomPosition = battle.getRandomPosition();
+        record.randomPositionAfter = battle.getRandomPosition();
+        record.status = battle.getStatus();
+        record.priority = battle.getPriority();
+        record.lastEventSeq = battle.getLastEventSeq();
+        record.origin = item;
+        return record;
+    }
+
+    // the turn just played on after, measured from the state before it
+    public static TurnRecord of(
+            TurnDelta.Baseline before,
+            long randomPosition,
+            BattleAction action,
+            int target,
+            Battle after) {
+        TurnRecord record = new TurnRecord();
+        record.battleID = after.getBattleID();
+        record.turn = after.getTurnCount();
+        record.action = action;
+        record.target = target;
+        record.randomPosition = randomPosition;
+        record.randomPositionAfter = after.getRandomPosition();
+        record.health = new ArrayList<>(before.entities().length);
+        for (Entity entity : before.entities()) {
+            record.health.add(entity.getHealth());
+        }
+        record.status = after.getStatus();
+        record.priority = after.getPriority();
+        record.lastEventSeq = after.getLastEventSeq();
+        return record;
+    }
+
+    @DynamoDBHashKey
+    public String getBattleID() { return this.battleID; }
+    public void setBattleID(String battleID) { this.battleID = battleID; }
+
+    // the battle's turn count after this turn, so a battle's first turn is 1
+    @DynamoDBRangeKey
+    public long getTurn() { return this.turn; }
+    public void setTurn(long turn) { this.turn = turn; }
+
+    @DynamoDBAttribute
+    @DynamoDBTyped(DynamoDBMapperFieldModel.DynamoDBAttributeType.S)
+    public BattleAction getAction() { return this.action; }
+    public void setAction(BattleAction action) { this.action = action; }
+
+    @DynamoDBAttribute
+    public int getTarget() { return this.target; }
+    public void setTarget(int target) { this.target = target; }
+
+    // the generator's position before the turn
+    @DynamoDBAttribute
+    public long getRandomPosition() { return this.randomPosition; }
+    public void setRandomPosition(long randomPosition) { this.randomPosition = randomPosition; }
+
+    @DynamoDBAttribute
+    public long getRandomPositionAfter() { return this.randomPositionAfter; }
+    public void setRandomPositionAfter(long randomPositionAfter) {
+        this.randomPositionAfter = randomPositionAfter;
+    }
+
+    /*
+    everyone's health after the turn, the player first and then the enemies
+    in their order before it, as in TurnDelta. enemies the turn killed are
+    included with 0.
+     */
+    @DynamoDBAttribute
+    public List<Integer> getHealth() { return this.health; }
+    public void setHealth(List<Integer> health) { this.health = health; }
+
+    @DynamoDBAttribute
+    @DynamoDBTyped(DynamoDBMapperFieldModel.DynamoDBAttributeType.S)
+    public BattleStatus getStatus() { return this.status; }
+    public void setStatus(BattleStatus status) { this.status = status; }
+
+    @DynamoDBAttribute
+    public int getPriority() { return this.priority; }
+    public void setPriority(int priority) { this.priority = priority; }
+
+    @DynamoDBAttribute
+    public long getLastEventSeq() { return this.lastEventSeq; }
+    public void setLastEventSeq(long lastEventSeq) { this.lastEventSeq = lastEventSeq; }
+
+    // the battle as it was created, in BattleItemCodec's bytes. null for played turns
+    @DynamoDBAttribute
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public ByteBuffer getOrigin() { return this.origin == null ? null : this.origin.duplicate(); }
+    public void setOrigin(ByteBuffer origin) { this.origin = origin; }
+
+    // when DynamoDB may delete the record, in epoch seconds, as the turn table's TTL attribute
+    @DynamoDBAttribute
+    @JsonIgnore
+    public Long getExpiresAt() { return this.expiresAt; }
+    public void setExpiresAt(Long expiresAt) { this.expiresAt = expiresAt; }
+}
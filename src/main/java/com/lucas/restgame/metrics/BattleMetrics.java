@@ -0,0 +1,142 @@
+package com.lucas.restgame.metrics;
+
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+the game's own metrics: latency histograms for store calls, turns and json
+writes, plus counters for what happens in battles. gauges of the cache,
+locks and so on are read straight from their components when scraped, see
+MetricsController.
+ */
+@Component
+public class BattleMetrics {
+
+    public enum StoreOperation { LOAD, LOAD_BATCH, CREATE, CREATE_BATCH, SAVE, SCAN, DELETE,
+            APPEND_TURNS, LOAD_TURNS, DELETE_TURNS }
+
+    private final Map<StoreOperation, LatencyHistogram> storeLatency =
+            new EnumMap<>(StoreOperation.class);
+    // a single turn request, from taking the battle's lock to saving it. batches aren't included
+    private final LatencyHistogram turnLatency = new LatencyHistogram();
+    // just BattleManager resolving the turn
+    private final LatencyHistogram resolveLatency = new LatencyHistogram();
+    private final LatencyHistogram jsonLatency = new LatencyHistogram();
+
+    // indexed by player action, then enemy action
+    private final LongAdder[][] exchanges;
+    private final Map<BattleStatus, LongAdder> outcomes = new EnumMap<>(BattleStatus.class);
+    // keyed by DynamoDB operation, e.g. GetItem
+    private final Map<String, DoubleAdder> consumedCapacity = new ConcurrentHashMap<>();
+
+    public BattleMetrics() {
+        for (StoreOperation operation : StoreOperation.values()) {
+            storeLatency.put(operation, new LatencyHistogram());
+        }
+        int actions = BattleAction.values().length;
+        exchanges = new LongAdder[actions][actions];
+        for (int i = 0; i < actions; i++) {
+            for (int j = 0; j < actions; j++) {
+                exchanges[i][j] = new LongAdder();
+            }
+        }
+        outcomes.put(BattleStatus.VICTORY, new LongAdder());
+        outcomes.put(BattleStatus.DEFEAT, new LongAdder());
+    }
+
+    public <T> T timeStore(StoreOperation operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            storeLatency.get(operation).record(System.nanoTime() - start);
+        }
+    }
+
+    public void recordTurn(long nanos) {
+        turnLatency.record(nanos);
+    }
+
+    public void recordResolve(long nanos) {
+        resolveLatency.record(nanos);
+    }
+
+    public void recordJsonWrite(long nanos) {
+        jsonLatency.record(nanos);
+    }
+
+    public void recordExchange(BattleAction playerAction, BattleAction enemyAction) {
+        exchanges[playerAction.ordinal()][enemyAction.ordinal()].increment();
+    }
+
+    // counts a battle that just concluded
+    public void recordOutcome(BattleStatus status) {
+        LongAdder outcome = outcomes.get(status);
+        if (outcome != null) {
+            outcome.increment();
+        }
+    }
+
+    public void recordConsumedCapacity(String operation, double capacityUnits) {
+        consumedCapacity.computeIfAbsent(operation, key -> new DoubleAdder()).add(capacityUnits);
+    }
+
+    public long getExchangeCount(BattleAction playerAction, BattleAction enemyAction) {
+        return exchanges[playerAction.ordinal()][enemyAction.ordinal()].sum();
+    }
+
+    public long getOutcomeCount(BattleStatus status) {
+        LongAdder outcome = outcomes.get(status);
+        return outcome == null ? 0 : outcome.sum();
+    }
+
+    public void writeTo(PrometheusWriter writer) {
+        writer.header("battle_store_seconds", "histogram",
+                "Time spent in battle store calls");
+        storeLatency.forEach((operation, histogram) -> writer.histogram(
+                "battle_store_seconds", histogram,
+                "operation", operation.name().toLowerCase()));
+
+        writer.header("battle_turn_seconds", "histogram",
+                "Time to play a turn, from taking the battle's lock to saving it");
+        writer.histogram("battle_turn_seconds", turnLatency);
+
+        writer.header("battle_turn_resolve_seconds", "histogram",
+                "Time to resolve a turn's exchanges, without loading or saving");
+        writer.histogram("battle_turn_resolve_seconds", resolveLatency);
+
+        writer.header("battle_json_write_seconds", "histogram",
+                "Time to write a response body as json");
+        writer.histogram("battle_json_write_seconds", jsonLatency);
+
+        writer.header("battle_exchanges_total", "counter",
+                "Exchanges between the player and an enemy, by the action each chose");
+        for (BattleAction playerAction : BattleAction.values()) {
+            for (BattleAction enemyAction : BattleAction.values()) {
+                writer.sample("battle_exchanges_total",
+                        getExchangeCount(playerAction, enemyAction),
+                        "player_action", playerAction.name(),
+                        "enemy_action", enemyAction.name());
+            }
+        }
+
+        writer.header("battle_outcomes_total", "counter",
+                "Battles concluded, by outcome");
+        outcomes.forEach((status, count) -> writer.sample(
+                "battle_outcomes_total", count.sum(), "outcome", status.name()));
+
+        writer.header("battle_dynamodb_consumed_capacity_units_total", "counter",
+                "DynamoDB capacity units consumed, as reported by DynamoDB");
+        consumedCapacity.forEach((operation, units) -> writer.sample(
+                "battle_dynamodb_consumed_capacity_units_total", units.sum(),
+                "operation", operation));
+    }
+}
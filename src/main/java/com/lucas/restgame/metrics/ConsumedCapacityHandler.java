@@ -0,0 +1,81 @@
+package com.lucas.restgame.metrics;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.model.*;
+
+import java.util.List;
+
+/*
+asks DynamoDB to report the capacity each call consumes and adds it to
+BattleMetrics. DynamoDBMapper never asks for it itself, so it is switched
+on here, for every request the client sends.
+ */
+public class ConsumedCapacityHandler extends RequestHandler2 {
+
+    private final BattleMetrics battleMetrics;
+
+    public ConsumedCapacityHandler(BattleMetrics battleMetrics) {
+        this.battleMetrics = battleMetrics;
+    }
+
+    @Override
+    public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+        String total = ReturnConsumedCapacity.TOTAL.toString();
+        if (request instanceof GetItemRequest getItem) {
+            getItem.setReturnConsumedCapacity(total);
+        } else if (request instanceof PutItemRequest putItem) {
+            putItem.setReturnConsumedCapacity(total);
+        } else if (request instanceof UpdateItemRequest updateItem) {
+            updateItem.setReturnConsumedCapacity(total);
+        } else if (request instanceof DeleteItemRequest deleteItem) {
+            deleteItem.setReturnConsumedCapacity(total);
+        } else if (request instanceof QueryRequest query) {
+            query.setReturnConsumedCapacity(total);
+        } else if (request instanceof ScanRequest scan) {
+            scan.setReturnConsumedCapacity(total);
+        } else if (request instanceof BatchGetItemRequest batchGet) {
+            batchGet.setReturnConsumedCapacity(total);
+        } else if (request instanceof BatchWriteItemRequest batchWrite) {
+            batchWrite.setReturnConsumedCapacity(total);
+        }
+        return request;
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        Object result = response.getAwsResponse();
+        if (result instanceof GetItemResult getItem) {
+            record("GetItem", getItem.getConsumedCapacity());
+        } else if (result instanceof PutItemResult putItem) {
+            record("PutItem", putItem.getConsumedCapacity());
+        } else if (result instanceof UpdateItemResult updateItem) {
+            record("UpdateItem", updateItem.getConsumedCapacity());
+        } else if (result instanceof DeleteItemResult deleteItem) {
+            record("DeleteItem", deleteItem.getConsumedCapacity());
+        } else if (result instanceof QueryResult query) {
+            record("Query", query.getConsumedCapacity());
+        } else if (result instanceof ScanResult scan) {
+            record("Scan", scan.getConsumedCapacity());
+        } else if (result instanceof BatchGetItemResult batchGet) {
+            record("BatchGetItem", batchGet.getConsumedCapacity());
+        } else if (result instanceof BatchWriteItemResult batchWrite) {
+            record("BatchWriteItem", batchWrite.getConsumedCapacity());
+        }
+    }
+
+    private void record(String operation, ConsumedCapacity capacity) {
+        if (capacity != null && capacity.getCapacityUnits() != null) {
+            battleMetrics.recordConsumedCapacity(operation, capacity.getCapacityUnits());
+        }
+    }
+
+    // batch calls report one entry per table
+    private void record(String operation, List<ConsumedCapacity> capacities) {
+        if (capacities != null) {
+            capacities.forEach(capacity -> record(operation, capacity));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.lucas.restgame.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+a latency histogram with fixed buckets, in the shape Prometheus expects, so
+percentiles can be computed server side with histogram_quantile. recording
+is one bucket search and two uncontended adds, cheap enough for every turn.
+ */
+public class LatencyHistogram {
+
+    // upper bounds in seconds, from 50 microseconds to 10 seconds
+    static final String[] BOUNDS = {
+            "0.00005", "0.0001", "0.00025", "0.0005",
+            "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05",
+            "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUND_NANOS[i] = Math.round(Double.parseDouble(BOUNDS[i]) * 1e9);
+        }
+    }
+
+    // per bucket, not cumulative. the last one is everything over the top bound
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int low = 0;
+        int high = BOUND_NANOS.length;
+        // first bound at or above nanos
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (BOUND_NANOS[middle] < nanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        buckets[low].increment();
+        sumNanos.add(nanos);
+    }
+
+    /*
+    a point-in-time copy. counts are read bucket by bucket, so a concurrent
+    record may show up in the count and not yet in the sum, which
+    Prometheus tolerates.
+     */
+    Snapshot snapshot() {
+        long[] cumulative = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            cumulative[i] = total;
+        }
+        return new Snapshot(cumulative, sumNanos.sum() / 1e9);
+    }
+
+    // cumulative counts per bound, with the +Inf bucket last
+    record Snapshot(long[] cumulative, double sumSeconds) {
+
+        long count() {
+            return cumulative[cumulative.length - 1];
+        }
+    }
+}
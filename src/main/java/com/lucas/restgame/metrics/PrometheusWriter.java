@@ -0,0 +1,85 @@
+package com.lucas.restgame.metrics;
+
+/*
+writes metrics in the Prometheus text exposition format, version 0.0.4.
+label values are escaped, names are trusted.
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final StringBuilder out = new StringBuilder(8192);
+
+    public PrometheusWriter header(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    // labels alternate between names and values
+    public PrometheusWriter sample(String name, double value, String... labels) {
+        out.append(name);
+        if (labels.length > 0) {
+            out.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                out.append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+        return this;
+    }
+
+    public PrometheusWriter gauge(String name, String help, double value) {
+        return header(name, "gauge", help).sample(name, value);
+    }
+
+    public PrometheusWriter counter(String name, String help, double value) {
+        return header(name, "counter", help).sample(name, value);
+    }
+
+    // one series of a histogram whose header has already been written
+    public PrometheusWriter histogram(String name, LatencyHistogram histogram, String... labels) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        String[] bucketLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, bucketLabels, 0, labels.length);
+        bucketLabels[labels.length] = "le";
+        for (int i = 0; i < LatencyHistogram.BOUNDS.length; i++) {
+            bucketLabels[labels.length + 1] = LatencyHistogram.BOUNDS[i];
+            sample(name + "_bucket", snapshot.cumulative()[i], bucketLabels);
+        }
+        bucketLabels[labels.length + 1] = "+Inf";
+        sample(name + "_bucket", snapshot.count(), bucketLabels);
+        sample(name + "_sum", snapshot.sumSeconds(), labels);
+        sample(name + "_count", snapshot.count(), labels);
+        return this;
+    }
+
+    private void escape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
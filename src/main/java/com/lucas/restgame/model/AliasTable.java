@@ -0,0 +1,81 @@
+package com.lucas.restgame.model;
+
+import java.util.random.RandomGenerator;
+
+/*
+samples indices with fixed weights in constant time, using Vose's alias
+method. each column holds the probability of keeping its own index and the
+index it hands over to otherwise, so a draw picks a column and flips one
+biased coin. a single random double covers both: its integer part picks the
+column and its fraction is the coin.
+ */
+public final class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    public AliasTable(double[] weights) throws IllegalArgumentException {
+        int n = weights.length;
+        double total = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be finite and not negative");
+            }
+            total += weight;
+        }
+        if (n == 0 || total == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        probability = new double[n];
+        alias = new int[n];
+
+        // scaled so the average column is exactly 1
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        // top up each small column with part of a large one
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // whatever is left is full up to rounding error
+        while (largeCount > 0) {
+            int column = large[--largeCount];
+            probability[column] = 1;
+            alias[column] = column;
+        }
+        while (smallCount > 0) {
+            int column = small[--smallCount];
+            probability[column] = 1;
+            alias[column] = column;
+        }
+    }
+
+    public int sample(RandomGenerator random) {
+        double value = random.nextDouble() * probability.length;
+        int column = (int) value;
+        return value - column < probability[column] ? column : alias[column];
+    }
+
+    public int size() {
+        return probability.length;
+    }
+}
@@ -0,0 +1,34 @@
+package com.lucas.restgame.model;
+
+/*
+kinds of battle events, each with the template used to render it as text.
+template arguments are the actor, target, action and amount, in that order.
+ */
+public enum BattleEventType {
+    ACTION("%1$s uses %3$s!"),
+    DAMAGE("%1$s hits %2$s for %4$d damage!"),
+    DEFEND("%1$s readies their shield."),
+    DODGE("%1$s dodges %2$s's attack!"),
+    DODGE_FAILED("%1$s fails to dodge %2$s's attack."),
+    BRACE("%1$s solidifies their position against %2$s's movements."),
+    WARD("%1$s prepares for a magic attack."),
+    STUDY("%1$s studies %2$s's movements closely."),
+    REPOSITION("Both combatants attempt to reposition."),
+    STALEMATE("Neither manages to gain the advantage."),
+    FOOTING("%1$s finds better footing!"),
+    NOTHING("Nothing happens..."),
+    PRIORITY("%1$s is now poised to act."),
+    DEATH("%1$s has killed %2$s."),
+    DEFEAT("The battle is lost."),
+    VICTORY("%1$s is victorious!");
+
+    private final String template;
+
+    BattleEventType(String template) {
+        this.template = template;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+}
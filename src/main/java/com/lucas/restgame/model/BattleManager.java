@@ -1,38 +1,95 @@
 package com.lucas.restgame.model;
 
 import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
 import com.lucas.restgame.entity.Enemy;
 import com.lucas.restgame.entity.Entity;
 import com.lucas.restgame.entity.Player;
 
-import java.util.*;
+import java.util.List;
+import java.util.random.RandomGenerator;
 
 public class BattleManager {
     
     private final Battle battle;
+    private final RandomGenerator random;
+    private final ExchangeListener exchangeListener;
+    // index of the enemy whose exchange with the player is resolving
+    private int enemyIndex;
 
+    // draws from the battle's own generator, advancing its stored position
     public BattleManager(Battle battle) {
+        this(battle, battle.getRandom());
+    }
+
+    /*
+    all of a turn's randomness is drawn from the given generator, so a
+    seeded generator makes battles reproducible
+     */
+    public BattleManager(Battle battle, RandomGenerator random) {
+        this(battle, random, ExchangeListener.NONE);
+    }
+
+    // told about every exchange, for metrics
+    public BattleManager(Battle battle, RandomGenerator random, ExchangeListener exchangeListener) {
         if (battle.getStatus() != BattleStatus.ONGOING) {
             throw new IllegalArgumentException("Battle has already concluded");
         }
         this.battle = battle;
+        this.random = random;
+        this.exchangeListener = exchangeListener;
     }
 
-    private boolean playerMovesFirst() {
-        if (getBattlePriority() == -1) {
-            // random damage order
-            return Math.random() < 0.5f;
+    @FunctionalInterface
+    public interface ExchangeListener {
+        ExchangeListener NONE = (playerAction, enemyAction) -> { };
+
+        void onExchange(BattleAction playerAction, BattleAction enemyAction);
+    }
+
+    /*
+    the player and an enemy resolve in priority order if either of them
+    holds it, otherwise in random order
+     */
+    private boolean playerMovesFirst(int priority, int enemyIndex) {
+        if (priority == 0) {
+            return true;
+        } else if (priority == enemyIndex + 1) {
+            return false;
         } else {
-            return getBattlePriority() == 0;
+            // random damage order
+            return coinFlip(0.5f);
         }
     }
 
-    private void addBattleText(String text) {
-        this.battle.addText(text);
+    private void addBattleEvent(
+            BattleEventType type,
+            Entity actor,
+            Entity target,
+            BattleAction action,
+            int amount) {
+        this.battle.addEvent(new BattleEvent(
+                type,
+                actor == null ? null : actor.getName(),
+                target == null ? null : target.getName(),
+                action,
+                amount));
     }
 
-    private void clearBattleText() {
-        this.battle.resetText();
+    private void addBattleEvent(BattleEventType type, Entity actor, Entity target) {
+        addBattleEvent(type, actor, target, null, 0);
+    }
+
+    private void addBattleEvent(BattleEventType type, Entity actor) {
+        addBattleEvent(type, actor, null, null, 0);
+    }
+
+    private void addBattleEvent(BattleEventType type) {
+        addBattleEvent(type, null, null, null, 0);
+    }
+
+    private void clearBattleEvents() {
+        this.battle.clearEvents();
     }
 
     private BattleStatus getBattleStatus() {
@@ -59,16 +116,12 @@ public class BattleManager {
     }
 
     private void reportAction(Entity entity1, BattleAction action1) {
-        addBattleText(
-                String.format(
-                        "%s uses %s!",
-                        entity1.getName(),
-                        action1.name()));
+        addBattleEvent(BattleEventType.ACTION, entity1, null, action1, 0);
     }
 
     /*
     calculates and applies damage based on power and defense, then
-    updates battle text. does nothing if either entity is dead.
+    updates battle log. does nothing if either entity is dead.
      */
     private void applyAttackDamage(Entity attacker, Entity target) {
         // avoid redundant operations
@@ -79,18 +132,13 @@ public class BattleManager {
         int damage = attacker.getPower() - target.getDefense();
         // apply damage
         target.setHealth(Math.max(0, target.getHealth() - damage));
-        // update battle text
-        addBattleText(
-                String.format(
-                        "%s hits %s for %s damage!",
-                        attacker.getName(),
-                        target.getName(),
-                        damage));
+        // update battle log
+        addBattleEvent(BattleEventType.DAMAGE, attacker, target, null, damage);
     }
 
     /*
     calculates and applies damage based on power, defense, and a damage
-    multiplier, then updates battle text. does nothing if either entity is dead
+    multiplier, then updates battle log. does nothing if either entity is dead
      */
     private void applyAttackDamage(
             Entity attacker, Entity target, float modifier) {
@@ -103,25 +151,16 @@ public class BattleManager {
                 (attacker.getPower() - target.getDefense()) * modifier);
         // apply damage
         target.setHealth(Math.max(0, target.getHealth() - damage));
-        // update battle text
-        addBattleText(
-                String.format(
-                        "%s hits %s for %s damage!",
-                        attacker.getName(),
-                        target.getName(),
-                        damage));
+        // update battle log
+        addBattleEvent(BattleEventType.DAMAGE, attacker, target, null, damage);
     }
 
     private void awardPriorityTo(Entity recipient) {
-        // give priority to recipient
-        // TODO: better priority system for parties
-        int priority = (recipient.getClass() == Player.class) ? 0 : 1;
+        // enemies are only ever awarded priority while their pair resolves
+        int priority = (recipient == getPlayer()) ? 0 : this.enemyIndex + 1;
         setBattlePriority(priority);
-        // update battle text
-        addBattleText(
-                String.format(
-                        "%s is now poised to act.",
-                        recipient.getName()));
+        // update battle log
+        addBattleEvent(BattleEventType.PRIORITY, recipient);
     }
 
     // firstAttacker will deal damage first
@@ -134,33 +173,22 @@ public class BattleManager {
 
     private void handleAttackDodge(Entity attacker, Entity dodger) {
         // roll for dodge
-        boolean dodgeSuccess = dodger.attemptDodge();
+        boolean dodgeSuccess = dodger.attemptDodge(random);
         if (dodgeSuccess) {
-            // update battle text
-            addBattleText(
-                    String.format(
-                            "%s dodges %s's attack!",
-                            dodger.getName(),
-                            attacker.getName()));
+            // update battle log
+            addBattleEvent(BattleEventType.DODGE, dodger, attacker);
             // award priority
             awardPriorityTo(dodger);
         } else {
-            // update battle text
-            addBattleText(
-                    String.format(
-                            "%s fails to dodge %s's attack.",
-                            dodger.getName(),
-                            attacker.getName()));
+            // update battle log
+            addBattleEvent(BattleEventType.DODGE_FAILED, dodger, attacker);
             // apply damage to dodger
             applyAttackDamage(attacker, dodger);
         }
     }
 
     private void handleAttackDefend(Entity attacker, Entity defender) {
-        addBattleText(
-                String.format(
-                        "%s readies their shield.",
-                        defender.getName()));
+        addBattleEvent(BattleEventType.DEFEND, defender);
         // apply halved damage to defender
         applyAttackDamage(attacker, defender, 0.5f);
     }
@@ -173,58 +201,44 @@ public class BattleManager {
     }
 
     private void handleDefendDefend(Entity defender1, Entity defender2) {
-        // update battle text
-        addBattleText("Nothing happens...");
+        // update battle log
+        addBattleEvent(BattleEventType.NOTHING);
     }
 
     private void handleDefendDodge(Entity defender, Entity dodger) {
-        // update battle text
-        addBattleText(
-                String.format(
-                        "%s solidifies their position against %s's movements.",
-                        defender.getName(),
-                        dodger.getName()));
+        // update battle log
+        addBattleEvent(BattleEventType.BRACE, defender, dodger);
         // give priority to defender
         awardPriorityTo(defender);
     }
 
     private void handleDefendSpell(Entity defender, Entity caster) {
-        // update battle text
-        addBattleText(
-                String.format(
-                        "%s prepares for a magic attack.",
-                        defender.getName()));
+        // update battle log
+        addBattleEvent(BattleEventType.WARD, defender);
         // apply spell on defender with halved duration
         // applySpell(battle, caster, defender, 0.5f); // TODO: implement spells!
     }
 
     private void handleDodgeDodge(Entity dodger1, Entity dodger2) {
-        // update battle text
-        addBattleText("Both combatants attempt to reposition.");
+        // update battle log
+        addBattleEvent(BattleEventType.REPOSITION);
         // roll for dodge for both
-        boolean dodge1Success = dodger1.attemptDodge();
-        boolean dodge2Success = dodger2.attemptDodge();
+        boolean dodge1Success = dodger1.attemptDodge(random);
+        boolean dodge2Success = dodger2.attemptDodge(random);
         // nothing happens if both succeed or both fail
         if (dodge1Success == dodge2Success) {
-            addBattleText("Neither manages to gain the advantage.");
+            addBattleEvent(BattleEventType.STALEMATE);
         } else {
             // award priority to successful dodger
             Entity successfulDodger = dodge1Success ? dodger1 : dodger2;
-            addBattleText(
-                    String.format(
-                            "%s finds better footing!",
-                            successfulDodger.getName()));
+            addBattleEvent(BattleEventType.FOOTING, successfulDodger);
             awardPriorityTo(successfulDodger);
         }
     }
 
     private void handleDodgeSpell(Entity dodger, Entity caster) {
-        // update battle text
-        addBattleText(
-                String.format(
-                        "%s studies %s's movements closely.",
-                        caster.getName(),
-                        dodger.getName()));
+        // update battle log
+        addBattleEvent(BattleEventType.STUDY, caster, dodger);
         // apply spell on dodger
         // applySpell(battle, caster, dodger); // TODO: implement spells!
     }
@@ -237,177 +251,223 @@ public class BattleManager {
         // applySpell(battle, caster2, caster1); // TODO: implement spells!
     }
 
-    private final Map<Set<BattleAction>, BMFunc> actionHandlers = Map.of(
-            // ATTACK ATTACK
-            Set.copyOf(List.of(BattleAction.ATTACK)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (friendlyFirst) {
-                    handleAttackAttack((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleAttackAttack((Entity) enemy, (Entity) friendly);
-                }
-            },
-
-            // ATTACK DEFEND
-            Set.copyOf(List.of(BattleAction.ATTACK, BattleAction.DEFEND)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (action == BattleAction.ATTACK) {
-                    handleAttackDefend((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleAttackDefend((Entity) enemy, (Entity) friendly);
-                }
-            },
-
-            // ATTACK DODGE
-            Set.copyOf(List.of(BattleAction.ATTACK, BattleAction.DODGE)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (action == BattleAction.ATTACK) {
-                    handleAttackDodge((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleAttackDodge((Entity) enemy, (Entity) friendly);
-                }
-            },
-
-            // ATTACK SPELL
-            Set.copyOf(List.of(BattleAction.ATTACK, BattleAction.SPELL)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (action == BattleAction.ATTACK) {
-                    handleAttackSpell((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleAttackSpell((Entity) enemy, (Entity) friendly);
-                }
-            },
-
-            // DEFEND DEFEND
-            Set.copyOf(List.of(BattleAction.DEFEND)),
-            (friendly, enemy, friendlyFirst, action) ->
-                    handleDefendDefend((Entity) friendly, (Entity) enemy),
-
-            // DEFEND DODGE
-            Set.copyOf(List.of(BattleAction.DEFEND, BattleAction.DODGE)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (action == BattleAction.DEFEND) {
-                    handleDefendDodge((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleDefendDodge((Entity) enemy, (Entity) friendly);
-                }
-            },
-
-            // DEFEND SPELL
-            Set.copyOf(List.of(BattleAction.DEFEND, BattleAction.SPELL)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (action == BattleAction.DEFEND) {
-                    handleDefendSpell((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleDefendSpell((Entity) enemy, (Entity) friendly);
-                }
-            },
-
-            // DODGE DODGE
-            Set.copyOf(List.of(BattleAction.DODGE)),
-            (friendly, enemy, friendlyFirst, a) ->
-                    handleDodgeDodge((Entity) friendly, (Entity) enemy),
-
-            // DODGE SPELL
-            Set.copyOf(List.of(BattleAction.DODGE, BattleAction.SPELL)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (action == BattleAction.DODGE) {
-                    handleDodgeSpell((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleDodgeSpell((Entity) enemy, (Entity) friendly);
-                }
-            },
-
-            // SPELL SPELL
-            Set.copyOf(List.of(BattleAction.SPELL)),
-            (friendly, enemy, friendlyFirst, action) -> {
-                if (friendlyFirst) {
-                    handleSpellSpell((Entity) friendly, (Entity) enemy);
-                } else {
-                    handleSpellSpell((Entity) enemy, (Entity) friendly);
-                }
+    @FunctionalInterface
+    private interface TurnHandler {
+        void run(
+                BattleManager manager,
+                Entity player,
+                Entity enemy,
+                boolean playerFirst);
+    }
+
+    /*
+    handlers indexed by [player action ordinal][enemy action ordinal]. built
+    once and shared by every BattleManager, so resolving a turn is two array
+    loads instead of building a set key and hashing it.
+     */
+    private static final TurnHandler[][] TURN_HANDLERS = buildTurnHandlers();
+
+    /*
+    handlers for enemies the player isn't targeting. defending and dodging
+    still protect the player from them, but the player's attack or spell is
+    aimed elsewhere, so their attacks land unopposed and anything else they
+    do has no effect on the player.
+     */
+    private static final TurnHandler[][] UNTARGETED_HANDLERS = buildUntargetedHandlers();
+
+    private static TurnHandler[][] buildTurnHandlers() {
+        int count = BattleAction.values().length;
+        TurnHandler[][] handlers = new TurnHandler[count][count];
+
+        register(handlers, BattleAction.ATTACK, BattleAction.ATTACK,
+                (manager, player, enemy, playerFirst) -> {
+                    if (playerFirst) {
+                        manager.handleAttackAttack(player, enemy);
+                    } else {
+                        manager.handleAttackAttack(enemy, player);
+                    }
+                });
+        register(handlers, BattleAction.ATTACK, BattleAction.DEFEND,
+                (manager, attacker, defender, attackerFirst) ->
+                        manager.handleAttackDefend(attacker, defender));
+        register(handlers, BattleAction.ATTACK, BattleAction.DODGE,
+                (manager, attacker, dodger, attackerFirst) ->
+                        manager.handleAttackDodge(attacker, dodger));
+        register(handlers, BattleAction.ATTACK, BattleAction.SPELL,
+                (manager, attacker, caster, attackerFirst) ->
+                        manager.handleAttackSpell(attacker, caster));
+        register(handlers, BattleAction.DEFEND, BattleAction.DEFEND,
+                (manager, player, enemy, playerFirst) ->
+                        manager.handleDefendDefend(player, enemy));
+        register(handlers, BattleAction.DEFEND, BattleAction.DODGE,
+                (manager, defender, dodger, defenderFirst) ->
+                        manager.handleDefendDodge(defender, dodger));
+        register(handlers, BattleAction.DEFEND, BattleAction.SPELL,
+                (manager, defender, caster, defenderFirst) ->
+                        manager.handleDefendSpell(defender, caster));
+        register(handlers, BattleAction.DODGE, BattleAction.DODGE,
+                (manager, player, enemy, playerFirst) ->
+                        manager.handleDodgeDodge(player, enemy));
+        register(handlers, BattleAction.DODGE, BattleAction.SPELL,
+                (manager, dodger, caster, dodgerFirst) ->
+                        manager.handleDodgeSpell(dodger, caster));
+        register(handlers, BattleAction.SPELL, BattleAction.SPELL,
+                (manager, player, enemy, playerFirst) -> {
+                    if (playerFirst) {
+                        manager.handleSpellSpell(player, enemy);
+                    } else {
+                        manager.handleSpellSpell(enemy, player);
+                    }
+                });
+        return handlers;
+    }
+
+    private static TurnHandler[][] buildUntargetedHandlers() {
+        TurnHandler[][] handlers = buildTurnHandlers();
+        TurnHandler unopposed = (manager, player, enemy, playerFirst) ->
+                manager.applyAttackDamage(enemy, player);
+        TurnHandler ignored = (manager, player, enemy, playerFirst) -> { };
+        for (BattleAction playerAction : new BattleAction[] {
+                BattleAction.ATTACK, BattleAction.SPELL}) {
+            for (BattleAction enemyAction : BattleAction.values()) {
+                handlers[playerAction.ordinal()][enemyAction.ordinal()] =
+                        enemyAction == BattleAction.ATTACK ? unopposed : ignored;
             }
-    );
+        }
+        return handlers;
+    }
+
+    /*
+    registers a handler written from the point of view of whoever uses
+    action1, along with its mirror for when the enemy is the one using it
+     */
+    private static void register(
+            TurnHandler[][] handlers,
+            BattleAction action1,
+            BattleAction action2,
+            TurnHandler handler) {
+        handlers[action1.ordinal()][action2.ordinal()] = handler;
+        if (action1 != action2) {
+            handlers[action2.ordinal()][action1.ordinal()] =
+                    (manager, player, enemy, playerFirst) ->
+                            handler.run(manager, enemy, player, !playerFirst);
+        }
+    }
 
     public boolean coinFlip(float odds) {
-        return Math.random() < odds;
+        return random.nextFloat() < odds;
     }
 
     public Battle performTurn(BattleAction playerAction) {
+        return performTurn(playerAction, 0);
+    }
+
+    /*
+    plays a turn with the player acting against the enemy at index target.
+    every living enemy acts and resolves its exchange with the player, in
+    list order. throws before changing anything if target is out of range.
+     */
+    public Battle performTurn(BattleAction playerAction, int target)
+            throws IllegalArgumentException {
         // do nothing if battle has already ended
         if (getBattleStatus() != BattleStatus.ONGOING) {
             return this.battle;
         }
 
-        // reset battle text for turn
-//        clearBattleText(); // off for debugging
-
         Player player = getPlayer();
         List<Enemy> enemies = getEnemies();
-        // TODO: support for targeting specific enemy
-        Enemy enemy = enemies.get(0);
-        BattleAction enemyAction = enemy.battleAction();
+        if (target < 0 || target >= enemies.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Target must be between 0 and %s", enemies.size() - 1));
+        }
 
-        // determine turn order
-        boolean playerMovesFirst = playerMovesFirst();
+        // reset battle log for turn
+//        clearBattleEvents(); // off for debugging
 
-        // update battle text with actions used
-        if (playerMovesFirst) {
-            reportAction(player, playerAction);
-            reportAction(enemy, enemyAction);
-        } else {
+        // turn order comes from last turn's priority, which resets to neutral
+        int priority = getBattlePriority();
+        setBattlePriority(-1);
+
+        boolean playerReported = false;
+        Enemy killer = null;
+        for (int i = 0; i < enemies.size(); i++) {
+            Enemy enemy = enemies.get(i);
+            if (enemy.isDead()) {
+                continue;
+            }
+            BattleAction enemyAction = enemy.battleAction(random);
+            boolean playerMovesFirst = playerMovesFirst(priority, i);
+
+            // update battle log with actions used, the player's only once
+            if (playerMovesFirst && !playerReported) {
+                reportAction(player, playerAction);
+                playerReported = true;
+            }
             reportAction(enemy, enemyAction);
-            reportAction(player, playerAction);
-        }
+            if (!playerReported) {
+                reportAction(player, playerAction);
+                playerReported = true;
+            }
 
-        // reset priority to neutral
-        setBattlePriority(-1);
+            exchangeListener.onExchange(playerAction, enemyAction);
 
-        // call action handler function
-        Set<BattleAction> turnType = Set.copyOf(List.of(playerAction, enemyAction));
-        BMFunc turnHandler = actionHandlers.get(turnType);
-        turnHandler.run(player, enemy, playerMovesFirst, playerAction);
+            // call action handler function
+            TurnHandler[][] handlers = (i == target) ? TURN_HANDLERS : UNTARGETED_HANDLERS;
+            this.enemyIndex = i;
+            handlers[playerAction.ordinal()][enemyAction.ordinal()]
+                    .run(this, player, enemy, playerMovesFirst);
+
+            if (player.isDead()) {
+                killer = enemy;
+                break;
+            }
+        }
 
-        // TODO replace with method
         // handle deaths and status
-        if (player.isDead()) {
+        if (killer != null) {
             // report game over
-            addBattleText(
-                    String.format(
-                            "%s has killed %s.",
-                            enemy.getName(),
-                            player.getName()));
-            addBattleText("The battle is lost.");
+            addBattleEvent(BattleEventType.DEATH, killer, player);
+            addBattleEvent(BattleEventType.DEFEAT);
             // update status
             setBattleStatus(BattleStatus.DEFEAT);
-        } else if (enemy.isDead()) {
-            // report death
-            addBattleText(
-                    String.format(
-                            "%s has killed %s.",
-                            player.getName(),
-                            enemy.getName()));
-            // delete enemy
-            enemies.remove(enemy);
+        } else {
+            removeDeadEnemies(player, enemies);
             // check for victory
             if (enemies.isEmpty()) {
                 setBattleStatus(BattleStatus.VICTORY);
-                addBattleText(
-                        String.format(
-                                "%s is victorious!",
-                                player.getName()));
+                addBattleEvent(BattleEventType.VICTORY, player);
             }
         }
+        battle.setTurnCount(battle.getTurnCount() + 1);
 
         return battle;
     }
 
-    @FunctionalInterface
-    private interface BMFunc<Entity, BattleAction> {
-        public void run(
-                Entity entity1,
-                Entity entity2,
-                boolean entity1First,
-                BattleAction action);
+    /*
+    compacts the enemy list in place, keeping priority pointed at the same
+    enemy as the survivors shift down
+     */
+    private void removeDeadEnemies(Player player, List<Enemy> enemies) {
+        int priority = getBattlePriority();
+        int alive = 0;
+        for (int i = 0; i < enemies.size(); i++) {
+            Enemy enemy = enemies.get(i);
+            if (enemy.isDead()) {
+                // report death
+                addBattleEvent(BattleEventType.DEATH, player, enemy);
+                if (priority == i + 1) {
+                    priority = -1;
+                }
+                continue;
+            }
+            if (priority == i + 1) {
+                priority = alive + 1;
+            }
+            enemies.set(alive++, enemy);
+        }
+        for (int last = enemies.size() - 1; last >= alive; last--) {
+            enemies.remove(last);
+        }
+        setBattlePriority(priority);
     }
 }
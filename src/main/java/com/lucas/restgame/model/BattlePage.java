@@ -0,0 +1,26 @@
+package com.lucas.restgame.model;
+
+import com.lucas.restgame.entity.Battle;
+
+import java.util.List;
+
+// one page of battles, plus the token to request the page after it
+public class BattlePage {
+
+    private final List<Battle> battles;
+    private final String nextToken;
+
+    public BattlePage(List<Battle> battles, String nextToken) {
+        this.battles = battles;
+        this.nextToken = nextToken;
+    }
+
+    public List<Battle> getBattles() {
+        return battles;
+    }
+
+    // null once there are no more pages
+    public String getNextToken() {
+        return nextToken;
+    }
+}
@@ -0,0 +1,46 @@
+package com.lucas.restgame.model;
+
+import java.util.random.RandomGenerator;
+
+/*
+the random source of a single battle. the n-th value is a SplitMix64 hash
+of the seed and n, so a seed and position are all it takes to pick up the
+sequence exactly where it left off. both are stored with the battle, which
+makes any turn reproducible. not thread safe; a battle's turns already run
+one at a time under its lock.
+ */
+public class BattleRandom implements RandomGenerator {
+
+    // odd constant from SplitMix64, spaces successive values apart
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private long position;
+
+    public BattleRandom(long seed) {
+        this(seed, 0);
+    }
+
+    public BattleRandom(long seed, long position) {
+        this.seed = seed;
+        this.position = position;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(seed + ++position * GAMMA);
+    }
+
+    public long getSeed() { return this.seed; }
+    public void setSeed(long seed) { this.seed = seed; }
+
+    // number of values drawn so far
+    public long getPosition() { return this.position; }
+    public void setPosition(long position) { this.position = position; }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,176 @@
+package com.lucas.restgame.model;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.TurnRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/*
+a recorded battle re-run from its starting state, one turn at a time,
+through BattleManager. every turn is checked against its TurnRecord, and
+the stored battle against the replay at the turn it was saved at. the
+first mismatch is reported and stops the replay, since every turn after it
+starts from the wrong state.
+ */
+public class BattleReplay {
+
+    // the state a replayed turn left the battle in
+    public record Step(
+            long turn,
+            BattleAction action,
+            int target,
+            List<Integer> health,
+            BattleStatus status,
+            List<BattleEvent> events) { }
+
+    private String battleID;
+    private boolean recorded;
+    private long turns;
+    private boolean verified;
+    private Long divergedAt;
+    private String divergence;
+    private BattleStatus status;
+    private List<Step> steps;
+
+    public BattleReplay() {}
+
+    // a battle whose history wasn't recorded, so can't be replayed
+    public static BattleReplay unrecorded(String battleID) {
+        BattleReplay replay = new BattleReplay();
+        replay.battleID = battleID;
+        replay.divergence = "No turns were recorded for this battle";
+        return replay;
+    }
+
+    /*
+    replays turns on origin, which is changed in place. stored is checked
+    when the replay reaches its turn count, unless it's null. steps are only
+    kept if asked for, bulk checks don't need them.
+     */
+    public static BattleReplay run(
+            Battle origin, List<TurnRecord> turns, Battle stored, boolean keepSteps) {
+        BattleReplay replay = new BattleReplay();
+        replay.battleID = origin.getBattleID();
+        replay.recorded = true;
+        replay.steps = keepSteps ? new ArrayList<>(turns.size()) : null;
+        Battle battle = origin;
+        boolean storedChecked = stored == null;
+        String mismatch = null;
+        long turn = battle.getTurnCount();
+        if (!storedChecked && stored.getTurnCount() == turn) {
+            mismatch = compare(battle, stored);
+            storedChecked = true;
+        }
+        for (int i = 0; i < turns.size() && mismatch == null; i++) {
+            TurnRecord record = turns.get(i);
+            turn = record.getTurn();
+            mismatch = play(battle, record, replay.steps);
+            if (mismatch == null && !storedChecked && stored.getTurnCount() == turn) {
+                mismatch = compare(battle, stored);
+                storedChecked = true;
+            }
+            replay.turns++;
+        }
+        if (mismatch == null && !storedChecked) {
+            turn = stored.getTurnCount();
+            mismatch = String.format("The stored battle is at turn %s, past the recorded turns",
+                    stored.getTurnCount());
+        }
+        replay.verified = mismatch == null;
+        replay.divergedAt = mismatch == null ? null : turn;
+        replay.divergence = mismatch;
+        replay.status = battle.getStatus();
+        return replay;
+    }
+
+    // plays the recorded turn, returning what didn't match, or null
+    private static String play(Battle battle, TurnRecord record, List<Step> steps) {
+        if (record.getTurn() != battle.getTurnCount() + 1) {
+            return String.format("Turn %s follows turn %s",
+                    record.getTurn(), battle.getTurnCount());
+        }
+        if (battle.getStatus() != BattleStatus.ONGOING) {
+            return "The battle had already concluded";
+        }
+        if (record.getRandomPosition() != battle.getRandomPosition()) {
+            return "The turn started from a different random position";
+        }
+        TurnDelta.Baseline baseline = TurnDelta.Baseline.of(battle);
+        try {
+            new BattleManager(battle).performTurn(record.getAction(), record.getTarget());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        List<Integer> health = new ArrayList<>(baseline.entities().length);
+        for (int i = 0; i < baseline.entities().length; i++) {
+            health.add(baseline.entities()[i].getHealth());
+        }
+        if (steps != null) {
+            steps.add(new Step(record.getTurn(), record.getAction(), record.getTarget(),
+                    health, battle.getStatus(),
+                    battle.getEventsAfter(baseline.lastEventSeq())));
+        }
+        if (!health.equals(record.getHealth())) {
+            return "Health after the turn differs";
+        }
+        if (battle.getRandomPosition() != record.getRandomPositionAfter()) {
+            return "The turn drew a different number of random values";
+        }
+        if (battle.getStatus() != record.getStatus()
+                || battle.getPriority() != record.getPriority()
+                || battle.getLastEventSeq() != record.getLastEventSeq()) {
+            return "The turn ended in a different state";
+        }
+        return null;
+    }
+
+    // what differs between the replayed and stored battle, or null
+    private static String compare(Battle replayed, Battle stored) {
+        List<Enemy> enemies = replayed.getEnemies();
+        List<Enemy> storedEnemies = stored.getEnemies();
+        boolean same = replayed.getStatus() == stored.getStatus()
+                && replayed.getPriority() == stored.getPriority()
+                && replayed.getLastEventSeq() == stored.getLastEventSeq()
+                && replayed.getRandomPosition() == stored.getRandomPosition()
+                && replayed.getPlayer().getHealth() == stored.getPlayer().getHealth()
+                && enemies.size() == storedEnemies.size();
+        for (int i = 0; same && i < enemies.size(); i++) {
+            same = enemies.get(i).getHealth() == storedEnemies.get(i).getHealth()
+                    && Objects.equals(enemies.get(i).getName(), storedEnemies.get(i).getName());
+        }
+        return same ? null : "The stored battle differs from the replay";
+    }
+
+    public String getBattleID() { return this.battleID; }
+    public void setBattleID(String battleID) { this.battleID = battleID; }
+
+    // false if there was nothing to replay
+    public boolean isRecorded() { return this.recorded; }
+    public void setRecorded(boolean recorded) { this.recorded = recorded; }
+
+    // turns replayed, including the one that diverged
+    public long getTurns() { return this.turns; }
+    public void setTurns(long turns) { this.turns = turns; }
+
+    public boolean isVerified() { return this.verified; }
+    public void setVerified(boolean verified) { this.verified = verified; }
+
+    // the turn the first mismatch was found at, null if there was none
+    public Long getDivergedAt() { return this.divergedAt; }
+    public void setDivergedAt(Long divergedAt) { this.divergedAt = divergedAt; }
+
+    public String getDivergence() { return this.divergence; }
+    public void setDivergence(String divergence) { this.divergence = divergence; }
+
+    // the replayed battle's status when the replay stopped
+    public BattleStatus getStatus() { return this.status; }
+    public void setStatus(BattleStatus status) { this.status = status; }
+
+    // each replayed turn, or null if they weren't kept
+    public List<Step> getSteps() { return this.steps; }
+    public void setSteps(List<Step> steps) { this.steps = steps; }
+}
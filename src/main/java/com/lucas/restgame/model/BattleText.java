@@ -0,0 +1,150 @@
+package com.lucas.restgame.model;
+
+import com.lucas.restgame.entity.BattleEvent;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+renders battle events as text. every event type's template is compiled
+once per resource bundle, from the battle-text bundle a locale resolves
+to, keyed by event type name. compiled templates are cached by the
+bundle's locale rather than the one asked for, so clients sending every
+possible Accept-Language can't grow the cache past the bundles there are. types a bundle leaves out use the English
+template in BattleEventType, which is also what Locale.ROOT gets. text is
+built in a per-thread builder that's reused from one render to the next,
+so the only allocation is the resulting string.
+ */
+public final class BattleText {
+
+    public static final String BUNDLE = "battle-text";
+
+    // builders that grew past this are dropped, so one long battle doesn't pin memory
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    // locales remembered with the bundle they resolve to, beyond which they're resolved each time
+    private static final int MAX_RESOLVED_LOCALES = 256;
+
+    private static final ResourceBundle.Control CONTROL =
+            ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+    private static final Map<BattleEventType, MessageTemplate> DEFAULTS = compileDefaults();
+    // keyed by the locale of a bundle that exists
+    private static final Map<Locale, Map<BattleEventType, MessageTemplate>> LOCALIZED =
+            new ConcurrentHashMap<>();
+    // requested locale to bundle locale, Locale.ROOT when only the defaults apply
+    private static final Map<Locale, Locale> RESOLVED = new ConcurrentHashMap<>();
+    private static final ThreadLocal<StringBuilder> BUILDER =
+            ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private BattleText() { }
+
+    private static Map<BattleEventType, MessageTemplate> compileDefaults() {
+        Map<BattleEventType, MessageTemplate> templates = new EnumMap<>(BattleEventType.class);
+        for (BattleEventType type : BattleEventType.values()) {
+            templates.put(type, MessageTemplate.compile(type.getTemplate()));
+        }
+        return templates;
+    }
+
+    /*
+    the templates for a locale, compiled the first time its bundle is needed.
+    bundles fall back from e.g. fr_CA to fr, but never to the JVM's default
+    locale, so the same request renders the same way on every server.
+     */
+    static Map<BattleEventType, MessageTemplate> templates(Locale locale) {
+        if (locale == null || locale.equals(Locale.ROOT)) {
+            return DEFAULTS;
+        }
+        Locale bundleLocale = RESOLVED.get(locale);
+        if (bundleLocale == null) {
+            bundleLocale = resolve(locale);
+            if (RESOLVED.size() < MAX_RESOLVED_LOCALES) {
+                RESOLVED.put(locale, bundleLocale);
+            }
+        }
+        return bundleLocale.equals(Locale.ROOT)
+                ? DEFAULTS
+                : LOCALIZED.computeIfAbsent(bundleLocale, BattleText::compile);
+    }
+
+    // the most specific locale the bundle has a file for, checked without loading it
+    private static Locale resolve(Locale locale) {
+        ClassLoader loader = BattleText.class.getClassLoader();
+        for (Locale candidate : CONTROL.getCandidateLocales(BUNDLE, locale)) {
+            if (candidate.equals(Locale.ROOT)) {
+                break;
+            }
+            String resource = CONTROL.toResourceName(
+                    CONTROL.toBundleName(BUNDLE, candidate), "properties");
+            if (loader.getResource(resource) != null) {
+                return candidate;
+            }
+        }
+        return Locale.ROOT;
+    }
+
+    private static Map<BattleEventType, MessageTemplate> compile(Locale locale) {
+        ResourceBundle bundle;
+        try {
+            bundle = ResourceBundle.getBundle(BUNDLE, locale, CONTROL);
+        } catch (MissingResourceException e) {
+            return DEFAULTS;
+        }
+        Map<BattleEventType, MessageTemplate> templates = new EnumMap<>(DEFAULTS);
+        for (BattleEventType type : BattleEventType.values()) {
+            if (bundle.containsKey(type.name())) {
+                templates.put(type, MessageTemplate.compile(bundle.getString(type.name())));
+            }
+        }
+        return templates;
+    }
+
+    public static String render(BattleEvent event) {
+        return render(event, Locale.ROOT);
+    }
+
+    public static String render(BattleEvent event, Locale locale) {
+        StringBuilder text = builder();
+        renderTo(text, event, templates(locale));
+        return release(text);
+    }
+
+    // the events rendered one per line
+    public static String render(Iterable<BattleEvent> events, Locale locale) {
+        Map<BattleEventType, MessageTemplate> templates = templates(locale);
+        StringBuilder text = builder();
+        for (BattleEvent event : events) {
+            if (!text.isEmpty()) {
+                text.append('\n');
+            }
+            renderTo(text, event, templates);
+        }
+        return release(text);
+    }
+
+    private static void renderTo(
+            StringBuilder text,
+            BattleEvent event,
+            Map<BattleEventType, MessageTemplate> templates) {
+        templates.get(event.getType()).renderTo(text, event.getActor(), event.getTarget(),
+                event.getAction(), event.getAmount());
+    }
+
+    private static StringBuilder builder() {
+        StringBuilder text = BUILDER.get();
+        text.setLength(0);
+        return text;
+    }
+
+    private static String release(StringBuilder text) {
+        String rendered = text.toString();
+        if (text.capacity() > MAX_RETAINED_CAPACITY) {
+            BUILDER.remove();
+        }
+        return rendered;
+    }
+}
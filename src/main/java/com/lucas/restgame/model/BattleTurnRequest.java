@@ -0,0 +1,14 @@
+package com.lucas.restgame.model;
+
+// a turn in a batch spanning several battles
+public class BattleTurnRequest extends BattleRequest {
+
+    private String battleID;
+
+    public String getBattleID() {
+        return battleID;
+    }
+    public void setBattleID(String battleID) {
+        this.battleID = battleID;
+    }
+}
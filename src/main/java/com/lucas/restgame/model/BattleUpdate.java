@@ -0,0 +1,40 @@
+package com.lucas.restgame.model;
+
+import com.lucas.restgame.entity.BattleEvent;
+
+import java.util.List;
+
+// what subscribers to a battle are sent after each turn
+public class BattleUpdate {
+
+    private String battleID;
+    private BattleStatus status;
+    private long lastEventSeq;
+    private List<BattleEvent> events;
+
+    public BattleUpdate() {}
+
+    public BattleUpdate(
+            String battleID,
+            BattleStatus status,
+            long lastEventSeq,
+            List<BattleEvent> events) {
+        this.battleID = battleID;
+        this.status = status;
+        this.lastEventSeq = lastEventSeq;
+        this.events = events;
+    }
+
+    public String getBattleID() { return this.battleID; }
+    public void setBattleID(String battleID) { this.battleID = battleID; }
+
+    public BattleStatus getStatus() { return this.status; }
+    public void setStatus(BattleStatus status) { this.status = status; }
+
+    public long getLastEventSeq() { return this.lastEventSeq; }
+    public void setLastEventSeq(long lastEventSeq) { this.lastEventSeq = lastEventSeq; }
+
+    // the events logged since the previous update
+    public List<BattleEvent> getEvents() { return this.events; }
+    public void setEvents(List<BattleEvent> events) { this.events = events; }
+}
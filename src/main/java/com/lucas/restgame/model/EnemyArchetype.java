@@ -0,0 +1,59 @@
+package com.lucas.restgame.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/*
+the base stats and behaviour of a kind of enemy, as loaded by
+EnemyArchetypes. immutable and shared by every enemy of the kind, which
+only keeps a reference to it next to its own changing state.
+ */
+public final class EnemyArchetype {
+
+    // values() clones its array on every call
+    private static final BattleAction[] ACTIONS = BattleAction.values();
+
+    private final String id;
+    private final String name;
+    private final int health;
+    private final int power;
+    private final int defense;
+    private final float dodgeChance;
+    private final AliasTable actions;
+
+    @JsonCreator
+    public EnemyArchetype(
+            @JsonProperty(value = "id", required = true) String id,
+            @JsonProperty(value = "name", required = true) String name,
+            @JsonProperty("health") int health,
+            @JsonProperty("power") int power,
+            @JsonProperty("defense") int defense,
+            @JsonProperty("dodgeChance") float dodgeChance,
+            @JsonProperty(value = "actionWeights", required = true)
+                    Map<BattleAction, Double> actionWeights)
+            throws IllegalArgumentException {
+        this.id = id;
+        this.name = name;
+        this.health = health;
+        this.power = power;
+        this.defense = defense;
+        this.dodgeChance = dodgeChance;
+        double[] weights = new double[ACTIONS.length];
+        actionWeights.forEach((action, weight) -> weights[action.ordinal()] = weight);
+        this.actions = new AliasTable(weights);
+    }
+
+    public BattleAction sampleAction(RandomGenerator random) {
+        return ACTIONS[actions.sample(random)];
+    }
+
+    public String getId() { return this.id; }
+    public String getName() { return this.name; }
+    public int getHealth() { return this.health; }
+    public int getPower() { return this.power; }
+    public int getDefense() { return this.defense; }
+    public float getDodgeChance() { return this.dodgeChance; }
+}
@@ -0,0 +1,72 @@
+package com.lucas.restgame.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+every kind of enemy, read once from archetypes.json on the classpath.
+enemies are created by Jackson and the DynamoDB mapper rather than Spring,
+so the registry is static instead of a bean. new kinds of enemy are added
+to the file, not as subclasses of Enemy.
+ */
+public final class EnemyArchetypes {
+
+    public static final String RESOURCE = "archetypes.json";
+
+    // used by enemies stored before archetypes existed
+    public static final String DEFAULT_ID = "enemy";
+
+    private static final Map<String, EnemyArchetype> ARCHETYPES = load();
+
+    private EnemyArchetypes() { }
+
+    public static EnemyArchetype get(String id) throws IllegalArgumentException {
+        EnemyArchetype archetype = ARCHETYPES.get(id);
+        if (archetype == null) {
+            throw new IllegalArgumentException("Unknown enemy archetype " + id);
+        }
+        return archetype;
+    }
+
+    public static EnemyArchetype getDefault() {
+        return get(DEFAULT_ID);
+    }
+
+    public static Collection<EnemyArchetype> all() {
+        return ARCHETYPES.values();
+    }
+
+    private static Map<String, EnemyArchetype> load() {
+        try (InputStream in = EnemyArchetypes.class.getClassLoader()
+                .getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + RESOURCE + " on the classpath");
+            }
+            List<EnemyArchetype> archetypes = new ObjectMapper()
+                    .readValue(in, new TypeReference<List<EnemyArchetype>>() { });
+            Map<String, EnemyArchetype> byID = new LinkedHashMap<>();
+            for (EnemyArchetype archetype : archetypes) {
+                if (byID.put(archetype.getId(), archetype) != null) {
+                    throw new IllegalStateException(
+                            "Duplicate enemy archetype " + archetype.getId());
+                }
+            }
+            if (!byID.containsKey(DEFAULT_ID)) {
+                throw new IllegalStateException(
+                        "No default enemy archetype " + DEFAULT_ID);
+            }
+            return Collections.unmodifiableMap(byID);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + RESOURCE, e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.lucas.restgame.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+an event template parsed once into literal text and argument slots, so
+rendering is a walk over the parts appending to a builder, without
+String.format parsing the template and boxing its arguments every time.
+templates use String.format's positional syntax, %1$s to %4$d for the
+actor, target, action and amount, and %% for a percent sign.
+ */
+public final class MessageTemplate {
+
+    private static final int ACTOR = 1;
+    private static final int TARGET = 2;
+    private static final int ACTION = 3;
+    private static final int AMOUNT = 4;
+
+    // literals[i] is followed by the argument in slots[i], the last literal by nothing
+    private final String[] literals;
+    private final int[] slots;
+
+    private MessageTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    // throws IllegalArgumentException for anything but the syntax above
+    public static MessageTemplate compile(String template) throws IllegalArgumentException {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i++;
+            } else if (template.startsWith("%%", i)) {
+                literal.append('%');
+                i += 2;
+            } else {
+                int slot = parseSlot(template, i);
+                literals.add(literal.toString().intern());
+                slots.add(slot);
+                literal.setLength(0);
+                i += 4;
+            }
+        }
+        literals.add(literal.toString().intern());
+        return new MessageTemplate(literals.toArray(new String[0]),
+                slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // the argument of a %n$s or %4$d at index i
+    private static int parseSlot(String template, int i) throws IllegalArgumentException {
+        if (i + 4 <= template.length() && template.charAt(i + 2) == '$') {
+            int slot = template.charAt(i + 1) - '0';
+            char conversion = template.charAt(i + 3);
+            if ((slot >= ACTOR && slot <= ACTION && conversion == 's')
+                    || (slot == AMOUNT && (conversion == 'd' || conversion == 's'))) {
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException(String.format(
+                "Unsupported placeholder at %s in template \"%s\"", i, template));
+    }
+
+    public void renderTo(
+            StringBuilder out,
+            String actor,
+            String target,
+            BattleAction action,
+            int amount) {
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            switch (slots[i]) {
+                case ACTOR -> out.append(actor);
+                case TARGET -> out.append(target);
+                case ACTION -> out.append(action == null ? "null" : action.name());
+                default -> out.append(amount);
+            }
+        }
+        out.append(literals[slots.length]);
+    }
+}
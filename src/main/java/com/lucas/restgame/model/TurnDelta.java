@@ -0,0 +1,95 @@
+package com.lucas.restgame.model;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
+import com.lucas.restgame.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+what one turn changed in a battle, sent instead of the whole battle to
+clients that ask for minimal responses. it carries the health of whoever
+was hurt, the events the turn logged, and the status and priority after it.
+ */
+public class TurnDelta {
+
+    // an entity's health after the turn and how much it changed by
+    public record HealthChange(int entity, int health, int change) { }
+
+    /*
+    the entities and health a delta is measured from, taken just before the
+    turn is played. entities are kept by reference, since dead enemies are
+    dropped from the battle and the rest move down during the turn.
+     */
+    public record Baseline(Entity[] entities, int[] health, long lastEventSeq) {
+
+        public static Baseline of(Battle battle) {
+            int count = battle.getEnemies().size() + 1;
+            Entity[] entities = new Entity[count];
+            int[] health = new int[count];
+            entities[0] = battle.getPlayer();
+            for (int i = 1; i < count; i++) {
+                entities[i] = battle.getEnemy(i - 1);
+            }
+            for (int i = 0; i < count; i++) {
+                health[i] = entities[i].getHealth();
+            }
+            return new Baseline(entities, health, battle.getLastEventSeq());
+        }
+    }
+
+    private String battleID;
+    private BattleStatus status;
+    private int priority;
+    private long lastEventSeq;
+    private List<HealthChange> healthChanges;
+    private List<BattleEvent> events;
+
+    public TurnDelta() {}
+
+    // must be called before anything else changes the battle
+    public static TurnDelta between(Baseline before, Battle after) {
+        List<HealthChange> healthChanges = new ArrayList<>(2);
+        for (int i = 0; i < before.entities().length; i++) {
+            int health = before.entities()[i].getHealth();
+            if (health != before.health()[i]) {
+                healthChanges.add(new HealthChange(i, health, health - before.health()[i]));
+            }
+        }
+        TurnDelta delta = new TurnDelta();
+        delta.battleID = after.getBattleID();
+        delta.status = after.getStatus();
+        delta.priority = after.getPriority();
+        delta.lastEventSeq = after.getLastEventSeq();
+        delta.healthChanges = healthChanges;
+        delta.events = after.getEventsAfter(before.lastEventSeq());
+        return delta;
+    }
+
+    public String getBattleID() { return this.battleID; }
+    public void setBattleID(String battleID) { this.battleID = battleID; }
+
+    public BattleStatus getStatus() { return this.status; }
+    public void setStatus(BattleStatus status) { this.status = status; }
+
+    // as in Battle.getPriority, with enemy indexes from after the turn
+    public int getPriority() { return this.priority; }
+    public void setPriority(int priority) { this.priority = priority; }
+
+    public long getLastEventSeq() { return this.lastEventSeq; }
+    public void setLastEventSeq(long lastEventSeq) { this.lastEventSeq = lastEventSeq; }
+
+    /*
+    only entities whose health changed. entity is 0 for the player, or
+    i + 1 for the enemy that was at index i before the turn. enemies whose
+    health reached 0 have been removed, and the rest kept their order.
+     */
+    public List<HealthChange> getHealthChanges() { return this.healthChanges; }
+    public void setHealthChanges(List<HealthChange> healthChanges) {
+        this.healthChanges = healthChanges;
+    }
+
+    public List<BattleEvent> getEvents() { return this.events; }
+    public void setEvents(List<BattleEvent> events) { this.events = events; }
+}
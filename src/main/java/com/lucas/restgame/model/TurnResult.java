@@ -0,0 +1,54 @@
+package com.lucas.restgame.model;
+
+// the outcome of one turn in a batch
+public class TurnResult {
+
+    public enum Outcome {
+        APPLIED,
+        // the battle had already concluded, so the turn was not played
+        SKIPPED,
+        // there was no enemy at the requested target index
+        INVALID_TARGET,
+        NOT_FOUND,
+        // the battle kept being modified by other requests
+        CONFLICT
+    }
+
+    private String battleID;
+    private BattleAction action;
+    private Outcome outcome;
+    private BattleStatus battleStatus;
+    private long lastEventSeq;
+
+    public TurnResult() {}
+
+    public TurnResult(
+            String battleID,
+            BattleAction action,
+            Outcome outcome,
+            BattleStatus battleStatus,
+            long lastEventSeq) {
+        this.battleID = battleID;
+        this.action = action;
+        this.outcome = outcome;
+        this.battleStatus = battleStatus;
+        this.lastEventSeq = lastEventSeq;
+    }
+
+    public String getBattleID() { return this.battleID; }
+    public void setBattleID(String battleID) { this.battleID = battleID; }
+
+    public BattleAction getAction() { return this.action; }
+    public void setAction(BattleAction action) { this.action = action; }
+
+    public Outcome getOutcome() { return this.outcome; }
+    public void setOutcome(Outcome outcome) { this.outcome = outcome; }
+
+    // the battle's status after this turn
+    public BattleStatus getBattleStatus() { return this.battleStatus; }
+    public void setBattleStatus(BattleStatus battleStatus) { this.battleStatus = battleStatus; }
+
+    // the last event this turn logged, for fetching them from /battles/{id}/events
+    public long getLastEventSeq() { return this.lastEventSeq; }
+    public void setLastEventSeq(long lastEventSeq) { this.lastEventSeq = lastEventSeq; }
+}
@@ -0,0 +1,262 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.lucas.restgame.entity.Battle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+concluded battles moved out of the store, in compressed batch files on
+local disk. each batch is a battles-N.ndjson.gz file holding one battle's
+item as a line of JSON per gzip member, so the file as a whole reads as
+plain NDJSON with zcat, while any one battle can be read on its own. a
+battles-N.idx file next to it lists each battle's offset and length.
+
+the index file is written last, so a batch without one was interrupted and
+is ignored. its battles are still in the store and go into a later batch.
+index lines that can't be read are skipped rather than failing startup.
+the directory is only created once something is archived.
+
+batches are never rewritten, so a deleted battle's ID is appended to a
+deleted.ids file instead, and dropped from the index whenever it's loaded.
+ */
+@Component
+public class BattleArchive {
+
+    private static final String DATA_SUFFIX = ".ndjson.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String PREFIX = "battles-";
+    private static final String TOMBSTONES = "deleted.ids";
+
+    private static final Logger log = LoggerFactory.getLogger(BattleArchive.class);
+
+    private record Location(Path file, long offset, int length) { }
+
+    private final BattleItemCodec battleItemCodec;
+    private final Path directory;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private int nextBatch;
+
+    public BattleArchive(
+            BattleItemCodec battleItemCodec,
+            @Value("${battle.archive.path:archive}") String path) throws IOException {
+        this.battleItemCodec = battleItemCodec;
+        this.directory = Path.of(path);
+        if (Files.isDirectory(directory)) {
+            load();
+        }
+    }
+
+    private void load() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                PREFIX + "*" + INDEX_SUFFIX)) {
+            for (Path indexFile : files) {
+                String name = indexFile.getFileName().toString();
+                String batch = name.substring(0, name.length() - INDEX_SUFFIX.length());
+                try {
+                    nextBatch = Math.max(nextBatch,
+                            Integer.parseInt(batch.substring(PREFIX.length())) + 1);
+                } catch (NumberFormatException e) {
+                    log.warn("Skipping archive index {} with no batch number", indexFile);
+                    continue;
+                }
+                loadIndex(indexFile, directory.resolve(batch + DATA_SUFFIX));
+            }
+        }
+        Path tombstones = directory.resolve(TOMBSTONES);
+        if (Files.exists(tombstones)) {
+            for (String battleID : Files.readAllLines(tombstones, StandardCharsets.UTF_8)) {
+                index.remove(battleID);
+            }
+        }
+    }
+
+    // "ID offset length", split from the end in case the ID has spaces
+    private void loadIndex(Path indexFile, Path data) throws IOException {
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            int lengthStart = line.lastIndexOf(' ');
+            int offsetStart = lengthStart > 0 ? line.lastIndexOf(' ', lengthStart - 1) : -1;
+            try {
+                if (offsetStart < 1) {
+                    throw new NumberFormatException("missing fields");
+                }
+                long offset = Long.parseLong(line.substring(offsetStart + 1, lengthStart));
+                int length = Integer.parseInt(line.substring(lengthStart + 1));
+                if (offset < 0 || length < 0) {
+                    throw new NumberFormatException("negative position");
+                }
+                index.put(line.substring(0, offsetStart), new Location(data, offset, length));
+            } catch (NumberFormatException e) {
+                log.warn("Skipping malformed line {} of archive index {}", lineNumber, indexFile);
+            }
+        }
+    }
+
+    /*
+    writes the battles as a new batch. once this returns they are on disk
+    and can be looked up, so they can be deleted from the store.
+     */
+    public synchronized void archive(Collection<Battle> battles) throws UncheckedIOException {
+        if (battles.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            String batch = String.format("%s%08d", PREFIX, nextBatch);
+            Path data = directory.resolve(batch + DATA_SUFFIX);
+            Map<String, Location> written = new LinkedHashMap<>();
+
+            Path dataTemp = directory.resolve(batch + DATA_SUFFIX + ".tmp");
+            try (FileChannel channel = FileChannel.open(dataTemp,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                long offset = 0;
+                for (Battle battle : battles) {
+                    byte[] member = compress(battle);
+                    out.write(member);
+                    written.put(battle.getBattleID(), new Location(data, offset, member.length));
+                    offset += member.length;
+                }
+                channel.force(true);
+            }
+
+            // forced too, so a crash can't leave a renamed but empty index behind
+            Path indexTemp = directory.resolve(batch + INDEX_SUFFIX + ".tmp");
+            StringBuilder lines = new StringBuilder();
+            for (Map.Entry<String, Location> entry : written.entrySet()) {
+                lines.append(entry.getKey()).append(' ').append(entry.getValue().offset())
+                        .append(' ').append(entry.getValue().length()).append('\n');
+            }
+            writeForced(indexTemp, lines.toString(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            Files.move(dataTemp, data, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTemp, directory.resolve(batch + INDEX_SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE);
+            nextBatch++;
+            index.putAll(written);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to archive battles", e);
+        }
+    }
+
+    /*
+    deletes an archived battle, so it is no longer looked up or listed.
+    returns false if it isn't archived. once this returns the deletion is
+    on disk and survives a restart.
+     */
+    public synchronized boolean delete(String battleID) throws UncheckedIOException {
+        if (!index.containsKey(battleID)) {
+            return false;
+        }
+        try {
+            writeForced(directory.resolve(TOMBSTONES), battleID + "\n",
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete archived battle " + battleID, e);
+        }
+        return index.remove(battleID) != null;
+    }
+
+    private static void writeForced(Path file, String text, StandardOpenOption... options)
+            throws IOException {
+        Set<StandardOpenOption> openOptions = EnumSet.of(StandardOpenOption.WRITE, options);
+        try (FileChannel channel = FileChannel.open(file, openOptions)) {
+            ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+    }
+
+    // null if the battle was never archived, or was deleted
+    public Battle getBattleByID(String battleID) throws UncheckedIOException {
+        Location location = index.get(battleID);
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer member = ByteBuffer.allocate(location.length());
+        try (FileChannel channel = FileChannel.open(location.file(), StandardOpenOption.READ)) {
+            while (member.hasRemaining()) {
+                if (channel.read(member, location.offset() + member.position()) < 0) {
+                    throw new EOFException("Archive " + location.file() + " is truncated");
+                }
+            }
+            try (InputStream in = new GZIPInputStream(
+                    new ByteArrayInputStream(member.array()))) {
+                String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                return battleItemCodec.toBattle(ItemUtils.toAttributeValues(Item.fromJSON(json)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived battle " + battleID, e);
+        }
+    }
+
+    // the archived battles out of those asked for, keyed by ID
+    public Map<String, Battle> getBattlesByID(Collection<String> battleIDs) {
+        Map<String, Battle> battles = new LinkedHashMap<>();
+        for (String battleID : battleIDs) {
+            Battle battle = getBattleByID(battleID);
+            if (battle != null) {
+                battles.put(battleID, battle);
+            }
+        }
+        return battles;
+    }
+
+    public boolean contains(String battleID) {
+        return index.containsKey(battleID);
+    }
+
+    // the IDs of every archived battle
+    public Set<String> getBattleIDs() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // the item as one line of JSON in a gzip member of its own
+    private byte[] compress(Battle battle) throws IOException {
+        String json = ItemUtils.toItem(battleItemCodec.toItem(battle)).toJSON();
+        ByteArrayOutputStream member = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+            gzip.write(json.getBytes(StandardCharsets.UTF_8));
+            gzip.write('\n');
+        }
+        return member.toByteArray();
+    }
+}
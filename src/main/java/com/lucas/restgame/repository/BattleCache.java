@@ -0,0 +1,465 @@
+package com.lucas.restgame.repository;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattleStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+cache of hot battles in front of BattleRepository. by default every save is
+written through before it returns, and a battle whose write fails is
+evicted, so the next read reloads what was stored.
+
+with write-behind on, turns are served from memory and dirty battles are
+written back in the background, so several turns on the same battle
+coalesce into a single save. concluded and evicted battles are written
+immediately. turns are acknowledged before they're written, so if another
+node wrote the battle in the meantime, they are lost. the cache counts and
+logs them, but write-behind is only safe on a single node.
+
+writes hold the battle's lock from BattleLocks, so a battle is never
+written halfway through a turn.
+ */
+@Component
+public class BattleCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BattleCache.class);
+
+    private final BattleRepository battleRepository;
+    private final BattleLocks battleLocks;
+    private final boolean writeBehind;
+    /*
+    evicted battles are written from their own thread. request threads may
+    already hold a battle lock, and locking a second battle from there could
+    deadlock against another request doing the same.
+     */
+    private final ExecutorService evictionWriter =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "battle-eviction-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private boolean evictionWriteScheduled;
+
+    // access-ordered, so the eldest entry is the least recently used battle
+    private final LinkedHashMap<String, Battle> battles;
+    // battles changed in memory since they were last written
+    private final Map<String, Battle> dirty = new HashMap<>();
+    // dirty battles pushed out of the cache that still need to be written
+    private final Map<String, Battle> evicted = new HashMap<>();
+    // each cached battle's turn count as last loaded or written
+    private final Map<String, Long> storedTurns = new HashMap<>();
+
+    private final LongAdder discardedBattles = new LongAdder();
+    private final LongAdder discardedTurns = new LongAdder();
+
+    public BattleCache(
+            BattleRepository battleRepository,
+            BattleLocks battleLocks,
+            @Value("${battle.cache.capacity:10000}") int capacity,
+            @Value("${battle.cache.write-behind:false}") boolean writeBehind) {
+        this.battleRepository = battleRepository;
+        this.battleLocks = battleLocks;
+        this.writeBehind = writeBehind;
+        this.battles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Battle> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                if (dirty.remove(eldest.getKey()) != null) {
+                    evicted.put(eldest.getKey(), eldest.getValue());
+                } else {
+                    storedTurns.remove(eldest.getKey());
+                }
+                return true;
+            }
+        };
+    }
+
+    /*
+    returns the cached battle, loading it from the repository on a miss.
+    returns null if the battle does not exist.
+     */
+    public Battle getBattle(String battleID) {
+        Battle battle;
+        synchronized (this) {
+            battle = cached(battleID);
+        }
+        if (battle != null) {
+            scheduleEvictedWrite();
+            return battle;
+        }
+        // load outside the lock so a slow read doesn't stall other battles
+        Battle loaded = battleRepository.getBattleByID(battleID);
+        if (loaded == null) {
+            return null;
+        }
+        return cache(battleID, loaded);
+    }
+
+    /*
+    returns the battles that exist out of those asked for, keyed by ID.
+    misses are loaded together with a batched read instead of one by one.
+     */
+    public Map<String, Battle> getBattles(Collection<String> battleIDs) {
+        Map<String, Battle> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String battleID : battleIDs) {
+                Battle battle = cached(battleID);
+                if (battle != null) {
+                    found.put(battleID, battle);
+                } else {
+                    missing.add(battleID);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Battle> loaded = battleRepository.getBattlesByID(missing);
+            loaded.forEach((battleID, battle) -> found.put(battleID, cache(battleID, battle)));
+        }
+        scheduleEvictedWrite();
+        return found;
+    }
+
+    /*
+    like getBattle, but a miss is loaded on the store's threads instead of
+    the caller's. a hit completes immediately.
+     */
+    public CompletableFuture<Battle> getBattleAsync(String battleID) {
+        Battle battle;
+        synchronized (this) {
+            battle = cached(battleID);
+        }
+        scheduleEvictedWrite();
+        if (battle != null) {
+            return CompletableFuture.completedFuture(battle);
+        }
+        return battleRepository.getBattleByIDAsync(battleID)
+                .thenApply(loaded -> loaded == null ? null : cache(battleID, loaded));
+    }
+
+    /*
+    getBattleAsync, with view applied to the battle under its lock. the
+    cached battle keeps changing as turns are played, so anything handed
+    out of the cache, e.g. for serializing, must come from here, e.g. as a
+    Battle.snapshot. completes with null if the battle does not exist.
+     */
+    public <T> CompletableFuture<T> readAsync(String battleID, Function<Battle, T> view) {
+        return getBattleAsync(battleID).thenApply(battle -> battle == null
+                ? null
+                : battleLocks.withLock(battleID, () -> view.apply(battle)));
+    }
+
+    // like getBattles, with the misses loaded on the store's threads
+    public CompletableFuture<Map<String, Battle>> getBattlesAsync(
+            Collection<String> battleIDs) {
+        Map<String, Battle> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            for (String battleID : battleIDs) {
+                Battle battle = cached(battleID);
+                if (battle != null) {
+                    found.put(battleID, battle);
+                } else {
+                    missing.add(battleID);
+                }
+            }
+        }
+        scheduleEvictedWrite();
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(found);
+        }
+        return battleRepository.getBattlesByIDAsync(missing).thenApply(loaded -> {
+            loaded.forEach((battleID, battle) -> found.put(battleID, cache(battleID, battle)));
+            return found;
+        });
+    }
+
+    // caches a loaded battle unless another load got there first
+    private Battle cache(String battleID, Battle loaded) {
+        Battle battle;
+        synchronized (this) {
+            battle = battles.putIfAbsent(battleID, loaded);
+            if (battle == null) {
+                storedTurns.put(battleID, loaded.getTurnCount());
+            }
+        }
+        scheduleEvictedWrite();
+        return battle != null ? battle : loaded;
+    }
+
+    // must hold the monitor
+    private Battle cached(String battleID) {
+        Battle battle = battles.get(battleID);
+        if (battle == null) {
+            // reclaim an evicted battle before its write lands
+            battle = evicted.remove(battleID);
+            if (battle != null) {
+                battles.put(battleID, battle);
+                dirty.put(battleID, battle);
+            }
+        }
+        return battle;
+    }
+
+    /*
+    records a changed battle. the write is deferred until the next flush
+    unless the battle has concluded or write-behind is off, in which case it
+    is written now. if that write conflicts, the stale battle is evicted so
+    the caller can reload it and try again.
+     */
+    public void saveBattle(Battle battle) throws BattleConflictException {
+        String battleID = battle.getBattleID();
+        if (!writeBehind) {
+            updateBattle(battleID, battle);
+            return;
+        }
+        synchronized (this) {
+            battles.put(battleID, battle);
+            dirty.put(battleID, battle);
+        }
+        scheduleEvictedWrite();
+        if (battle.getStatus() != BattleStatus.ONGOING) {
+            battleLocks.lock(battleID);
+            try {
+                writeConcluded(battleID);
+            } finally {
+                battleLocks.unlock(battleID);
+            }
+        }
+    }
+
+    private void writeConcluded(String battleID) throws BattleConflictException {
+        Battle pending;
+        synchronized (this) {
+            pending = dirty.remove(battleID);
+        }
+        if (pending == null) {
+            // already written by a concurrent flush
+            return;
+        }
+        try {
+            battleRepository.updateBattle(battleID, pending);
+            stored(battleID, pending);
+        } catch (BattleConflictException e) {
+            discard(battleID, pending, e);
+            evict(battleID);
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Failed to write battle {}, will retry", battleID, e);
+            requeue(battleID, pending);
+        }
+    }
+
+    /*
+    writes a battle through to the repository and caches the result. if the
+    write fails for any reason the battle is evicted, since the cached copy
+    may hold changes that never made it to the store.
+     */
+    public String updateBattle(String battleID, Battle battle)
+            throws BattleConflictException {
+        String updatedID;
+        battleLocks.lock(battleID);
+        try {
+            updatedID = battleRepository.updateBattle(battleID, battle);
+            synchronized (this) {
+                battles.put(battleID, battle);
+                dirty.remove(battleID);
+                evicted.remove(battleID);
+                storedTurns.put(battleID, battle.getTurnCount());
+            }
+        } catch (RuntimeException e) {
+            evict(battleID);
+            throw e;
+        } finally {
+            battleLocks.unlock(battleID);
+        }
+        scheduleEvictedWrite();
+        return updatedID;
+    }
+
+    // drops a battle from the cache without writing it
+    public synchronized void evict(String battleID) {
+        battles.remove(battleID);
+        dirty.remove(battleID);
+        evicted.remove(battleID);
+        storedTurns.remove(battleID);
+    }
+
+    /*
+    writes every dirty battle. scheduled so that an in-memory change is never
+    more than one flush interval behind the repository.
+     */
+    @Scheduled(fixedDelayString = "${battle.cache.flush-interval-ms:1000}")
+    public void flushAll() {
+        Map<String, Battle> pending;
+        synchronized (this) {
+            if (dirty.isEmpty()) {
+                pending = Map.of();
+            } else {
+                pending = new HashMap<>(dirty);
+                dirty.clear();
+            }
+        }
+        pending.forEach((battleID, battle) -> {
+            if (!lockedWrite(battleID, battle)) {
+                requeue(battleID, battle);
+            }
+        });
+        writeEvicted();
+    }
+
+    // writes all pending changes and empties the cache
+    public void evictAll() {
+        flushAll();
+        synchronized (this) {
+            battles.clear();
+            // battles whose write failed are still waiting in evicted
+            storedTurns.keySet().retainAll(evicted.keySet());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictionWriter.shutdown();
+        evictAll();
+    }
+
+    public synchronized int size() {
+        return battles.size();
+    }
+
+    public synchronized int dirtyCount() {
+        return dirty.size() + evicted.size();
+    }
+
+    // battles written behind whose changes were discarded after a conflict
+    public long getDiscardedBattles() {
+        return discardedBattles.sum();
+    }
+
+    // acknowledged turns lost with those battles
+    public long getDiscardedTurns() {
+        return discardedTurns.sum();
+    }
+
+    private void scheduleEvictedWrite() {
+        synchronized (this) {
+            if (evicted.isEmpty() || evictionWriteScheduled) {
+                return;
+            }
+            evictionWriteScheduled = true;
+        }
+        try {
+            evictionWriter.execute(() -> {
+                synchronized (this) {
+                    evictionWriteScheduled = false;
+                }
+                writeEvicted();
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down, the final flush picks these up
+            synchronized (this) {
+                evictionWriteScheduled = false;
+            }
+        }
+    }
+
+    // must not be called while holding a battle lock
+    private void writeEvicted() {
+        Map<String, Battle> pending;
+        synchronized (this) {
+            if (evicted.isEmpty()) {
+                return;
+            }
+            pending = new HashMap<>(evicted);
+        }
+        pending.forEach((battleID, battle) -> {
+            // a failed write stays queued for the next flush
+            if (lockedWrite(battleID, battle)) {
+                synchronized (this) {
+                    // only clear the entry if it wasn't reclaimed in the meantime
+                    if (evicted.remove(battleID, battle) && !battles.containsKey(battleID)) {
+                        storedTurns.remove(battleID);
+                    }
+                }
+            }
+        });
+    }
+
+    private boolean lockedWrite(String battleID, Battle battle) {
+        return battleLocks.withLock(battleID, () -> write(battleID, battle));
+    }
+
+    /*
+    returns false if the write should be retried. a conflicting battle is
+    dropped instead, since retrying would overwrite someone else's changes.
+     */
+    private boolean write(String battleID, Battle battle) {
+        try {
+            battleRepository.updateBattle(battleID, battle);
+            stored(battleID, battle);
+            return true;
+        } catch (BattleConflictException e) {
+            discard(battleID, battle, e);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to write battle {}, will retry", battleID, e);
+            return false;
+        }
+    }
+
+    private synchronized void stored(String battleID, Battle battle) {
+        if (battles.get(battleID) == battle || evicted.get(battleID) == battle) {
+            storedTurns.put(battleID, battle.getTurnCount());
+        }
+    }
+
+    /*
+    drops a battle whose write conflicted, along with every turn played on
+    it since it was last stored. those turns were already acknowledged, so
+    they are counted and logged as errors rather than lost quietly.
+     */
+    private void discard(String battleID, Battle battle, BattleConflictException e) {
+        long lost;
+        synchronized (this) {
+            Long stored = storedTurns.remove(battleID);
+            lost = stored == null ? 0 : Math.max(0, battle.getTurnCount() - stored);
+            battles.remove(battleID, battle);
+            dirty.remove(battleID, battle);
+            evicted.remove(battleID, battle);
+        }
+        discardedBattles.increment();
+        discardedTurns.add(lost);
+        log.error("Discarding {} unwritten turns of battle {}, it was written elsewhere",
+                lost, battleID, e);
+    }
+
+    // queues a battle whose write failed so the next flush retries it
+    private synchronized void requeue(String battleID, Battle battle) {
+        if (battles.containsKey(battleID)) {
+            dirty.putIfAbsent(battleID, battle);
+        } else {
+            evicted.putIfAbsent(battleID, battle);
+        }
+    }
+}
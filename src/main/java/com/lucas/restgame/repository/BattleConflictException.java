@@ -0,0 +1,12 @@
+package com.lucas.restgame.repository;
+
+/*
+thrown when a battle could not be written because it was changed since it
+was loaded, or because it no longer exists
+ */
+public class BattleConflictException extends RuntimeException {
+
+    public BattleConflictException(String battleID, Throwable cause) {
+        super(String.format("Battle with ID %s was modified by another request", battleID), cause);
+    }
+}
@@ -0,0 +1,53 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattleStatus;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/*
+converts battles to and from the items DynamoDB would store, so the local
+stores persist exactly the attributes the DynamoDB store does. only the
+mapper's table model is used, it never talks to DynamoDB.
+ */
+@Component
+public class BattleItemCodec {
+
+    private final DynamoDBMapperTableModel<Battle> tableModel;
+
+    public BattleItemCodec(DynamoDBMapper dynamoDBMapper) {
+        this.tableModel = dynamoDBMapper.getTableModel(Battle.class);
+    }
+
+    public Map<String, AttributeValue> toItem(Battle battle) {
+        return tableModel.convert(battle);
+    }
+
+    public Battle toBattle(Map<String, AttributeValue> item) {
+        return tableModel.unconvert(item);
+    }
+
+    // the item in the compact binary format
+    public ByteBuffer toBytes(Battle battle) {
+        return CompactItemTransformer.encode(toItem(battle));
+    }
+
+    public Map<String, AttributeValue> toItem(ByteBuffer bytes) {
+        return CompactItemTransformer.decode(bytes);
+    }
+
+    public static long versionOf(Map<String, AttributeValue> item) {
+        AttributeValue version = item.get("version");
+        return version == null ? 0 : Long.parseLong(version.getN());
+    }
+
+    public static BattleStatus statusOf(Map<String, AttributeValue> item) {
+        AttributeValue status = item.get("status");
+        return status == null ? null : BattleStatus.valueOf(status.getS());
+    }
+}
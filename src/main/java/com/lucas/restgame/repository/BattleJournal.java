@@ -0,0 +1,161 @@
+package com.lucas.restgame.repository;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.TurnRecord;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.metrics.BattleMetrics.StoreOperation;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.model.BattleReplay;
+import com.lucas.restgame.model.BattleStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+event-sourced persistence for turns. when enabled, every turn appends a
+small TurnRecord to the TurnLog instead of the whole battle being written,
+and the battle itself is only saved as a snapshot every snapshotInterval
+turns, and when it concludes. a battle is rebuilt by loading its latest
+snapshot and replaying the turns recorded after it through BattleManager,
+which is exact because every roll comes from the battle's own generator.
+
+a battle created while journaling is on also gets a record for the state
+it started in, so its whole history can be re-run and checked, see
+BattleReplay.
+
+listings and exports read snapshots, so an ongoing battle may show up
+there a few turns behind.
+ */
+@Component
+public class BattleJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(BattleJournal.class);
+
+    private final TurnLog turnLog;
+    private final BattleItemCodec battleItemCodec;
+    private final BattleMetrics battleMetrics;
+    private final boolean enabled;
+    private final int snapshotInterval;
+
+    public BattleJournal(
+            TurnLog turnLog,
+            BattleItemCodec battleItemCodec,
+            BattleMetrics battleMetrics,
+            @Value("${battle.persistence.event-sourced:false}") boolean enabled,
+            @Value("${battle.persistence.snapshot-interval:20}") int snapshotInterval) {
+        this.turnLog = turnLog;
+        this.battleItemCodec = battleItemCodec;
+        this.battleMetrics = battleMetrics;
+        this.enabled = enabled;
+        this.snapshotInterval = Math.max(1, snapshotInterval);
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /*
+    records the state a new battle starts in. a battle whose start couldn't
+    be recorded is still played and journaled, it just can't be replayed
+    from the start.
+     */
+    public void begin(Battle battle) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            append(List.of(TurnRecord.origin(battle, battleItemCodec.toBytes(battle))));
+        } catch (RuntimeException e) {
+            log.warn("Failed to record the start of battle {}", battle.getBattleID(), e);
+        }
+    }
+
+    /*
+    appends the records, all or none of them. throws if another request
+    already appended one of them, which can only happen with several nodes
+    serving the same battle.
+     */
+    public void append(List<TurnRecord> records) throws BattleConflictException {
+        battleMetrics.timeStore(StoreOperation.APPEND_TURNS, () -> {
+            if (records.size() == 1) {
+                turnLog.append(records.get(0));
+            } else {
+                turnLog.appendAll(records);
+            }
+            return null;
+        });
+    }
+
+    /*
+    whether the battle should be saved whole, after playing the given number
+    of turns. an ongoing battle with an expiry came from a spawn pool, and is
+    saved on its first turn so the expiry is cleared.
+     */
+    public boolean snapshotDue(Battle battle, int played) {
+        long turns = battle.getTurnCount();
+        return battle.getStatus() != BattleStatus.ONGOING
+                || battle.getExpiresAt() != null
+                || (turns - played) / snapshotInterval != turns / snapshotInterval;
+    }
+
+    /*
+    deletes the battle's whole history. done whether or not journaling is
+    on, since the battle may have been played while it was.
+     */
+    public void delete(String battleID) {
+        battleMetrics.timeStore(StoreOperation.DELETE_TURNS, () -> {
+            turnLog.delete(battleID);
+            return null;
+        });
+    }
+
+    // the battle's records after the given turn, in turn order
+    public List<TurnRecord> getTurns(String battleID, long after) {
+        return battleMetrics.timeStore(StoreOperation.LOAD_TURNS,
+                () -> turnLog.readAfter(battleID, after));
+    }
+
+    /*
+    brings a loaded snapshot up to date by replaying the turns recorded
+    after it. a concluded snapshot is already the battle's final state.
+    a replay that doesn't end where the original turn did is logged and
+    kept, e.g. when the archetypes changed since the turn was played.
+     */
+    public Battle replay(Battle snapshot) {
+        if (!enabled || snapshot == null || snapshot.getStatus() != BattleStatus.ONGOING) {
+            return snapshot;
+        }
+        for (TurnRecord record : getTurns(snapshot.getBattleID(), snapshot.getTurnCount())) {
+            if (snapshot.getStatus() != BattleStatus.ONGOING) {
+                break;
+            }
+            snapshot.setTurnCount(record.getTurn() - 1);
+            new BattleManager(snapshot).performTurn(record.getAction(), record.getTarget());
+            if (snapshot.getRandomPosition() != record.getRandomPositionAfter()
+                    || snapshot.getLastEventSeq() != record.getLastEventSeq()
+                    || snapshot.getStatus() != record.getStatus()) {
+                log.warn("Replaying turn {} of battle {} diverged from the original",
+                        record.getTurn(), snapshot.getBattleID());
+            }
+        }
+        return snapshot;
+    }
+
+    /*
+    re-runs the battle's whole recorded history and checks it, along with
+    stored, the battle as it was last saved. works whether or not journaling
+    is still on, as long as the battle's start was recorded.
+     */
+    public BattleReplay replayFromStart(String battleID, Battle stored, boolean keepSteps) {
+        List<TurnRecord> history = getTurns(battleID, -1);
+        if (history.isEmpty() || history.get(0).getOrigin() == null) {
+            return BattleReplay.unrecorded(battleID);
+        }
+        Battle origin = battleItemCodec.toBattle(
+                battleItemCodec.toItem(history.get(0).getOrigin()));
+        return BattleReplay.run(origin, history.subList(1, history.size()), stored, keepSteps);
+    }
+}
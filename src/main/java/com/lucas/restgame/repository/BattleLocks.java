@@ -0,0 +1,84 @@
+package com.lucas.restgame.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+striped locks keyed by battleID. holding a battle's lock serializes every
+change to that battle on this node, while battles on other stripes proceed
+in parallel. a fixed number of stripes keeps memory flat no matter how many
+battles are live, at the cost of the odd false collision.
+ */
+@Component
+public class BattleLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contentions = new LongAdder();
+
+    public BattleLocks(@Value("${battle.locks.stripes:1024}") int stripeCount) {
+        // round up to a power of two so a stripe can be picked with a mask
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    private ReentrantLock stripeFor(String battleID) {
+        int hash = battleID.hashCode();
+        // spread the high bits, as HashMap does
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    public void lock(String battleID) {
+        ReentrantLock lock = stripeFor(battleID);
+        if (!lock.tryLock()) {
+            contentions.increment();
+            lock.lock();
+        }
+        acquisitions.increment();
+    }
+
+    public void unlock(String battleID) {
+        stripeFor(battleID).unlock();
+    }
+
+    public <T> T withLock(String battleID, Supplier<T> action) {
+        lock(battleID);
+        try {
+            return action.get();
+        } finally {
+            unlock(battleID);
+        }
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    // acquisitions that had to wait for another thread
+    public long getContentions() {
+        return contentions.sum();
+    }
+
+    // estimate of the threads currently waiting on any stripe
+    public int getQueueLength() {
+        int waiting = 0;
+        for (ReentrantLock lock : stripes) {
+            waiting += lock.getQueueLength();
+        }
+        return waiting;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+}
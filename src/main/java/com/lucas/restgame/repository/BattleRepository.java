@@ -1,66 +1,200 @@
 package com.lucas.restgame.repository;
 
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
-import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedScanList;
-import com.amazonaws.services.dynamodbv2.model.AttributeValue;
-import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
-import com.amazonaws.services.dynamodbv2.model.Condition;
-import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.lucas.restgame.entity.Battle;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.metrics.BattleMetrics.StoreOperation;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleReplay;
+import com.lucas.restgame.model.BattleStatus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/*
+the sync methods block the calling thread for the store's round trip. the
+async ones run the same call on the StoreExecutor instead, and complete
+exceptionally with a RejectedExecutionException if it is saturated.
+
+concluded battles are stamped with an expiry when saved, and an ongoing
+battle loses the expiry it had while pooled, see BattleSpawner. lookups
+that miss the store fall back to the BattleArchive they are moved to. when
+battles are event sourced, lookups replay the turns journaled since the
+stored snapshot, see BattleJournal.
+ */
 @Repository
 public class BattleRepository {
 
     @Autowired
-    private DynamoDBMapper dynamoDBMapper;
+    private BattleStore battleStore;
+
+    @Autowired
+    private StoreExecutor storeExecutor;
+
+    @Autowired
+    private BattleMetrics battleMetrics;
+
+    @Autowired
+    private BattleArchive battleArchive;
+
+    @Autowired
+    private BattleJournal battleJournal;
+
+    @Value("${battle.expiry.ttl:7d}")
+    private Duration expiryTTL;
 
-    // TODO implement limit if battles table becomes arbitrarily large
-    public List<Battle> getAllBattles() {
-        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
-        PaginatedScanList<Battle> scanResult = dynamoDBMapper.scan(Battle.class, scanExpression);
-        return new ArrayList<Battle>(scanResult);
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /*
+    returns at most limit battles, starting after the page that returned
+    nextToken. with a status, only battles in that status are returned.
+     */
+    public BattlePage getBattles(BattleStatus status, int limit, String nextToken)
+            throws IllegalArgumentException {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(
+                    String.format("Limit must be between 1 and %s", MAX_PAGE_SIZE));
+        }
+        return battleMetrics.timeStore(StoreOperation.SCAN,
+                () -> battleStore.getBattles(status, limit, nextToken));
     }
 
-    // TODO implement limit if battles table becomes arbitrarily large
-    public List<Battle> getActiveBattles() {
-        DynamoDBScanExpression scanExpression = new DynamoDBScanExpression();
-        Condition condition = new Condition().withComparisonOperator(ComparisonOperator.EQ)
-                .withAttributeValueList(new AttributeValue().withBOOL(true));
-        scanExpression.addFilterCondition("active", condition);
-        PaginatedScanList<Battle> scanResult = dynamoDBMapper.scan(Battle.class, scanExpression);
-        return new ArrayList<Battle>(scanResult);
+    public Iterable<Battle> scanAllBattles() {
+        return battleStore.scanAllBattles();
     }
 
     public Battle createBattle(Battle battle) {
-        dynamoDBMapper.save(battle);
-        return battle;
+        stampExpiry(battle);
+        Battle created = battleMetrics.timeStore(StoreOperation.CREATE,
+                () -> battleStore.createBattle(battle));
+        battleJournal.begin(created);
+        return created;
+    }
+
+    // the battles that were created, see BattleStore.createBattles
+    public List<Battle> createBattles(Collection<Battle> battles) {
+        battles.forEach(this::stampExpiry);
+        List<Battle> created = battleMetrics.timeStore(StoreOperation.CREATE_BATCH,
+                () -> battleStore.createBattles(battles));
+        created.forEach(battleJournal::begin);
+        return created;
     }
 
+    // null if the battle is neither in the store nor archived
     public Battle getBattleByID(String battleID) {
-        return dynamoDBMapper.load(Battle.class, battleID);
+        Battle battle = battleMetrics.timeStore(StoreOperation.LOAD,
+                () -> battleStore.getBattleByID(battleID));
+        return battle != null
+                ? battleJournal.replay(battle)
+                : battleArchive.getBattleByID(battleID);
+    }
+
+    public Map<String, Battle> getBattlesByID(Collection<String> battleIDs) {
+        Map<String, Battle> battles = battleMetrics.timeStore(StoreOperation.LOAD_BATCH,
+                () -> battleStore.getBattlesByID(battleIDs));
+        battles.values().forEach(battleJournal::replay);
+        if (battles.size() < battleIDs.size()) {
+            List<String> missing = new ArrayList<>();
+            for (String battleID : battleIDs) {
+                if (!battles.containsKey(battleID) && battleArchive.contains(battleID)) {
+                    missing.add(battleID);
+                }
+            }
+            battles.putAll(battleArchive.getBattlesByID(missing));
+        }
+        return battles;
     }
 
-    // TODO conditional return value based on success
+    /*
+    re-runs the battle's recorded turns from its start, checking them and
+    the battle as last saved. null if the battle is neither in the store
+    nor archived.
+     */
+    public BattleReplay replayBattle(String battleID, boolean keepSteps) {
+        Battle stored = battleMetrics.timeStore(StoreOperation.LOAD,
+                () -> battleStore.getBattleByID(battleID));
+        if (stored == null) {
+            stored = battleArchive.getBattleByID(battleID);
+        }
+        return stored == null ? null : battleJournal.replayFromStart(battleID, stored, keepSteps);
+    }
+
+    /*
+    deletes the battle from the store and, if it was archived, the archive,
+    along with its recorded turns
+     */
     public boolean deleteBattleByID(String battleID) {
-        Battle battle = this.getBattleByID(battleID);
-        dynamoDBMapper.delete(battle);
-        return true;
-    }
-
-    public String updateBattle(String battleID, Battle battle) {
-        dynamoDBMapper.save(battle,
-                new DynamoDBSaveExpression()
-                        .withExpectedEntry("battleID",
-                                new ExpectedAttributeValue(
-                                        new AttributeValue().withS(battleID)
-                                )));
-        return battleID;
+        boolean stored = deleteStoredBattleByID(battleID);
+        boolean archived = battleArchive.delete(battleID);
+        deleteTurns(battleID);
+        return stored || archived;
+    }
+
+    // see BattleStore.expiresBattles
+    public boolean storeExpiresBattles() {
+        return battleStore.expiresBattles();
+    }
+
+    public void deleteTurns(String battleID) {
+        battleJournal.delete(battleID);
+    }
+
+    // deletes the battle from the store only, e.g. once it has been archived
+    public boolean deleteStoredBattleByID(String battleID) {
+        return battleMetrics.timeStore(StoreOperation.DELETE,
+                () -> battleStore.deleteBattleByID(battleID));
+    }
+
+    public String updateBattle(String battleID, Battle battle)
+            throws BattleConflictException {
+        if (battle.getStatus() == BattleStatus.ONGOING) {
+            battle.setExpiresAt(null);
+        }
+        stampExpiry(battle);
+        return battleMetrics.timeStore(StoreOperation.SAVE,
+                () -> battleStore.updateBattle(battleID, battle));
+    }
+
+    // the expiry is set once, when the battle is first saved as concluded
+    private void stampExpiry(Battle battle) {
+        if (battle.getStatus() != null && battle.getStatus() != BattleStatus.ONGOING
+                && battle.getExpiresAt() == null) {
+            battle.setExpiresAt(Instant.now().plus(expiryTTL).getEpochSecond());
+        }
+    }
+
+    public CompletableFuture<BattlePage> getBattlesAsync(
+            BattleStatus status, int limit, String nextToken) {
+        return CompletableFuture.supplyAsync(
+                () -> getBattles(status, limit, nextToken), storeExecutor);
+    }
+
+    public CompletableFuture<Battle> createBattleAsync(Battle battle) {
+        return CompletableFuture.supplyAsync(() -> createBattle(battle), storeExecutor);
+    }
+
+    public CompletableFuture<Battle> getBattleByIDAsync(String battleID) {
+        return CompletableFuture.supplyAsync(() -> getBattleByID(battleID), storeExecutor);
+    }
+
+    public CompletableFuture<Map<String, Battle>> getBattlesByIDAsync(
+            Collection<String> battleIDs) {
+        return CompletableFuture.supplyAsync(() -> getBattlesByID(battleIDs), storeExecutor);
+    }
+
+    public CompletableFuture<BattleReplay> replayBattleAsync(String battleID, boolean keepSteps) {
+        return CompletableFuture.supplyAsync(
+                () -> replayBattle(battleID, keepSteps), storeExecutor);
+    }
+
+    public CompletableFuture<Boolean> deleteBattleByIDAsync(String battleID) {
+        return CompletableFuture.supplyAsync(() -> deleteBattleByID(battleID), storeExecutor);
     }
 }
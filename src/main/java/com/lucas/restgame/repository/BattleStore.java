@@ -0,0 +1,71 @@
+package com.lucas.restgame.repository;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+where battles are persisted. BattleRepository delegates to whichever store
+the active profile selects: DynamoDBBattleStore by default, InMemoryBattleStore
+with the memory profile, or DiskBattleStore with the disk profile.
+
+every store versions battles the same way DynamoDBMapper does. a new battle
+starts at version 1, and an update only succeeds if the stored version
+matches the battle's, after which the battle's version is incremented.
+ */
+public interface BattleStore {
+
+    /*
+    returns at most limit battles, starting after the page that returned
+    nextToken. tokens are only meaningful to the store that issued them.
+    limit has already been checked by the repository.
+     */
+    BattlePage getBattles(BattleStatus status, int limit, String nextToken)
+            throws IllegalArgumentException;
+
+    // every battle, read lazily so memory use doesn't grow with the store
+    Iterable<Battle> scanAllBattles();
+
+    // assigns an ID if the battle has none
+    Battle createBattle(Battle battle) throws BattleConflictException;
+
+    /*
+    creates new battles together, where the store can write them in fewer
+    round trips than one at a time. returns the battles that were created,
+    which may be fewer than given if part of the batch failed.
+     */
+    default List<Battle> createBattles(Collection<Battle> battles) {
+        List<Battle> created = new ArrayList<>(battles.size());
+        for (Battle battle : battles) {
+            created.add(createBattle(battle));
+        }
+        return created;
+    }
+
+    /*
+    whether the store deletes battles once their expiresAt has passed by
+    itself. stores that don't leave it to BattleSpawner's startup sweep.
+     */
+    default boolean expiresBattles() {
+        return false;
+    }
+
+    // null if the battle does not exist
+    Battle getBattleByID(String battleID);
+
+    // the battles that exist out of those asked for, keyed by ID
+    Map<String, Battle> getBattlesByID(Collection<String> battleIDs);
+
+    boolean deleteBattleByID(String battleID);
+
+    /*
+    saves an existing battle. throws if it was written since it was loaded,
+    or no longer exists.
+     */
+    String updateBattle(String battleID, Battle battle) throws BattleConflictException;
+}
@@ -0,0 +1,397 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.AttributeTransformer;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMappingException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+stores an item's attributes as a single binary attribute instead of nested
+documents. keys and the attributes named in topLevel stay as they are, so
+indexes and version conditions keep working. the rest is packed into
+STATE_ATTRIBUTE behind a format byte.
+
+the encoding is a tagged tree mirroring AttributeValue. strings are written
+once per item and referenced by index after that, and common attribute
+names and enum values are preloaded, so repeated names like "health" cost a
+byte instead of a name per element. unknown attributes pass through both
+ways, so fields can be added or dropped without a new format. items without
+STATE_ATTRIBUTE are in the plain document format and are read as they are.
+ */
+public class CompactItemTransformer implements AttributeTransformer {
+
+    public static final String STATE_ATTRIBUTE = "state";
+
+    private static final byte FORMAT_VERSION = 2;
+
+    /*
+    strings every version 1 item starts out knowing. the list is part of the
+    format, so changing it in any way needs a new FORMAT_VERSION with its own
+    list, or older items will decode to the wrong strings.
+     */
+    private static final List<String> DICTIONARY_V1 = List.of(
+            // attribute names
+            "player", "enemies", "priority", "events", "lastEventSeq",
+            "randomSeed", "randomPosition", "name", "health", "power",
+            "defense", "dodgeChance", "seq", "type", "actor", "target",
+            "action", "amount",
+            // battle actions
+            "ATTACK", "DEFEND", "DODGE", "SPELL",
+            // event types
+            "DAMAGE", "DODGE_FAILED", "BRACE", "WARD", "STUDY", "REPOSITION",
+            "STALEMATE", "FOOTING", "NOTHING", "PRIORITY", "DEATH", "DEFEAT",
+            "VICTORY",
+            // default names
+            "Player", "Enemy", "Goblin");
+
+    // version 2 adds enemy archetypes
+    private static final List<String> DICTIONARY_V2 = concat(DICTIONARY_V1, List.of(
+            "archetype", "enemy", "goblin"));
+
+    // indexed by format version
+    private static final List<List<String>> DICTIONARIES =
+            List.of(List.of(), DICTIONARY_V1, DICTIONARY_V2);
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_INTEGER = 3;
+    private static final byte TAG_NUMBER = 4;
+    private static final byte TAG_STRING = 5;
+    private static final byte TAG_BINARY = 6;
+    private static final byte TAG_MAP = 7;
+    private static final byte TAG_LIST = 8;
+    private static final byte TAG_STRING_SET = 9;
+    private static final byte TAG_NUMBER_SET = 10;
+    private static final byte TAG_BINARY_SET = 11;
+
+    private final Set<String> topLevel;
+
+    public CompactItemTransformer(Set<String> topLevel) {
+        this.topLevel = topLevel;
+    }
+
+    @Override
+    public Map<String, AttributeValue> transform(Parameters<?> parameters) {
+        Map<String, AttributeValue> values = parameters.getAttributeValues();
+        // a partial update can't rewrite the attributes it doesn't know about
+        if (parameters.isPartialUpdate()) {
+            return values;
+        }
+        Map<String, AttributeValue> item = new HashMap<>();
+        Map<String, AttributeValue> packed = new LinkedHashMap<>();
+        values.forEach((name, value) -> {
+            if (keepsTopLevel(parameters, name)) {
+                item.put(name, value);
+            } else {
+                packed.put(name, value);
+            }
+        });
+        if (!packed.isEmpty()) {
+            item.put(STATE_ATTRIBUTE, new AttributeValue().withB(encode(packed)));
+        }
+        return item;
+    }
+
+    @Override
+    public Map<String, AttributeValue> untransform(Parameters<?> parameters) {
+        Map<String, AttributeValue> values = parameters.getAttributeValues();
+        AttributeValue state = values.get(STATE_ATTRIBUTE);
+        if (state == null || state.getB() == null) {
+            // written in the document format
+            return values;
+        }
+        Map<String, AttributeValue> item = new HashMap<>(values);
+        item.remove(STATE_ATTRIBUTE);
+        item.putAll(decode(state.getB()));
+        return item;
+    }
+
+    private boolean keepsTopLevel(Parameters<?> parameters, String name) {
+        return topLevel.contains(name)
+                || name.equals(parameters.getHashKeyName())
+                || name.equals(parameters.getRangeKeyName());
+    }
+
+    static ByteBuffer encode(Map<String, AttributeValue> attributes) {
+        Encoder encoder = new Encoder();
+        encoder.write(FORMAT_VERSION);
+        encoder.writeMap(attributes);
+        return ByteBuffer.wrap(encoder.buffer, 0, encoder.size);
+    }
+
+    static Map<String, AttributeValue> decode(ByteBuffer state) {
+        ByteBuffer in = state.duplicate();
+        byte version = in.get();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new DynamoDBMappingException(
+                    "Unsupported item format version " + version);
+        }
+        Decoder decoder = new Decoder(in, DICTIONARIES.get(version));
+        if (decoder.in.get() != TAG_MAP) {
+            throw new DynamoDBMappingException("Malformed item state");
+        }
+        return decoder.readMap();
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> strings = new ArrayList<>(first);
+        strings.addAll(second);
+        return List.copyOf(strings);
+    }
+
+    // writes into a plain array, ByteArrayOutputStream locks on every byte
+    private static class Encoder {
+        private byte[] buffer = new byte[512];
+        private int size;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Encoder() {
+            for (String string : DICTIONARIES.get(FORMAT_VERSION)) {
+                strings.put(string, strings.size());
+            }
+        }
+
+        void writeValue(AttributeValue value) {
+            if (value.getS() != null) {
+                write(TAG_STRING);
+                writeString(value.getS());
+            } else if (value.getN() != null) {
+                writeNumber(value.getN());
+            } else if (value.getBOOL() != null) {
+                write(value.getBOOL() ? TAG_TRUE : TAG_FALSE);
+            } else if (value.getM() != null) {
+                writeMap(value.getM());
+            } else if (value.getL() != null) {
+                write(TAG_LIST);
+                writeVarint(value.getL().size());
+                value.getL().forEach(this::writeValue);
+            } else if (value.getB() != null) {
+                write(TAG_BINARY);
+                writeBytes(value.getB());
+            } else if (value.getSS() != null) {
+                write(TAG_STRING_SET);
+                writeVarint(value.getSS().size());
+                value.getSS().forEach(this::writeString);
+            } else if (value.getNS() != null) {
+                write(TAG_NUMBER_SET);
+                writeVarint(value.getNS().size());
+                value.getNS().forEach(this::writeString);
+            } else if (value.getBS() != null) {
+                write(TAG_BINARY_SET);
+                writeVarint(value.getBS().size());
+                value.getBS().forEach(this::writeBytes);
+            } else {
+                write(TAG_NULL);
+            }
+        }
+
+        void writeMap(Map<String, AttributeValue> map) {
+            write(TAG_MAP);
+            writeVarint(map.size());
+            map.forEach((name, value) -> {
+                writeString(name);
+                writeValue(value);
+            });
+        }
+
+        // whole numbers as zigzag varints, anything else as its text
+        void writeNumber(String number) {
+            if (isCanonicalLong(number)) {
+                long whole = Long.parseLong(number);
+                write(TAG_INTEGER);
+                writeVarint((whole << 1) ^ (whole >> 63));
+            } else {
+                write(TAG_NUMBER);
+                writeString(number);
+            }
+        }
+
+        /*
+        checked up front rather than catching parse failures, which are slow.
+        excludes forms like "007" or "-0" that wouldn't be written back the
+        same, and anything long enough to overflow.
+         */
+        private static boolean isCanonicalLong(String number) {
+            int start = number.startsWith("-") ? 1 : 0;
+            int digits = number.length() - start;
+            if (digits < 1 || digits > 18) {
+                return false;
+            }
+            if (number.charAt(start) == '0' && (digits > 1 || start == 1)) {
+                return false;
+            }
+            for (int i = start; i < number.length(); i++) {
+                char c = number.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 0 and the string for a new one, or its index + 1 after that
+        void writeString(String string) {
+            Integer index = strings.get(string);
+            if (index != null) {
+                writeVarint(index + 1);
+                return;
+            }
+            strings.put(string, strings.size());
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(0);
+            writeVarint(bytes.length);
+            write(bytes);
+        }
+
+        void writeBytes(ByteBuffer buffer) {
+            ByteBuffer bytes = buffer.duplicate();
+            writeVarint(bytes.remaining());
+            ensureCapacity(bytes.remaining());
+            int length = bytes.remaining();
+            bytes.get(this.buffer, size, length);
+            size += length;
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void write(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+
+    private static class Decoder {
+        private final ByteBuffer in;
+        private final List<String> strings;
+
+        Decoder(ByteBuffer in, List<String> dictionary) {
+            this.in = in;
+            this.strings = new ArrayList<>(dictionary);
+        }
+
+        AttributeValue readValue() {
+            byte tag = in.get();
+            switch (tag) {
+                case TAG_NULL:
+                    return new AttributeValue().withNULL(true);
+                case TAG_TRUE:
+                    return new AttributeValue().withBOOL(true);
+                case TAG_FALSE:
+                    return new AttributeValue().withBOOL(false);
+                case TAG_INTEGER:
+                    long zigzag = readVarint();
+                    return new AttributeValue().withN(
+                            Long.toString((zigzag >>> 1) ^ -(zigzag & 1)));
+                case TAG_NUMBER:
+                    return new AttributeValue().withN(readString());
+                case TAG_STRING:
+                    return new AttributeValue().withS(readString());
+                case TAG_BINARY:
+                    return new AttributeValue().withB(readBytes());
+                case TAG_MAP:
+                    return new AttributeValue().withM(readMap());
+                case TAG_LIST: {
+                    int size = readSize();
+                    List<AttributeValue> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return new AttributeValue().withL(list);
+                }
+                case TAG_STRING_SET:
+                case TAG_NUMBER_SET: {
+                    int size = readSize();
+                    List<String> set = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        set.add(readString());
+                    }
+                    return tag == TAG_STRING_SET
+                            ? new AttributeValue().withSS(set)
+                            : new AttributeValue().withNS(set);
+                }
+                case TAG_BINARY_SET: {
+                    int size = readSize();
+                    List<ByteBuffer> set = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        set.add(readBytes());
+                    }
+                    return new AttributeValue().withBS(set);
+                }
+                default:
+                    throw new DynamoDBMappingException("Unknown item state tag " + tag);
+            }
+        }
+
+        Map<String, AttributeValue> readMap() {
+            int size = readSize();
+            Map<String, AttributeValue> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                String name = readString();
+                map.put(name, readValue());
+            }
+            return map;
+        }
+
+        String readString() {
+            int index = readSize();
+            if (index > 0) {
+                return strings.get(index - 1);
+            }
+            byte[] bytes = new byte[readSize()];
+            in.get(bytes);
+            String string = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(string);
+            return string;
+        }
+
+        ByteBuffer readBytes() {
+            byte[] bytes = new byte[readSize()];
+            in.get(bytes);
+            return ByteBuffer.wrap(bytes);
+        }
+
+        int readSize() {
+            return Math.toIntExact(readVarint());
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new DynamoDBMappingException("Malformed varint in item state");
+        }
+    }
+}
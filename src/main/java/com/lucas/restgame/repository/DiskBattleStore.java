@@ -0,0 +1,455 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/*
+keeps battles in a single append-only log file, memory-mapped, for single
+node deployments that want memory speed and still survive a restart. every
+write appends a record holding the battle's whole item in the compact
+binary format, and an in-memory index points each battle ID at its latest
+record, so reads are a lookup and a decode straight from the mapping.
+
+writes are serialized by one lock, a ReentrantLock so a virtual thread
+waiting on a sync to disk doesn't pin its carrier. reads take no lock. once more of
+the file is superseded records than live ones, it is compacted: the live
+records are copied to a new file that atomically replaces the old one.
+readers still holding positions in the old file keep reading from its
+mapping, which stays valid until they're done with it.
+
+records are [length][crc32][type][id length][id][item], with the length and
+crc covering everything after them. on startup the log is replayed up to
+the first record that is incomplete or fails its checksum, which is where
+a crash mid-write leaves off.
+ */
+@Component
+@Profile("disk")
+public class DiskBattleStore implements BattleStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskBattleStore.class);
+
+    private static final String LOG_FILE = "battles.log";
+    private static final String COMPACTED_FILE = "battles.log.compact";
+    private static final int HEADER_BYTES = 8;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // IDs are written behind an unsigned short length
+    private static final int MAX_ID_BYTES = 0xFFFF;
+    private static final int INITIAL_CAPACITY = 16 * 1024 * 1024;
+    // don't bother compacting files smaller than this
+    private static final long MIN_COMPACTION_BYTES = 4 * 1024 * 1024;
+
+    private final BattleItemCodec codec;
+    private final Path directory;
+    private final boolean sync;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+    private volatile Segment segment;
+    // bytes taken up by records that are still the latest for their battle
+    private long liveBytes;
+    private final ExecutorService compactor =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "battle-store-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private boolean compactionScheduled;
+
+    public DiskBattleStore(
+            BattleItemCodec codec,
+            @Value("${battle.store.disk.path:data}") String directory,
+            @Value("${battle.store.disk.sync:false}") boolean sync) throws IOException {
+        this.codec = codec;
+        this.directory = Path.of(directory);
+        this.sync = sync;
+        Files.createDirectories(this.directory);
+        // a compaction that didn't finish never replaced the log, so drop it
+        Files.deleteIfExists(this.directory.resolve(COMPACTED_FILE));
+        this.segment = new Segment(this.directory.resolve(LOG_FILE));
+        recover();
+    }
+
+    // an open, mapped log file
+    private static final class Segment {
+        private final FileChannel channel;
+        private volatile MappedByteBuffer buffer;
+        private int writePosition;
+
+        Segment(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(INITIAL_CAPACITY, channel.size()));
+        }
+
+        // grows the mapping, which also grows the file
+        void ensureCapacity(int bytes) throws IOException {
+            long needed = (long) writePosition + bytes;
+            if (needed <= buffer.capacity()) {
+                return;
+            }
+            long capacity = Math.max((long) buffer.capacity() * 2, needed);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("Battle log is full");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        ByteBuffer slice(int offset, int length) {
+            return buffer.slice(offset, length);
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    // where a battle's latest record is, and what the index needs to know about it
+    private record Location(
+            Segment segment,
+            int offset,
+            int recordLength,
+            int itemOffset,
+            int itemLength,
+            long version,
+            BattleStatus status) { }
+
+    @Override
+    public BattlePage getBattles(BattleStatus status, int limit, String nextToken)
+            throws IllegalArgumentException {
+        return LocalPages.page(index, status, limit, nextToken,
+                Location::status, this::load);
+    }
+
+    @Override
+    public Iterable<Battle> scanAllBattles() {
+        return () -> new Iterator<>() {
+            private final Iterator<Location> locations = index.values().iterator();
+
+            @Override
+            public boolean hasNext() {
+                return locations.hasNext();
+            }
+
+            @Override
+            public Battle next() {
+                return load(locations.next());
+            }
+        };
+    }
+
+    // throws IllegalArgumentException for an ID too long to be logged
+    @Override
+    public Battle createBattle(Battle battle)
+            throws BattleConflictException, IllegalArgumentException {
+        if (battle.getBattleID() == null) {
+            battle.setBattleID(UUID.randomUUID().toString());
+        }
+        writeLock.lock();
+        try {
+            if (index.containsKey(battle.getBattleID())) {
+                throw new BattleConflictException(battle.getBattleID(), null);
+            }
+            Long previousVersion = battle.getVersion();
+            battle.setVersion(1L);
+            try {
+                put(battle);
+            } catch (RuntimeException e) {
+                battle.setVersion(previousVersion);
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return battle;
+    }
+
+    @Override
+    public Battle getBattleByID(String battleID) {
+        return load(index.get(battleID));
+    }
+
+    @Override
+    public Map<String, Battle> getBattlesByID(Collection<String> battleIDs) {
+        Map<String, Battle> found = new HashMap<>();
+        for (String battleID : battleIDs) {
+            Battle battle = getBattleByID(battleID);
+            if (battle != null) {
+                found.put(battleID, battle);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean deleteBattleByID(String battleID) {
+        writeLock.lock();
+        try {
+            Location location = index.get(battleID);
+            if (location == null) {
+                return false;
+            }
+            append(DELETE, battleID, ByteBuffer.allocate(0));
+            index.remove(battleID);
+            liveBytes -= location.recordLength();
+            scheduleCompactionIfNeeded();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public String updateBattle(String battleID, Battle battle)
+            throws BattleConflictException {
+        writeLock.lock();
+        try {
+            Location current = index.get(battleID);
+            Long version = battle.getVersion();
+            if (current == null || version == null || current.version() != version) {
+                throw new BattleConflictException(battleID, null);
+            }
+            battle.setVersion(version + 1);
+            try {
+                put(battle);
+            } catch (RuntimeException e) {
+                battle.setVersion(version);
+                throw e;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return battleID;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        compactor.shutdown();
+        writeLock.lock();
+        try {
+            segment.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // must hold the write lock
+    private void put(Battle battle) {
+        String battleID = battle.getBattleID();
+        Location location = append(PUT, battleID, codec.toBytes(battle));
+        Location previous = index.put(battleID, new Location(location.segment(),
+                location.offset(), location.recordLength(), location.itemOffset(),
+                location.itemLength(), battle.getVersion(), battle.getStatus()));
+        liveBytes += location.recordLength();
+        if (previous != null) {
+            liveBytes -= previous.recordLength();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /*
+    must hold the write lock. the returned location has no version or status.
+    throws IllegalArgumentException, before writing anything, for an ID too
+    long to be logged.
+     */
+    private Location append(byte type, String battleID, ByteBuffer item)
+            throws IllegalArgumentException {
+        byte[] id = battleID.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            // a wrapped length would corrupt every record after this one
+            throw new IllegalArgumentException(String.format(
+                    "A battleID can be at most %s bytes long", MAX_ID_BYTES));
+        }
+        int bodyLength = 1 + 2 + id.length + item.remaining();
+        int recordLength = HEADER_BYTES + bodyLength;
+        Segment current = segment;
+        try {
+            current.ensureCapacity(recordLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int offset = current.writePosition;
+        ByteBuffer record = current.buffer.duplicate();
+        record.position(offset + HEADER_BYTES);
+        record.put(type);
+        record.putShort((short) id.length);
+        record.put(id);
+        int itemOffset = record.position();
+        int itemLength = item.remaining();
+        record.put(item.duplicate());
+
+        CRC32 crc = new CRC32();
+        crc.update(current.slice(offset + HEADER_BYTES, bodyLength));
+        // the header goes last, so a torn write never looks complete
+        record.putInt(offset + 4, (int) crc.getValue());
+        record.putInt(offset, bodyLength);
+        if (sync) {
+            current.buffer.force(offset, recordLength);
+        }
+        current.writePosition = offset + recordLength;
+        return new Location(current, offset, recordLength, itemOffset, itemLength, 0, null);
+    }
+
+    private Battle load(Location location) {
+        if (location == null) {
+            return null;
+        }
+        return codec.toBattle(codec.toItem(location.segment().slice(
+                location.itemOffset(), location.itemLength())));
+    }
+
+    // rebuilds the index from the log, stopping at the first damaged record
+    private void recover() {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        int records = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int bodyLength = buffer.getInt(position);
+            if (bodyLength <= 0 || position + HEADER_BYTES + (long) bodyLength > buffer.capacity()) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(segment.slice(position + HEADER_BYTES, bodyLength));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Battle log is damaged at byte {}, discarding the rest", position);
+                break;
+            }
+            int recordLength = HEADER_BYTES + bodyLength;
+            int bodyStart = position + HEADER_BYTES;
+            byte type = buffer.get(bodyStart);
+            int idLength = Short.toUnsignedInt(buffer.getShort(bodyStart + 1));
+            byte[] id = new byte[idLength];
+            buffer.get(bodyStart + 3, id);
+            String battleID = new String(id, StandardCharsets.UTF_8);
+            int itemOffset = bodyStart + 3 + idLength;
+            int itemLength = recordLength - (itemOffset - position);
+
+            Location previous;
+            if (type == PUT) {
+                Map<String, AttributeValue> item = codec.toItem(
+                        segment.slice(itemOffset, itemLength));
+                previous = index.put(battleID, new Location(segment, position,
+                        recordLength, itemOffset, itemLength,
+                        BattleItemCodec.versionOf(item), BattleItemCodec.statusOf(item)));
+                liveBytes += recordLength;
+            } else {
+                previous = index.remove(battleID);
+            }
+            if (previous != null) {
+                liveBytes -= previous.recordLength();
+            }
+            position += recordLength;
+            records++;
+        }
+        // clear anything left by a torn write, so it can't be mistaken for a record later
+        for (int i = position; i < Math.min(buffer.capacity(), position + HEADER_BYTES); i++) {
+            buffer.put(i, (byte) 0);
+        }
+        segment.writePosition = position;
+        log.info("Recovered {} battles from {} records", index.size(), records);
+    }
+
+    // the size of the log, superseded records included
+    public long logSize() {
+        writeLock.lock();
+        try {
+            return segment.writePosition;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // must hold the write lock
+    private void scheduleCompactionIfNeeded() {
+        long garbage = segment.writePosition - liveBytes;
+        if (compactionScheduled
+                || segment.writePosition < MIN_COMPACTION_BYTES
+                || garbage < liveBytes) {
+            return;
+        }
+        compactionScheduled = true;
+        try {
+            compactor.execute(this::compact);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            compactionScheduled = false;
+        }
+    }
+
+    /*
+    copies the live records to a fresh file and swaps it in. holds the write
+    lock throughout, so writes wait for it but reads carry on. runs in the
+    background once enough of the log is garbage.
+     */
+    public void compact() {
+        writeLock.lock();
+        try {
+            compactionScheduled = false;
+            Path compactedPath = directory.resolve(COMPACTED_FILE);
+            Segment old = segment;
+            try {
+                Segment compacted = new Segment(compactedPath);
+                Map<String, Location> moved = new HashMap<>();
+                for (Map.Entry<String, Location> entry : index.entrySet()) {
+                    Location location = entry.getValue();
+                    compacted.ensureCapacity(location.recordLength());
+                    int offset = compacted.writePosition;
+                    ByteBuffer target = compacted.buffer.duplicate();
+                    target.position(offset);
+                    target.put(old.slice(location.offset(), location.recordLength()));
+                    compacted.writePosition = offset + location.recordLength();
+                    moved.put(entry.getKey(), new Location(compacted, offset,
+                            location.recordLength(),
+                            offset + (location.itemOffset() - location.offset()),
+                            location.itemLength(), location.version(), location.status()));
+                }
+                compacted.buffer.force();
+                Files.move(compactedPath, directory.resolve(LOG_FILE),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                long before = old.writePosition;
+                index.putAll(moved);
+                segment = compacted;
+                liveBytes = compacted.writePosition;
+                // the old mapping stays readable after its channel closes
+                old.channel.close();
+                log.info("Compacted battle log from {} to {} bytes", before, liveBytes);
+            } catch (IOException e) {
+                log.warn("Failed to compact battle log", e);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.lucas.restgame.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucas.restgame.entity.TurnRecord;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/*
+keeps turn records in one append-only file next to DiskBattleStore's log.
+records are [length][crc32][json], and an in-memory index points each
+battle's turns at their offsets, so reading a tail is one positional read
+per turn. the file is never compacted, it is the full history of play.
+deleting a battle's turns appends a record with turn -1, which drops the
+battle from the index, here and whenever the log is replayed. turns
+appended together are written as one record holding a json array, so its
+checksum makes them survive a crash together or not at all.
+
+appends are serialized by one lock, reads take none. like the battle log,
+on startup the file is replayed up to the first record that is incomplete
+or fails its checksum, and anything after it is cut off. a log opened read
+only, e.g. by offline tools while the server is running, leaves it be.
+ */
+@Component
+@Profile("disk")
+public class DiskTurnLog implements TurnLog {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskTurnLog.class);
+
+    private static final String LOG_FILE = "turns.log";
+    private static final int HEADER_BYTES = 8;
+    // the turn of a record that deletes every earlier record of its battle
+    private static final long DELETED = -1;
+    private static final TypeReference<List<TurnRecord>> RECORD_LIST = new TypeReference<>() { };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FileChannel channel;
+    private final boolean sync;
+    private final boolean readOnly;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Map<String, ConcurrentSkipListMap<Long, Long>> index =
+            new ConcurrentHashMap<>();
+    private long writePosition;
+
+    @Autowired
+    public DiskTurnLog(
+            @Value("${battle.store.disk.path:data}") String directory,
+            @Value("${battle.store.disk.sync:false}") boolean sync) throws IOException {
+        this(directory, sync, false);
+    }
+
+    private DiskTurnLog(String directory, boolean sync, boolean readOnly) throws IOException {
+        this.sync = sync;
+        this.readOnly = readOnly;
+        if (readOnly) {
+            this.channel = FileChannel.open(Path.of(directory).resolve(LOG_FILE),
+                    StandardOpenOption.READ);
+        } else {
+            Files.createDirectories(Path.of(directory));
+            this.channel = FileChannel.open(Path.of(directory).resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        recover();
+    }
+
+    // the log as it is now, which can be read but not appended to
+    public static DiskTurnLog openReadOnly(String directory) throws IOException {
+        return new DiskTurnLog(directory, false, true);
+    }
+
+    @Override
+    public void append(TurnRecord record) throws BattleConflictException {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Turn log is open read only");
+        }
+        append(List.of(record), encode(record));
+    }
+
+    @Override
+    public void appendAll(List<TurnRecord> records) throws BattleConflictException {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Turn log is open read only");
+        }
+        if (!records.isEmpty()) {
+            append(records, encode(records));
+        }
+    }
+
+    // records are all of one battle, and buffer holds them as a single log record
+    private void append(List<TurnRecord> records, ByteBuffer buffer)
+            throws BattleConflictException {
+        String battleID = records.get(0).getBattleID();
+        writeLock.lock();
+        try {
+            ConcurrentSkipListMap<Long, Long> turns = index.computeIfAbsent(
+                    battleID, id -> new ConcurrentSkipListMap<>());
+            for (TurnRecord record : records) {
+                if (turns.containsKey(record.getTurn())) {
+                    throw new BattleConflictException(battleID, null);
+                }
+            }
+            long offset = write(buffer);
+            for (TurnRecord record : records) {
+                turns.put(record.getTurn(), offset);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(String battleID) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Turn log is open read only");
+        }
+        TurnRecord tombstone = new TurnRecord();
+        tombstone.setBattleID(battleID);
+        tombstone.setTurn(DELETED);
+        ByteBuffer buffer = encode(tombstone);
+        writeLock.lock();
+        try {
+            if (index.containsKey(battleID)) {
+                write(buffer);
+                index.remove(battleID);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // a record, or a list of them written as one
+    private ByteBuffer encode(Object records) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(records);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + body.length);
+        buffer.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+        return buffer;
+    }
+
+    // writes the record at the end of the log, returning its offset. needs the write lock
+    private long write(ByteBuffer buffer) {
+        long offset = writePosition;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writePosition = offset + buffer.limit();
+        return offset;
+    }
+
+    @Override
+    public List<TurnRecord> readAfter(String battleID, long after) {
+        List<TurnRecord> records = new ArrayList<>();
+        ConcurrentSkipListMap<Long, Long> turns = index.get(battleID);
+        if (turns == null) {
+            return records;
+        }
+        try {
+            // turns appended together share an offset, which is only read once
+            long lastOffset = -1;
+            List<TurnRecord> appended = List.of();
+            for (Map.Entry<Long, Long> turn : turns.tailMap(after, false).entrySet()) {
+                if (turn.getValue() != lastOffset) {
+                    lastOffset = turn.getValue();
+                    appended = decode(readBody(lastOffset));
+                }
+                for (TurnRecord record : appended) {
+                    if (record.getTurn() == turn.getKey()) {
+                        records.add(record);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            if (!readOnly) {
+                channel.force(false);
+            }
+            channel.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private List<TurnRecord> decode(byte[] body) throws IOException {
+        return body.length > 0 && body[0] == '['
+                ? objectMapper.readValue(body, RECORD_LIST)
+                : List.of(objectMapper.readValue(body, TurnRecord.class));
+    }
+
+    private byte[] readBody(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, offset);
+        ByteBuffer body = ByteBuffer.allocate(header.getInt(0));
+        readFully(body, offset + HEADER_BYTES);
+        return body.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Turn log ends at byte " + (offset + buffer.position()));
+            }
+        }
+    }
+
+    // rebuilds the index from the log, stopping at the first damaged record
+    private void recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        int records = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            int bodyLength = header.getInt(0);
+            if (bodyLength <= 0 || position + HEADER_BYTES + (long) bodyLength > size) {
+                break;
+            }
+            byte[] body = readBody(position);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != header.getInt(4)) {
+                log.warn("Turn log is damaged at byte {}, discarding the rest", position);
+                break;
+            }
+            for (TurnRecord record : decode(body)) {
+                if (record.getTurn() == DELETED) {
+                    index.remove(record.getBattleID());
+                } else {
+                    index.computeIfAbsent(record.getBattleID(),
+                            id -> new ConcurrentSkipListMap<>()).put(record.getTurn(), position);
+                    records++;
+                }
+            }
+            position += HEADER_BYTES + bodyLength;
+        }
+        if (position < size && !readOnly) {
+            channel.truncate(position);
+        }
+        writePosition = position;
+        log.info("Recovered {} turns of {} battles", records, index.size());
+    }
+}
@@ -0,0 +1,300 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMappingException;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.QueryResultPage;
+import com.amazonaws.services.dynamodbv2.datamodeling.ScanResultPage;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.lucas.restgame.entity.Battle;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.HashMap;
+import java.util.Map;
+
+// the default store, used unless the memory or disk profile is active
+@Component
+@Profile("!memory & !disk")
+public class DynamoDBBattleStore implements BattleStore {
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Value("${battle.expiry.configure-table:false}")
+    private boolean configureTimeToLive;
+
+    /*
+    turns on the table's TTL for expiresAt, for tables that aren't set up
+    separately. DynamoDB then deletes concluded battles some time after
+    they expire, whether or not they were archived.
+     */
+    @PostConstruct
+    public void enableTimeToLive() {
+        if (!configureTimeToLive) {
+            return;
+        }
+        DynamoDBTimeToLive.enable(amazonDynamoDB, dynamoDBMapper
+                .generateCreateTableRequest(Battle.class).getTableName(), "expiresAt");
+    }
+
+    // the table's TTL, whether set up here or with the table
+    @Override
+    public boolean expiresBattles() {
+        return true;
+    }
+
+    /*
+    with a status, only battles in that status are read, using the status
+    index instead of scanning the table. its shards are read in order, and
+    the IDs found are loaded with a batched read. a battle whose status
+    changed since the index was updated is left out of the page.
+     */
+    @Override
+    public BattlePage getBattles(BattleStatus status, int limit, String nextToken)
+            throws IllegalArgumentException {
+        Map<String, AttributeValue> startKey = decodeToken(nextToken);
+        if (status == null) {
+            ScanResultPage<Battle> page = dynamoDBMapper.scanPage(Battle.class,
+                    new DynamoDBScanExpression()
+                            .withLimit(limit)
+                            .withExclusiveStartKey(startKey));
+            return new BattlePage(page.getResults(),
+                    encodeToken(page.getLastEvaluatedKey()));
+        }
+        // a token either continues a shard or, without a battleID, starts the next one
+        int shard = 0;
+        if (startKey != null) {
+            shard = shardOf(startKey.get("statusShard"), status);
+            if (!startKey.containsKey("battleID")) {
+                startKey = null;
+            }
+        }
+        List<String> battleIDs = new ArrayList<>(limit);
+        String token = null;
+        while (shard < Battle.STATUS_SHARDS) {
+            QueryResultPage<Battle> page = dynamoDBMapper.queryPage(Battle.class,
+                    new DynamoDBQueryExpression<Battle>()
+                            .withIndexName(Battle.STATUS_INDEX)
+                            .withConsistentRead(false)
+                            .withKeyConditionExpression("statusShard = :shard")
+                            .withExpressionAttributeValues(Map.of(":shard",
+                                    new AttributeValue().withS(
+                                            Battle.statusShard(status, shard))))
+                            .withLimit(limit - battleIDs.size())
+                            .withExclusiveStartKey(startKey));
+            page.getResults().forEach(battle -> battleIDs.add(battle.getBattleID()));
+            token = encodeToken(page.getLastEvaluatedKey());
+            if (token != null) {
+                break;
+            }
+            shard++;
+            startKey = null;
+            if (battleIDs.size() >= limit && shard < Battle.STATUS_SHARDS) {
+                token = encodeToken(Map.of("statusShard",
+                        new AttributeValue().withS(Battle.statusShard(status, shard))));
+                break;
+            }
+        }
+        Map<String, Battle> loaded = getBattlesByID(battleIDs);
+        List<Battle> battles = new ArrayList<>(battleIDs.size());
+        for (String battleID : battleIDs) {
+            Battle battle = loaded.get(battleID);
+            if (battle != null && battle.getStatus() == status) {
+                battles.add(battle);
+            }
+        }
+        return new BattlePage(battles, token);
+    }
+
+    // the shard a page token is in, which must be one of status's
+    private static int shardOf(AttributeValue statusShard, BattleStatus status)
+            throws IllegalArgumentException {
+        String prefix = status + "#";
+        if (statusShard == null || statusShard.getS() == null
+                || !statusShard.getS().startsWith(prefix)) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        // parsing failures are IllegalArgumentExceptions already
+        int shard = Integer.parseInt(statusShard.getS().substring(prefix.length()));
+        if (shard < 0 || shard >= Battle.STATUS_SHARDS) {
+            throw new IllegalArgumentException("Invalid page token");
+        }
+        return shard;
+    }
+
+    /*
+    iterates over every battle in the table, loading one scan page at a time
+    and discarding it once iterated past, so memory use stays constant
+     */
+    @Override
+    public Iterable<Battle> scanAllBattles() {
+        return dynamoDBMapper.scan(Battle.class, new DynamoDBScanExpression(),
+                DynamoDBMapperConfig.builder()
+                        .withPaginationLoadingStrategy(DynamoDBMapperConfig
+                                .PaginationLoadingStrategy.ITERATION_ONLY)
+                        .build());
+    }
+
+    @Override
+    public Battle createBattle(Battle battle) {
+        dynamoDBMapper.save(battle);
+        return battle;
+    }
+
+    /*
+    writes in batches of up to 25 items. a batch write can't be conditional,
+    which is safe for new battles since the mapper gives each a fresh random
+    ID. it doesn't handle the version attribute though, so their initial
+    version is set here. items DynamoDB never processed are left out of the
+    result.
+     */
+    @Override
+    public List<Battle> createBattles(Collection<Battle> battles) {
+        battles.forEach(battle -> battle.setVersion(1L));
+        List<DynamoDBMapper.FailedBatch> failures = dynamoDBMapper.batchSave(battles);
+        if (failures.isEmpty()) {
+            return new ArrayList<>(battles);
+        }
+        Set<String> failedIDs = new HashSet<>();
+        for (DynamoDBMapper.FailedBatch failure : failures) {
+            failure.getUnprocessedItems().values().forEach(requests -> requests.forEach(
+                    request -> failedIDs.add(request.getPutRequest()
+                            .getItem().get("battleID").getS())));
+        }
+        List<Battle> created = new ArrayList<>();
+        for (Battle battle : battles) {
+            if (!failedIDs.contains(battle.getBattleID())) {
+                created.add(battle);
+            }
+        }
+        if (created.isEmpty()) {
+            throw new DynamoDBMappingException(
+                    "Failed to create any of the battles", failures.get(0).getException());
+        }
+        return created;
+    }
+
+    @Override
+    public Battle getBattleByID(String battleID) {
+        return dynamoDBMapper.load(Battle.class, battleID);
+    }
+
+    /*
+    loads several battles with batched reads, which the mapper splits into
+    requests of up to 100 keys. battles that don't exist are left out.
+     */
+    @Override
+    public Map<String, Battle> getBattlesByID(Collection<String> battleIDs) {
+        Map<String, Battle> battles = new HashMap<>();
+        if (battleIDs.isEmpty()) {
+            return battles;
+        }
+        List<Battle> keys = new ArrayList<>(battleIDs.size());
+        for (String battleID : battleIDs) {
+            Battle key = new Battle();
+            key.setBattleID(battleID);
+            keys.add(key);
+        }
+        for (List<Object> loaded : dynamoDBMapper.batchLoad(keys).values()) {
+            for (Object item : loaded) {
+                Battle battle = (Battle) item;
+                battles.put(battle.getBattleID(), battle);
+            }
+        }
+        return battles;
+    }
+
+    // TODO conditional return value based on success
+    @Override
+    public boolean deleteBattleByID(String battleID) {
+        Battle battle = this.getBattleByID(battleID);
+        if (battle == null) {
+            return false;
+        }
+        dynamoDBMapper.delete(battle);
+        return true;
+    }
+
+    /*
+    saves an existing battle. the mapper adds a condition on the version
+    attribute, so the save fails if the battle was written since it was
+    loaded, as well as if it no longer exists.
+     */
+    @Override
+    public String updateBattle(String battleID, Battle battle)
+            throws BattleConflictException {
+        try {
+            dynamoDBMapper.save(battle,
+                    new DynamoDBSaveExpression()
+                            .withExpectedEntry("battleID",
+                                    new ExpectedAttributeValue(
+                                            new AttributeValue().withS(battleID)
+                                    )));
+        } catch (ConditionalCheckFailedException e) {
+            throw new BattleConflictException(battleID, e);
+        }
+        return battleID;
+    }
+
+    /*
+    page tokens are the last evaluated key, which only ever holds string
+    attributes here, as a base64 encoded query string
+     */
+    private static String encodeToken(Map<String, AttributeValue> key) {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        StringJoiner query = new StringJoiner("&");
+        key.forEach((name, value) -> query.add(
+                URLEncoder.encode(name, StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(value.getS(), StandardCharsets.UTF_8)));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                query.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, AttributeValue> decodeToken(String token)
+            throws IllegalArgumentException {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        // decoding failures are IllegalArgumentExceptions already
+        String query = new String(
+                Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        Map<String, AttributeValue> key = new HashMap<>();
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            key.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                    new AttributeValue().withS(
+                            URLDecoder.decode(parts[1], StandardCharsets.UTF_8)));
+        }
+        return key;
+    }
+}
@@ -0,0 +1,28 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.DescribeTimeToLiveRequest;
+import com.amazonaws.services.dynamodbv2.model.TimeToLiveSpecification;
+import com.amazonaws.services.dynamodbv2.model.TimeToLiveStatus;
+import com.amazonaws.services.dynamodbv2.model.UpdateTimeToLiveRequest;
+
+// turns on a table's TTL, for tables that aren't set up separately
+final class DynamoDBTimeToLive {
+
+    private DynamoDBTimeToLive() { }
+
+    static void enable(AmazonDynamoDB amazonDynamoDB, String tableName, String attributeName) {
+        String status = amazonDynamoDB.describeTimeToLive(
+                new DescribeTimeToLiveRequest().withTableName(tableName))
+                .getTimeToLiveDescription().getTimeToLiveStatus();
+        if (TimeToLiveStatus.ENABLED.toString().equals(status)
+                || TimeToLiveStatus.ENABLING.toString().equals(status)) {
+            return;
+        }
+        amazonDynamoDB.updateTimeToLive(new UpdateTimeToLiveRequest()
+                .withTableName(tableName)
+                .withTimeToLiveSpecification(new TimeToLiveSpecification()
+                        .withAttributeName(attributeName)
+                        .withEnabled(true)));
+    }
+}
@@ -0,0 +1,130 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBSaveExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTransactionWriteExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.TransactionWriteRequest;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.lucas.restgame.entity.TurnRecord;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+keeps turn records in their own table, keyed by battle ID and turn, so a
+battle's tail is a single query. an append is a put conditional on the
+turn not being there yet, which is what keeps two nodes from both playing
+the same turn. turns appended together go in one transaction, so either
+all of them are put or, if any is already there, none are.
+
+records are deleted with their battle, and also carry an expiry as the
+table's TTL attribute, so those of battles that leave the store some other
+way, like through the battle table's own TTL, don't stay forever. an
+ongoing battle left unplayed for longer than the TTL falls back to its
+last snapshot, losing the turns played since.
+ */
+@Component
+@Profile("!memory & !disk")
+public class DynamoDBTurnLog implements TurnLog {
+
+    @Autowired
+    private DynamoDBMapper dynamoDBMapper;
+
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Value("${battle.journal.ttl:90d}")
+    private Duration ttl;
+
+    @Value("${battle.expiry.configure-table:false}")
+    private boolean configureTimeToLive;
+
+    @PostConstruct
+    public void enableTimeToLive() {
+        if (configureTimeToLive) {
+            DynamoDBTimeToLive.enable(amazonDynamoDB, dynamoDBMapper
+                    .generateCreateTableRequest(TurnRecord.class).getTableName(), "expiresAt");
+        }
+    }
+
+    @Override
+    public void append(TurnRecord record) throws BattleConflictException {
+        record.setExpiresAt(Instant.now().plus(ttl).getEpochSecond());
+        try {
+            dynamoDBMapper.save(record, new DynamoDBSaveExpression().withExpected(
+                    Map.of("battleID", new ExpectedAttributeValue(false))));
+        } catch (ConditionalCheckFailedException e) {
+            throw new BattleConflictException(record.getBattleID(), e);
+        }
+    }
+
+    @Override
+    public void appendAll(List<TurnRecord> records) throws BattleConflictException {
+        if (records.isEmpty()) {
+            return;
+        }
+        long expiresAt = Instant.now().plus(ttl).getEpochSecond();
+        TransactionWriteRequest request = new TransactionWriteRequest();
+        for (TurnRecord record : records) {
+            record.setExpiresAt(expiresAt);
+            request.addPut(record, new DynamoDBTransactionWriteExpression()
+                    .withConditionExpression("attribute_not_exists(battleID)"));
+        }
+        try {
+            dynamoDBMapper.transactionWrite(request);
+        } catch (TransactionCanceledException e) {
+            // only a failed condition means the turns were played elsewhere
+            if (e.getCancellationReasons() != null && e.getCancellationReasons().stream()
+                    .anyMatch(reason -> "ConditionalCheckFailed".equals(reason.getCode()))) {
+                throw new BattleConflictException(records.get(0).getBattleID(), e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<TurnRecord> readAfter(String battleID, long after) {
+        return new ArrayList<>(dynamoDBMapper.query(TurnRecord.class,
+                new DynamoDBQueryExpression<TurnRecord>()
+                        .withHashKeyValues(key(battleID))
+                        .withRangeKeyCondition("turn", new Condition()
+                                .withComparisonOperator(ComparisonOperator.GT)
+                                .withAttributeValueList(new AttributeValue()
+                                        .withN(Long.toString(after))))
+                        .withConsistentRead(true)));
+    }
+
+    @Override
+    public void delete(String battleID) {
+        List<TurnRecord> records = dynamoDBMapper.query(TurnRecord.class,
+                new DynamoDBQueryExpression<TurnRecord>()
+                        .withHashKeyValues(key(battleID))
+                        .withConsistentRead(true));
+        List<DynamoDBMapper.FailedBatch> failures = dynamoDBMapper.batchDelete(records);
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Failed to delete the turns of battle " + battleID,
+                    failures.get(0).getException());
+        }
+    }
+
+    private static TurnRecord key(String battleID) {
+        TurnRecord key = new TurnRecord();
+        key.setBattleID(battleID);
+        return key;
+    }
+}
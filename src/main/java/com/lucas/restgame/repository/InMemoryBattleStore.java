@@ -0,0 +1,129 @@
+package com.lucas.restgame.repository;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*
+keeps battles in memory, for tests, benchmarks and trying the game out
+without DynamoDB. nothing survives a restart. battles are held as immutable
+items rather than live objects, so callers can't change a stored battle
+without saving it, and every write is a single compare-and-set, so readers
+and writers never block each other.
+ */
+@Component
+@Profile("memory")
+public class InMemoryBattleStore implements BattleStore {
+
+    private final BattleItemCodec codec;
+    private final ConcurrentSkipListMap<String, Stored> battles = new ConcurrentSkipListMap<>();
+
+    public InMemoryBattleStore(BattleItemCodec codec) {
+        this.codec = codec;
+    }
+
+    // compared by identity, so a compare-and-set only matches the exact write read
+    private static final class Stored {
+        final Map<String, AttributeValue> item;
+        final long version;
+        final BattleStatus status;
+
+        Stored(Map<String, AttributeValue> item) {
+            this.item = item;
+            this.version = BattleItemCodec.versionOf(item);
+            this.status = BattleItemCodec.statusOf(item);
+        }
+    }
+
+    @Override
+    public BattlePage getBattles(BattleStatus status, int limit, String nextToken)
+            throws IllegalArgumentException {
+        return LocalPages.page(battles, status, limit, nextToken,
+                stored -> stored.status, this::load);
+    }
+
+    @Override
+    public Iterable<Battle> scanAllBattles() {
+        return () -> new Iterator<>() {
+            private final Iterator<Stored> stored = battles.values().iterator();
+
+            @Override
+            public boolean hasNext() {
+                return stored.hasNext();
+            }
+
+            @Override
+            public Battle next() {
+                return load(stored.next());
+            }
+        };
+    }
+
+    @Override
+    public Battle createBattle(Battle battle) throws BattleConflictException {
+        if (battle.getBattleID() == null) {
+            battle.setBattleID(UUID.randomUUID().toString());
+        }
+        Long previousVersion = battle.getVersion();
+        battle.setVersion(1L);
+        if (battles.putIfAbsent(battle.getBattleID(), new Stored(codec.toItem(battle))) != null) {
+            battle.setVersion(previousVersion);
+            throw new BattleConflictException(battle.getBattleID(), null);
+        }
+        return battle;
+    }
+
+    @Override
+    public Battle getBattleByID(String battleID) {
+        return load(battles.get(battleID));
+    }
+
+    @Override
+    public Map<String, Battle> getBattlesByID(Collection<String> battleIDs) {
+        Map<String, Battle> found = new HashMap<>();
+        for (String battleID : battleIDs) {
+            Battle battle = getBattleByID(battleID);
+            if (battle != null) {
+                found.put(battleID, battle);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean deleteBattleByID(String battleID) {
+        return battles.remove(battleID) != null;
+    }
+
+    @Override
+    public String updateBattle(String battleID, Battle battle)
+            throws BattleConflictException {
+        Stored current = battles.get(battleID);
+        Long version = battle.getVersion();
+        if (current == null || !Objects.equals(current.version, version)) {
+            throw new BattleConflictException(battleID, null);
+        }
+        battle.setVersion(version + 1);
+        // fails if another write landed since the read above
+        if (!battles.replace(battleID, current, new Stored(codec.toItem(battle)))) {
+            battle.setVersion(version);
+            throw new BattleConflictException(battleID, null);
+        }
+        return battleID;
+    }
+
+    private Battle load(Stored stored) {
+        return stored == null ? null : codec.toBattle(stored.item);
+    }
+}
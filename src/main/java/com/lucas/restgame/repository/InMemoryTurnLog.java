@@ -0,0 +1,59 @@
+package com.lucas.restgame.repository;
+
+import com.lucas.restgame.entity.TurnRecord;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// keeps turn records in memory, alongside InMemoryBattleStore
+@Component
+@Profile("memory")
+public class InMemoryTurnLog implements TurnLog {
+
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, TurnRecord>> turns =
+            new ConcurrentHashMap<>();
+
+    @Override
+    public void append(TurnRecord record) throws BattleConflictException {
+        appendAll(List.of(record));
+    }
+
+    // appends to one battle's records are serialized on its map, so a batch goes in whole
+    @Override
+    public void appendAll(List<TurnRecord> records) throws BattleConflictException {
+        if (records.isEmpty()) {
+            return;
+        }
+        String battleID = records.get(0).getBattleID();
+        ConcurrentSkipListMap<Long, TurnRecord> battleTurns =
+                turns.computeIfAbsent(battleID, id -> new ConcurrentSkipListMap<>());
+        synchronized (battleTurns) {
+            for (TurnRecord record : records) {
+                if (battleTurns.containsKey(record.getTurn())) {
+                    throw new BattleConflictException(battleID, null);
+                }
+            }
+            for (TurnRecord record : records) {
+                battleTurns.put(record.getTurn(), record);
+            }
+        }
+    }
+
+    @Override
+    public List<TurnRecord> readAfter(String battleID, long after) {
+        ConcurrentSkipListMap<Long, TurnRecord> battleTurns = turns.get(battleID);
+        if (battleTurns == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(battleTurns.tailMap(after, false).values());
+    }
+
+    @Override
+    public void delete(String battleID) {
+        turns.remove(battleID);
+    }
+}
@@ -0,0 +1,63 @@
+package com.lucas.restgame.repository;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Function;
+
+// paging over the sorted indexes of the local stores
+final class LocalPages {
+
+    private LocalPages() { }
+
+    /*
+    walks the index in battle ID order from just after the token, which is
+    the last ID of the previous page. like a DynamoDB scan, a page may come
+    back with a token and nothing after it.
+     */
+    static <T> BattlePage page(
+            NavigableMap<String, T> index,
+            BattleStatus status,
+            int limit,
+            String nextToken,
+            Function<T, BattleStatus> statusOf,
+            Function<T, Battle> load) throws IllegalArgumentException {
+        NavigableMap<String, T> remaining = nextToken == null || nextToken.isEmpty()
+                ? index
+                : index.tailMap(decodeToken(nextToken), false);
+        List<Battle> battles = new ArrayList<>(limit);
+        String lastID = null;
+        for (Map.Entry<String, T> entry : remaining.entrySet()) {
+            if (battles.size() == limit) {
+                return new BattlePage(battles, encodeToken(lastID));
+            }
+            if (status != null && statusOf.apply(entry.getValue()) != status) {
+                continue;
+            }
+            Battle battle = load.apply(entry.getValue());
+            // a battle deleted mid-walk is skipped
+            if (battle != null) {
+                battles.add(battle);
+                lastID = entry.getKey();
+            }
+        }
+        return new BattlePage(battles, null);
+    }
+
+    private static String encodeToken(String battleID) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                battleID.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeToken(String token) throws IllegalArgumentException {
+        // decoding failures are IllegalArgumentExceptions already
+        return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    }
+}
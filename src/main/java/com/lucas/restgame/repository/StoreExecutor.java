@@ -0,0 +1,21 @@
+package com.lucas.restgame.repository;
+
+import com.lucas.restgame.config.BoundedExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+the threads that wait on the battle store for async repository calls, so
+request threads don't. once the queue is full, calls are rejected rather
+than piling up behind a slow store.
+ */
+@Component
+public class StoreExecutor extends BoundedExecutor {
+
+    public StoreExecutor(
+            @Value("${battle.store.io-threads:16}") int threads,
+            @Value("${battle.store.io-queue-capacity:1000}") int queueCapacity,
+            @Value("${battle.threads.virtual:false}") boolean virtual) {
+        super("battle-store-io", threads, queueCapacity, virtual);
+    }
+}
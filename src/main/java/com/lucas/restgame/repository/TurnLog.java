@@ -0,0 +1,34 @@
+package com.lucas.restgame.repository;
+
+import com.lucas.restgame.entity.TurnRecord;
+
+import java.util.List;
+
+/*
+the append-only record of every turn played, used when battles are event
+sourced. BattleJournal appends to whichever log the active profile selects:
+DynamoDBTurnLog by default, InMemoryTurnLog with the memory profile, or
+DiskTurnLog with the disk profile. records are never changed, and are only
+removed all at once, when their battle is deleted or archived.
+ */
+public interface TurnLog {
+
+    /*
+    throws if the battle already has a record for the turn, which means
+    another request played it first
+     */
+    void append(TurnRecord record) throws BattleConflictException;
+
+    /*
+    appends all of the records or none of them, throwing if the battle
+    already has a record for any of their turns. a retry can then replay
+    the whole list without any of it having been applied already.
+     */
+    void appendAll(List<TurnRecord> records) throws BattleConflictException;
+
+    // the battle's records with a turn greater than after, in turn order
+    List<TurnRecord> readAfter(String battleID, long after);
+
+    // removes every record of the battle, if it has any
+    void delete(String battleID);
+}
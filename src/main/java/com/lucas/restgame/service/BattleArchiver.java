@@ -0,0 +1,106 @@
+package com.lucas.restgame.service;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.repository.BattleArchive;
+import com.lucas.restgame.repository.BattleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+moves concluded battles out of the store and into the BattleArchive, so the
+store, and every scan of it, only grows with the battles still being
+played. concluded battles are found through the status listing, which
+reads the status index in DynamoDB rather than scanning the table.
+archived battles can still be read through BattleRepository. their
+recorded turns are deleted with them, unless kept for ReplayChecker with
+battle.archive.keep-turns.
+ */
+@Component
+public class BattleArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(BattleArchiver.class);
+
+    private final BattleRepository battleRepository;
+    private final BattleArchive battleArchive;
+    private final int batchSize;
+    private final boolean keepTurns;
+    private final AtomicLong archivedCount = new AtomicLong();
+
+    public BattleArchiver(
+            BattleRepository battleRepository,
+            BattleArchive battleArchive,
+            @Value("${battle.archive.batch-size:500}") int batchSize,
+            @Value("${battle.archive.keep-turns:false}") boolean keepTurns) {
+        this.battleRepository = battleRepository;
+        this.battleArchive = battleArchive;
+        this.batchSize = batchSize;
+        this.keepTurns = keepTurns;
+    }
+
+    // the first run waits an interval too, so startup isn't slowed down
+    @Scheduled(initialDelayString = "${battle.archive.interval-ms:600000}",
+            fixedDelayString = "${battle.archive.interval-ms:600000}")
+    public void scheduledArchive() {
+        try {
+            int archived = archiveConcluded();
+            if (archived > 0) {
+                log.info("Archived {} concluded battles", archived);
+            }
+        } catch (RuntimeException e) {
+            // whatever wasn't archived is still in the store for the next run
+            log.warn("Failed to archive concluded battles", e);
+        }
+    }
+
+    /*
+    archives every concluded battle, batchSize at a time. a battle is only
+    deleted from the store once the batch holding it is on disk. returns
+    the number of battles moved.
+     */
+    public int archiveConcluded() {
+        int archived = 0;
+        for (BattleStatus status : BattleStatus.values()) {
+            if (status == BattleStatus.ONGOING) {
+                continue;
+            }
+            List<Battle> batch = new ArrayList<>();
+            String nextToken = null;
+            do {
+                BattlePage page = battleRepository.getBattles(
+                        status, BattleRepository.MAX_PAGE_SIZE, nextToken);
+                batch.addAll(page.getBattles());
+                nextToken = page.getNextToken();
+                if (batch.size() >= batchSize || nextToken == null) {
+                    archived += move(batch);
+                    batch = new ArrayList<>();
+                }
+            } while (nextToken != null);
+        }
+        return archived;
+    }
+
+    private int move(List<Battle> batch) {
+        battleArchive.archive(batch);
+        for (Battle battle : batch) {
+            battleRepository.deleteStoredBattleByID(battle.getBattleID());
+            if (!keepTurns) {
+                battleRepository.deleteTurns(battle.getBattleID());
+            }
+        }
+        archivedCount.addAndGet(batch.size());
+        return batch.size();
+    }
+
+    public long getArchivedCount() {
+        return archivedCount.get();
+    }
+}
@@ -0,0 +1,105 @@
+package com.lucas.restgame.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.repository.BattleCache;
+import com.lucas.restgame.repository.BattleRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+exports every battle as newline-delimited json. each export runs on its own
+thread out of a small fixed set, since it lasts as long as the client takes
+to read it: request threads and store I/O threads are never held up by it.
+battles are sent as scan pages arrive, and a send blocks on a slow reader,
+so pages don't pile up in memory. an export gets its own timeout instead of
+the one every other async request has.
+ */
+@Component
+public class BattleExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(BattleExporter.class);
+
+    public static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final BattleRepository battleRepository;
+    private final BattleCache battleCache;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    // no queue, so an export beyond the limit is turned away instead of waiting
+    private final ThreadPoolExecutor writers;
+
+    public BattleExporter(
+            BattleRepository battleRepository,
+            BattleCache battleCache,
+            ObjectMapper objectMapper,
+            @Value("${battle.export.max-concurrent:4}") int maxConcurrent,
+            @Value("${battle.export.timeout-ms:3600000}") long timeoutMillis) {
+        this.battleRepository = battleRepository;
+        this.battleCache = battleCache;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.writers = new ThreadPoolExecutor(0, maxConcurrent,
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "battle-export");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /*
+    starts an export, which is written to the returned emitter. throws
+    RejectedExecutionException if max-concurrent exports are running.
+     */
+    public ResponseBodyEmitter export() throws RejectedExecutionException {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMillis);
+        AtomicBoolean stopped = new AtomicBoolean();
+        emitter.onTimeout(() -> stopped.set(true));
+        emitter.onError(e -> stopped.set(true));
+        emitter.onCompletion(() -> stopped.set(true));
+        writers.execute(() -> write(emitter, stopped));
+        return emitter;
+    }
+
+    private void write(ResponseBodyEmitter emitter, AtomicBoolean stopped) {
+        try {
+            // make sure turns still held in memory are part of the export
+            battleCache.flushAll();
+            for (Battle battle : battleRepository.scanAllBattles()) {
+                if (stopped.get()) {
+                    return;
+                }
+                emitter.send(objectMapper.writeValueAsBytes(battle), NDJSON);
+                emitter.send(NEWLINE, NDJSON);
+            }
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            // the client went away, or the export timed out
+            log.debug("Battle export ended early", e);
+        } catch (RuntimeException e) {
+            log.warn("Battle export failed", e);
+            emitter.completeWithError(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+}
@@ -0,0 +1,269 @@
+package com.lucas.restgame.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucas.restgame.config.VirtualThreads;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.BattleUpdate;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+pushes each turn's events to the clients watching that battle as server-sent
+events. an update is serialized once and shared by every subscriber. each
+subscriber has a bounded queue drained by a sender, and one that falls a
+full queue behind is disconnected rather than buffered. a dropped client
+can reconnect with Last-Event-ID and catch up from the log.
+
+senders come from a fixed pool, or are virtual threads with
+battle.threads.virtual. a send to a stalled client blocks its sender until
+the connector's write timeout, server.tomcat.connection-timeout, gives up
+on it, so that timeout and the pool size bound how many threads slow
+clients can hold.
+subscribe and publish must be called holding the battle's lock, which keeps
+catch-up and live updates in order.
+ */
+@Component
+public class BattlePublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(BattlePublisher.class);
+
+    private static final String EVENT_NAME = "turn";
+
+    private final ObjectMapper objectMapper;
+    private final int queueCapacity;
+    private final long timeoutMillis;
+    private final ExecutorService senders;
+
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public BattlePublisher(
+            ObjectMapper objectMapper,
+            @Value("${battle.events.queue-capacity:64}") int queueCapacity,
+            @Value("${battle.events.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${battle.events.sender-threads:16}") int senderThreads,
+            @Value("${battle.threads.virtual:false}") boolean virtual) {
+        this.objectMapper = objectMapper;
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+        this.senders = virtual ? VirtualThreads.newPerTaskExecutor() : newSenderPool(senderThreads);
+    }
+
+    /*
+    the queue holds at most one drain per subscriber, since a subscriber
+    only schedules one while it isn't already sending
+     */
+    private static ExecutorService newSenderPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "battle-event-sender-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // a serialized update, shared by every subscriber it is queued for
+    private record Update(long seq, String json, boolean last) { }
+
+    private class Subscriber {
+        private final String battleID;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Update> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile boolean dropping;
+
+        Subscriber(String battleID, SseEmitter emitter) {
+            this.battleID = battleID;
+            this.emitter = emitter;
+        }
+
+        void offer(Update update) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(update)) {
+                /*
+                too far behind, so let it reconnect and catch up from the log.
+                the sender completes the stream, since completing it here
+                would wait out a send blocked on the slow client.
+                 */
+                dropped.incrementAndGet();
+                log.debug("Dropping slow subscriber to battle {}", battleID);
+                dropping = true;
+                close();
+                return;
+            }
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Update update = queue.poll();
+                if (closed) {
+                    if (dropping) {
+                        emitter.complete();
+                    }
+                    return;
+                }
+                if (update == null) {
+                    sending.set(false);
+                    // pick up anything offered after the queue looked empty
+                    if (queue.isEmpty() || !sending.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(update.seq()))
+                            .name(EVENT_NAME)
+                            .data(update.json(), MediaType.APPLICATION_JSON));
+                } catch (IOException | IllegalStateException e) {
+                    // the client went away
+                    close();
+                    return;
+                }
+                if (update.last()) {
+                    close();
+                    emitter.complete();
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+            unsubscribe(this);
+        }
+    }
+
+    // opens a stream of a battle's updates, starting after event seq
+    public SseEmitter subscribe(Battle battle, long after) {
+        return subscribe(battle, after, new SseEmitter(timeoutMillis));
+    }
+
+    // streams through an emitter the caller has set up
+    public SseEmitter subscribe(Battle battle, long after, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(battle.getBattleID(), emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        if (battle.getStatus() == BattleStatus.ONGOING) {
+            subscribers.compute(battle.getBattleID(), (id, watching) -> {
+                if (watching == null) {
+                    watching = new CopyOnWriteArrayList<>();
+                }
+                watching.add(subscriber);
+                return watching;
+            });
+        }
+        List<BattleEvent> missed = battle.getEventsAfter(after);
+        if (!missed.isEmpty() || battle.getStatus() != BattleStatus.ONGOING) {
+            Update catchUp = serialize(battle, missed);
+            if (catchUp != null) {
+                subscriber.offer(catchUp);
+            }
+        }
+        return emitter;
+    }
+
+    /*
+    sends the events a turn added after seq to the battle's subscribers, and
+    ends their streams once the battle has concluded
+     */
+    public void publish(Battle battle, long after) {
+        List<Subscriber> watching = subscribers.get(battle.getBattleID());
+        if (watching == null || watching.isEmpty()) {
+            return;
+        }
+        Update update = serialize(battle, battle.getEventsAfter(after));
+        if (update == null) {
+            return;
+        }
+        for (Subscriber subscriber : watching) {
+            subscriber.offer(update);
+        }
+    }
+
+    public int getSubscriberCount() {
+        int count = 0;
+        for (List<Subscriber> watching : subscribers.values()) {
+            count += watching.size();
+        }
+        return count;
+    }
+
+    // subscribers disconnected for falling behind
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+        subscribers.values().forEach(watching -> watching.forEach(subscriber -> {
+            subscriber.closed = true;
+            subscriber.emitter.complete();
+        }));
+        subscribers.clear();
+    }
+
+    private Update serialize(Battle battle, List<BattleEvent> events) {
+        try {
+            String json = objectMapper.writeValueAsString(new BattleUpdate(
+                    battle.getBattleID(),
+                    battle.getStatus(),
+                    battle.getLastEventSeq(),
+                    events));
+            return new Update(battle.getLastEventSeq(), json,
+                    battle.getStatus() != BattleStatus.ONGOING);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize update to battle {}", battle.getBattleID(), e);
+            return null;
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.battleID, (id, watching) -> {
+            watching.remove(subscriber);
+            return watching.isEmpty() ? null : watching;
+        });
+    }
+}
@@ -0,0 +1,369 @@
+package com.lucas.restgame.service;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.TurnRecord;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.model.BattleRequest;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.BattleTurnRequest;
+import com.lucas.restgame.model.TurnDelta;
+import com.lucas.restgame.model.TurnResult;
+import com.lucas.restgame.repository.BattleCache;
+import com.lucas.restgame.repository.BattleConflictException;
+import com.lucas.restgame.repository.BattleJournal;
+import com.lucas.restgame.repository.BattleLocks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.BiFunction;
+
+@Service
+public class BattleService {
+
+    private static final Logger log = LoggerFactory.getLogger(BattleService.class);
+
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private final BattleCache battleCache;
+    private final BattleLocks battleLocks;
+    private final BattlePublisher battlePublisher;
+    private final BattleMetrics battleMetrics;
+    private final BattleJournal battleJournal;
+    private final TurnExecutor turnExecutor;
+    private final int maxTurnAttempts;
+
+    public BattleService(
+            BattleCache battleCache,
+            BattleLocks battleLocks,
+            BattlePublisher battlePublisher,
+            BattleMetrics battleMetrics,
+            BattleJournal battleJournal,
+            TurnExecutor turnExecutor,
+            @Value("${battle.turn.max-attempts:3}") int maxTurnAttempts) {
+        this.battleCache = battleCache;
+        this.battleLocks = battleLocks;
+        this.battlePublisher = battlePublisher;
+        this.battleMetrics = battleMetrics;
+        this.battleJournal = battleJournal;
+        this.turnExecutor = turnExecutor;
+        this.maxTurnAttempts = maxTurnAttempts;
+    }
+
+    /*
+    performs a turn and saves the result. if another request saved the
+    battle first, the turn is replayed against the fresh state, up to
+    maxTurnAttempts times. returns null if the battle does not exist.
+    turns on the same battle are serialized by its lock, since BattleManager
+    mutates the battle in place, and what's returned is a snapshot of it
+    taken before the lock is let go.
+     */
+    public Battle performTurn(String battleID, BattleAction action)
+            throws BattleConflictException {
+        return performTurn(battleID, action, 0);
+    }
+
+    // throws IllegalArgumentException if there is no enemy at index target
+    public Battle performTurn(String battleID, BattleAction action, int target)
+            throws BattleConflictException, IllegalArgumentException {
+        return battleLocks.withLock(battleID,
+                () -> performLockedTurn(battleID, action, target,
+                        (baseline, battle) -> battle.snapshot()));
+    }
+
+    /*
+    performTurn, returning only what the turn changed. the delta is taken
+    under the battle's lock, before another turn can change it further.
+     */
+    public TurnDelta performTurnDelta(String battleID, BattleAction action, int target)
+            throws BattleConflictException, IllegalArgumentException {
+        return battleLocks.withLock(battleID,
+                () -> performLockedTurn(battleID, action, target, TurnDelta::between));
+    }
+
+    /*
+    performTurn without blocking on the store. a battle that isn't cached is
+    loaded on the store's threads first, and the turn is played on the
+    TurnExecutor once it arrives, so no thread waits on the load and the
+    store's threads aren't held for the turn. a cached battle's turn goes to
+    the TurnExecutor too, since saving it still writes to the store.
+    completes with null if the battle does not exist.
+     */
+    public CompletableFuture<Battle> performTurnAsync(
+            String battleID, BattleAction action, int target) {
+        return whenLoaded(battleCache.getBattleAsync(battleID), battle ->
+                battle == null ? null : performTurn(battleID, action, target));
+    }
+
+    // performTurnDelta, loading the battle like performTurnAsync
+    public CompletableFuture<TurnDelta> performTurnDeltaAsync(
+            String battleID, BattleAction action, int target) {
+        return whenLoaded(battleCache.getBattleAsync(battleID), battle ->
+                battle == null ? null : performTurnDelta(battleID, action, target));
+    }
+
+    // result turns the state before the turn and the battle after it into the reply
+    private <T> T performLockedTurn(
+            String battleID,
+            BattleAction action,
+            int target,
+            BiFunction<TurnDelta.Baseline, Battle, T> result)
+            throws BattleConflictException {
+        long start = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            Battle battle = battleCache.getBattle(battleID);
+            if (battle == null) {
+                return null;
+            }
+            TurnDelta.Baseline baseline = TurnDelta.Baseline.of(battle);
+            List<TurnRecord> played = newJournal(1);
+            Battle updatedBattle = resolveTurn(battle, action, target, played);
+            try {
+                save(updatedBattle, played);
+                battlePublisher.publish(updatedBattle, baseline.lastEventSeq());
+                recordOutcome(updatedBattle);
+                battleMetrics.recordTurn(System.nanoTime() - start);
+                return result.apply(baseline, updatedBattle);
+            } catch (BattleConflictException e) {
+                if (attempt >= maxTurnAttempts) {
+                    throw e;
+                }
+                log.debug("Turn on battle {} conflicted, retrying", battleID);
+            }
+        }
+    }
+
+    /*
+    streams the battle's events after seq as they happen. returns null if
+    the battle does not exist. subscribing under the battle's lock means no
+    turn can land between the catch-up and the live updates.
+     */
+    public SseEmitter subscribe(String battleID, long after) {
+        return battleLocks.withLock(battleID, () -> {
+            Battle battle = battleCache.getBattle(battleID);
+            return battle == null ? null : battlePublisher.subscribe(battle, after);
+        });
+    }
+
+    /*
+    plays a sequence of turns on one battle with a single load and save.
+    turns after the battle concludes are skipped, and turns whose target is
+    gone are rejected without ending the sequence. a conflicting save replays
+    the whole sequence against the fresh state. returns null if the battle
+    does not exist.
+     */
+    public List<TurnResult> performTurnSequence(String battleID, List<BattleRequest> turns)
+            throws BattleConflictException, IllegalArgumentException {
+        validateBatch(turns);
+        return battleLocks.withLock(battleID,
+                () -> performLockedTurns(battleID, turns));
+    }
+
+    // performTurnSequence, loading the battle like performTurnAsync
+    public CompletableFuture<List<TurnResult>> performTurnSequenceAsync(
+            String battleID, List<BattleRequest> turns) throws IllegalArgumentException {
+        validateBatch(turns);
+        return whenLoaded(battleCache.getBattleAsync(battleID), battle ->
+                battle == null ? null : performTurnSequence(battleID, turns));
+    }
+
+    /*
+    plays turns across many battles. battles that aren't cached are loaded
+    with one batched read, then each battle's turns are played in the order
+    given, with one save per battle. results come back in request order,
+    and a missing or conflicting battle only affects its own turns.
+     */
+    public List<TurnResult> performTurnBatch(List<BattleTurnRequest> turns)
+            throws IllegalArgumentException {
+        Map<String, List<Integer>> positions = batchPositions(turns);
+        return playBatch(turns, positions, battleCache.getBattles(positions.keySet()));
+    }
+
+    // performTurnBatch, with the batched read on the store's threads
+    public CompletableFuture<List<TurnResult>> performTurnBatchAsync(
+            List<BattleTurnRequest> turns) throws IllegalArgumentException {
+        Map<String, List<Integer>> positions = batchPositions(turns);
+        return whenLoaded(battleCache.getBattlesAsync(positions.keySet()),
+                found -> playBatch(turns, positions, found));
+    }
+
+    /*
+    plays on the TurnExecutor once loaded, even when the load was served
+    from the cache, since playing saves and so never stays off the store.
+    a full TurnExecutor completes the result with a
+    RejectedExecutionException.
+     */
+    private <L, T> CompletableFuture<T> whenLoaded(
+            CompletableFuture<L> loaded, Function<? super L, ? extends T> play) {
+        return loaded.thenApplyAsync(play, turnExecutor);
+    }
+
+    // each battle's positions in the batch, in the order battles first appear
+    private static Map<String, List<Integer>> batchPositions(List<BattleTurnRequest> turns)
+            throws IllegalArgumentException {
+        validateBatch(turns);
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < turns.size(); i++) {
+            String battleID = turns.get(i).getBattleID();
+            if (battleID == null) {
+                throw new IllegalArgumentException("Every turn needs a battleID");
+            }
+            positions.computeIfAbsent(battleID, id -> new ArrayList<>()).add(i);
+        }
+        return positions;
+    }
+
+    private List<TurnResult> playBatch(
+            List<BattleTurnRequest> turns,
+            Map<String, List<Integer>> positions,
+            Map<String, Battle> found) {
+        TurnResult[] results = new TurnResult[turns.size()];
+        positions.forEach((battleID, indices) -> {
+            List<BattleRequest> battleTurns = new ArrayList<>(indices.size());
+            indices.forEach(i -> battleTurns.add(turns.get(i)));
+            List<TurnResult> battleResults = null;
+            TurnResult.Outcome failure = TurnResult.Outcome.NOT_FOUND;
+            if (found.containsKey(battleID)) {
+                // one battle at a time, never holding two battle locks at once
+                try {
+                    battleResults = battleLocks.withLock(battleID,
+                            () -> performLockedTurns(battleID, battleTurns));
+                } catch (BattleConflictException e) {
+                    failure = TurnResult.Outcome.CONFLICT;
+                }
+            }
+            for (int j = 0; j < indices.size(); j++) {
+                results[indices.get(j)] = battleResults != null
+                        ? battleResults.get(j)
+                        : new TurnResult(battleID, battleTurns.get(j).getAction(),
+                                failure, null, 0);
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    private List<TurnResult> performLockedTurns(String battleID, List<BattleRequest> turns)
+            throws BattleConflictException {
+        for (int attempt = 1; ; attempt++) {
+            Battle battle = battleCache.getBattle(battleID);
+            if (battle == null) {
+                return null;
+            }
+            long lastEventSeq = battle.getLastEventSeq();
+            List<TurnResult> results = new ArrayList<>(turns.size());
+            List<TurnRecord> journal = newJournal(turns.size());
+            boolean played = false;
+            for (BattleRequest turn : turns) {
+                TurnResult.Outcome outcome = TurnResult.Outcome.SKIPPED;
+                if (battle.getStatus() == BattleStatus.ONGOING) {
+                    try {
+                        resolveTurn(battle, turn.getAction(), turn.getTarget(), journal);
+                        outcome = TurnResult.Outcome.APPLIED;
+                        played = true;
+                    } catch (IllegalArgumentException e) {
+                        // rejected before anything changed, e.g. its target died
+                        outcome = TurnResult.Outcome.INVALID_TARGET;
+                    }
+                }
+                results.add(new TurnResult(battleID, turn.getAction(), outcome,
+                        battle.getStatus(), battle.getLastEventSeq()));
+            }
+            if (!played) {
+                return results;
+            }
+            try {
+                save(battle, journal);
+                battlePublisher.publish(battle, lastEventSeq);
+                recordOutcome(battle);
+                return results;
+            } catch (BattleConflictException e) {
+                if (attempt >= maxTurnAttempts) {
+                    throw e;
+                }
+                log.debug("Turns on battle {} conflicted, retrying", battleID);
+            }
+        }
+    }
+
+    // the records of the turns about to be played, or null if they aren't journaled
+    private List<TurnRecord> newJournal(int turns) {
+        return battleJournal.isEnabled() ? new ArrayList<>(turns) : null;
+    }
+
+    // adds the turn's record to journal, unless it's null
+    private Battle resolveTurn(
+            Battle battle, BattleAction action, int target, List<TurnRecord> journal)
+            throws IllegalArgumentException {
+        long start = System.nanoTime();
+        TurnDelta.Baseline baseline = journal != null ? TurnDelta.Baseline.of(battle) : null;
+        long randomPosition = battle.getRandomPosition();
+        Battle updatedBattle = new BattleManager(battle, battle.getRandom(),
+                battleMetrics::recordExchange).performTurn(action, target);
+        if (journal != null) {
+            journal.add(TurnRecord.of(baseline, randomPosition, action, target, updatedBattle));
+        }
+        battleMetrics.recordResolve(System.nanoTime() - start);
+        return updatedBattle;
+    }
+
+    /*
+    written back by the cache, immediately if the battle just ended. when
+    turns are journaled, they're appended now and the battle is only
+    written when a snapshot is due, through the cache like any other save.
+    if another node appended the same turn first, the stale battle is
+    evicted so the retry reloads it. a conflicting snapshot is only logged,
+    since its turns are already in the journal.
+     */
+    private void save(Battle battle, List<TurnRecord> journal) throws BattleConflictException {
+        if (journal == null) {
+            battleCache.saveBattle(battle);
+            return;
+        }
+        String battleID = battle.getBattleID();
+        try {
+            battleJournal.append(journal);
+        } catch (BattleConflictException e) {
+            battleCache.evict(battleID);
+            throw e;
+        }
+        if (battleJournal.snapshotDue(battle, journal.size())) {
+            try {
+                battleCache.saveBattle(battle);
+            } catch (BattleConflictException e) {
+                log.warn("Snapshot of battle {} conflicted, it will be rebuilt from its turns",
+                        battleID, e);
+            }
+        }
+    }
+
+    // turns are only played on ongoing battles, so a concluded one just ended
+    private void recordOutcome(Battle battle) {
+        if (battle.getStatus() != BattleStatus.ONGOING) {
+            battleMetrics.recordOutcome(battle.getStatus());
+        }
+    }
+
+    private static void validateBatch(List<? extends BattleRequest> turns)
+            throws IllegalArgumentException {
+        if (turns == null || turns.isEmpty() || turns.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "A batch must hold between 1 and %s turns", MAX_BATCH_SIZE));
+        }
+        for (BattleRequest turn : turns) {
+            if (turn == null || turn.getAction() == null) {
+                throw new IllegalArgumentException("Every turn needs an action");
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.lucas.restgame.service;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.EnemyArchetype;
+import com.lucas.restgame.model.EnemyArchetypes;
+import com.lucas.restgame.repository.BattleRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+hands out new battles from a warm pool per enemy archetype, so a burst of
+creations costs a queue poll each instead of a store write. pooled battles
+are created ahead of time with batched writes, and a pool is refilled in
+the background once it drops below half. a spawn that finds its pool empty
+creates its battle directly, like POST /battles.
+
+pooled battles already exist in the store, so listings show them as ongoing
+before anyone plays them. whatever is still pooled at shutdown is deleted.
+so that a crash doesn't leave them behind for good, they are stored with an
+expiry a pool TTL away, which DynamoDB's TTL acts on and their first turn
+clears. a battle past half its TTL is no longer handed out, leaving whoever
+spawns it at least that long to play. stores that don't expire battles
+themselves are swept of expired ones once at startup, on a thread of its
+own so the refills don't wait on it.
+ */
+@Component
+public class BattleSpawner {
+
+    private static final Logger log = LoggerFactory.getLogger(BattleSpawner.class);
+
+    private static class Pool {
+        final EnemyArchetype archetype;
+        final ConcurrentLinkedQueue<Battle> battles = new ConcurrentLinkedQueue<>();
+        // the queue's own size() walks every node
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean refilling = new AtomicBoolean();
+
+        Pool(EnemyArchetype archetype) {
+            this.archetype = archetype;
+        }
+    }
+
+    private final BattleRepository battleRepository;
+    private final int poolSize;
+    private final int refillBatch;
+    private final Duration poolTTL;
+    // one per archetype, fixed once the registry is loaded
+    private final Map<String, Pool> pools = new LinkedHashMap<>();
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "battle-spawn-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService sweeper = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "battle-spawn-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder poolHits = new LongAdder();
+    private final LongAdder poolMisses = new LongAdder();
+
+    public BattleSpawner(
+            BattleRepository battleRepository,
+            @Value("${battle.spawn.pool-size:50}") int poolSize,
+            @Value("${battle.spawn.refill-batch:25}") int refillBatch,
+            @Value("${battle.spawn.pool-ttl:1h}") Duration poolTTL) {
+        this.battleRepository = battleRepository;
+        this.poolSize = poolSize;
+        this.refillBatch = refillBatch;
+        this.poolTTL = poolTTL;
+        for (EnemyArchetype archetype : EnemyArchetypes.all()) {
+            pools.put(archetype.getId(), new Pool(archetype));
+        }
+    }
+
+    // filled once the application is up, so startup doesn't wait on the store
+    @EventListener(ApplicationReadyEvent.class)
+    public void fillPools() {
+        pools.values().forEach(this::scheduleRefill);
+        if (!battleRepository.storeExpiresBattles()) {
+            try {
+                sweeper.execute(this::sweepExpired);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+    }
+
+    /*
+    deletes pooled battles a crash left in the store once they have expired.
+    returns the number deleted.
+     */
+    public int sweepExpired() {
+        long now = Instant.now().getEpochSecond();
+        int swept = 0;
+        String nextToken = null;
+        try {
+            do {
+                BattlePage page = battleRepository.getBattles(
+                        BattleStatus.ONGOING, BattleRepository.MAX_PAGE_SIZE, nextToken);
+                for (Battle battle : page.getBattles()) {
+                    if (battle.getExpiresAt() != null && battle.getExpiresAt() <= now
+                            && battleRepository.deleteBattleByID(battle.getBattleID())) {
+                        swept++;
+                    }
+                }
+                nextToken = page.getNextToken();
+            } while (nextToken != null && !Thread.currentThread().isInterrupted());
+        } catch (RuntimeException e) {
+            log.warn("Failed to sweep expired pooled battles", e);
+        }
+        if (swept > 0) {
+            log.info("Deleted {} expired pooled battles", swept);
+        }
+        return swept;
+    }
+
+    /*
+    a new battle between a default player and one enemy of the archetype.
+    throws IllegalArgumentException for an archetype that isn't registered.
+     */
+    public CompletableFuture<Battle> spawnAsync(String archetypeID)
+            throws IllegalArgumentException {
+        Pool pool = pools.get(archetypeID);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown enemy archetype " + archetypeID);
+        }
+        Battle battle = pollFresh(pool);
+        if (battle == null) {
+            poolMisses.increment();
+            scheduleRefill(pool);
+            return battleRepository.createBattleAsync(newBattle(pool.archetype));
+        }
+        poolHits.increment();
+        if (pool.size.get() < poolSize / 2) {
+            scheduleRefill(pool);
+        }
+        // the stored copy keeps its expiry until the first turn saves it
+        battle.setExpiresAt(null);
+        return CompletableFuture.completedFuture(battle);
+    }
+
+    // the next pooled battle with at least half its TTL left, deleting stale ones
+    private Battle pollFresh(Pool pool) {
+        long freshUntil = Instant.now().plus(poolTTL.dividedBy(2)).getEpochSecond();
+        Battle battle;
+        while ((battle = pool.battles.poll()) != null) {
+            pool.size.decrementAndGet();
+            if (battle.getExpiresAt() == null || battle.getExpiresAt() > freshUntil) {
+                return battle;
+            }
+            deleteStale(battle);
+        }
+        return null;
+    }
+
+    private void deleteStale(Battle battle) {
+        try {
+            refiller.execute(() -> delete(battle));
+        } catch (RejectedExecutionException e) {
+            // shutting down, the store's expiry or the next sweep deletes it
+        }
+    }
+
+    private void delete(Battle battle) {
+        try {
+            battleRepository.deleteBattleByID(battle.getBattleID());
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete pooled battle {}", battle.getBattleID(), e);
+        }
+    }
+
+    private static Battle newBattle(EnemyArchetype archetype) {
+        return new Battle(new Player(), new Enemy(archetype));
+    }
+
+    // at most one refill per pool is queued or running at a time
+    private void scheduleRefill(Pool pool) {
+        if (poolSize <= 0 || !pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refiller.execute(() -> {
+                try {
+                    refill(pool);
+                } finally {
+                    pool.refilling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            pool.refilling.set(false);
+        }
+    }
+
+    /*
+    tops the pool up a batch at a time. a failed write leaves the pool short
+    until the next spawn finds it low and schedules another refill.
+     */
+    private void refill(Pool pool) {
+        while (pool.size.get() < poolSize && !Thread.currentThread().isInterrupted()) {
+            int count = Math.min(refillBatch, poolSize - pool.size.get());
+            long expiresAt = Instant.now().plus(poolTTL).getEpochSecond();
+            List<Battle> batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Battle battle = newBattle(pool.archetype);
+                battle.setExpiresAt(expiresAt);
+                batch.add(battle);
+            }
+            List<Battle> created;
+            try {
+                created = battleRepository.createBattles(batch);
+            } catch (RuntimeException e) {
+                log.warn("Failed to refill the {} battle pool", pool.archetype.getId(), e);
+                return;
+            }
+            if (created.isEmpty()) {
+                return;
+            }
+            pool.battles.addAll(created);
+            pool.size.addAndGet(created.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        sweeper.shutdownNow();
+        refiller.shutdownNow();
+        refiller.awaitTermination(10, TimeUnit.SECONDS);
+        sweeper.awaitTermination(10, TimeUnit.SECONDS);
+        for (Pool pool : pools.values()) {
+            Battle battle;
+            while ((battle = pool.battles.poll()) != null) {
+                pool.size.decrementAndGet();
+                delete(battle);
+            }
+        }
+    }
+
+    public int getPooledCount() {
+        int pooled = 0;
+        for (Pool pool : pools.values()) {
+            pooled += pool.size.get();
+        }
+        return pooled;
+    }
+
+    public long getPoolHits() {
+        return poolHits.sum();
+    }
+
+    public long getPoolMisses() {
+        return poolMisses.sum();
+    }
+}
@@ -0,0 +1,22 @@
+package com.lucas.restgame.service;
+
+import com.lucas.restgame.config.BoundedExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+the threads async turns are played on once their battle has been loaded
+from the store. a turn holds its battle's lock and saves through to the
+store, so it is kept off the store's I/O threads, which would otherwise
+be tied up for the whole turn instead of just the load.
+ */
+@Component
+public class TurnExecutor extends BoundedExecutor {
+
+    public TurnExecutor(
+            @Value("${battle.turn.threads:16}") int threads,
+            @Value("${battle.turn.queue-capacity:1000}") int queueCapacity,
+            @Value("${battle.threads.virtual:false}") boolean virtual) {
+        super("battle-turn", threads, queueCapacity, virtual);
+    }
+}
@@ -0,0 +1,155 @@
+package com.lucas.restgame.simulation;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.model.BattleStatus;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.random.RandomGenerator;
+
+/*
+runs complete battles in memory through BattleManager, for balancing stats.
+nothing is persisted. battles are split across a fork-join pool, and each
+task gets its own generator split from the seed at a fixed point in the task
+tree, so a seed always gives the same result however the work is scheduled.
+
+run from the command line with
+mvn compile exec:java -Dexec.mainClass=com.lucas.restgame.simulation.BattleSimulator
+    -Dexec.args="--battles=1000000 --seed=42 --policy=RANDOM
+                 --player=Player,100,25,5,0.5 --enemy=Goblin,80,20,5,0.5"
+ */
+public class BattleSimulator {
+
+    // battles run by one task before it stops splitting
+    private static final int BATCH_SIZE = 1024;
+
+    private final StatBlock player;
+    private final StatBlock enemy;
+    private final PlayerPolicy policy;
+    private final int maxTurns;
+
+    public BattleSimulator(
+            StatBlock player,
+            StatBlock enemy,
+            PlayerPolicy policy,
+            int maxTurns) {
+        this.player = player;
+        this.enemy = enemy;
+        this.policy = policy;
+        this.maxTurns = maxTurns;
+    }
+
+    public SimulationResult run(long battles, long seed) {
+        return run(battles, seed, ForkJoinPool.commonPool());
+    }
+
+    public SimulationResult run(long battles, long seed, ForkJoinPool pool) {
+        return pool.invoke(new SimulationTask(battles, new SplittableRandom(seed)));
+    }
+
+    private class SimulationTask extends RecursiveTask<SimulationResult> {
+
+        private final long battles;
+        private final SplittableRandom random;
+
+        SimulationTask(long battles, SplittableRandom random) {
+            this.battles = battles;
+            this.random = random;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (battles <= BATCH_SIZE) {
+                SimulationResult result = new SimulationResult(maxTurns);
+                for (long i = 0; i < battles; i++) {
+                    simulate(random, result);
+                }
+                return result;
+            }
+            long half = battles / 2;
+            // split before either half draws anything, to keep runs repeatable
+            SimulationTask left = new SimulationTask(half, random.split());
+            SimulationTask right = new SimulationTask(battles - half, random);
+            left.fork();
+            SimulationResult rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+
+    private void simulate(RandomGenerator random, SimulationResult result) {
+        Battle battle = new Battle(
+                player.toPlayer(),
+                new CountingEnemy(enemy, result));
+        BattleManager battleManager = new BattleManager(battle, random);
+        for (int turn = 1; turn <= maxTurns; turn++) {
+            BattleAction action = policy.chooseAction(battle, random);
+            result.recordPlayerAction(action);
+            battleManager.performTurn(action);
+            if (battle.getStatus() == BattleStatus.VICTORY) {
+                result.recordVictory(turn);
+                return;
+            } else if (battle.getStatus() == BattleStatus.DEFEAT) {
+                result.recordDefeat(turn);
+                return;
+            }
+        }
+        result.recordTimeout();
+    }
+
+    // an enemy that tallies the actions BattleManager draws for it
+    private static class CountingEnemy extends Enemy {
+
+        private final SimulationResult result;
+
+        CountingEnemy(StatBlock stats, SimulationResult result) {
+            super(stats.name(), stats.health(), stats.power(),
+                    stats.defense(), stats.dodgeChance());
+            this.result = result;
+        }
+
+        @Override
+        public BattleAction battleAction(RandomGenerator random) {
+            BattleAction action = super.battleAction(random);
+            result.recordEnemyAction(action);
+            return action;
+        }
+    }
+
+    public static void main(String[] args) {
+        long battles = 1_000_000;
+        long seed = System.nanoTime();
+        int maxTurns = 1000;
+        PlayerPolicy policy = PlayerPolicy.uniform();
+        StatBlock player = new StatBlock("Player", 100, 25, 5, 0.5f);
+        StatBlock enemy = new StatBlock("Enemy", 100, 25, 5, 0.5f);
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --option=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--battles" -> battles = Long.parseLong(option[1]);
+                case "--seed" -> seed = Long.parseLong(option[1]);
+                case "--max-turns" -> maxTurns = Integer.parseInt(option[1]);
+                case "--policy" -> policy = PlayerPolicy.parse(option[1]);
+                case "--player" -> player = StatBlock.parse(option[1]);
+                case "--enemy" -> enemy = StatBlock.parse(option[1]);
+                default -> throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        long start = System.nanoTime();
+        SimulationResult result = new BattleSimulator(player, enemy, policy, maxTurns)
+                .run(battles, seed);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("seed:       %d%n", seed);
+        System.out.print(result);
+        System.out.printf("elapsed:    %d ms%n", elapsedMillis);
+    }
+}
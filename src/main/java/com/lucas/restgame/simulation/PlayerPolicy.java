@@ -0,0 +1,30 @@
+package com.lucas.restgame.simulation;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattleAction;
+
+import java.util.random.RandomGenerator;
+
+// how a simulated player picks their action each turn
+@FunctionalInterface
+public interface PlayerPolicy {
+
+    BattleAction chooseAction(Battle battle, RandomGenerator random);
+
+    static PlayerPolicy always(BattleAction action) {
+        return (battle, random) -> action;
+    }
+
+    static PlayerPolicy uniform() {
+        BattleAction[] actions = BattleAction.values();
+        return (battle, random) -> actions[random.nextInt(actions.length)];
+    }
+
+    // parses an action name, or RANDOM for a uniform choice
+    static PlayerPolicy parse(String value) throws IllegalArgumentException {
+        if (value.equalsIgnoreCase("RANDOM")) {
+            return uniform();
+        }
+        return always(BattleAction.valueOf(value.toUpperCase()));
+    }
+}
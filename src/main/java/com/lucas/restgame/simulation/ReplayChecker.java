@@ -0,0 +1,139 @@
+package com.lucas.restgame.simulation;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.model.BattleReplay;
+import com.lucas.restgame.repository.BattleArchive;
+import com.lucas.restgame.repository.BattleItemCodec;
+import com.lucas.restgame.repository.BattleJournal;
+import com.lucas.restgame.repository.DiskTurnLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+re-runs archived battles from their recorded turns and checks each one
+against the battle as it was archived, offline and in parallel. after a
+change to the rules or the archetypes, any battle it reports as diverged
+would play out differently now, which makes the archive a regression test.
+battles are spread across a fork-join pool, each replayed on its own.
+the archiver deletes the turns of the battles it archives unless
+battle.archive.keep-turns is on, so without it they show as unrecorded.
+
+run from the command line with
+mvn compile exec:java -Dexec.mainClass=com.lucas.restgame.simulation.ReplayChecker
+    -Dexec.args="--archive=archive --turns=data --threads=8"
+ */
+public class ReplayChecker {
+
+    // diverged battles kept for the report, the rest are only counted
+    private static final int MAX_REPORTED = 20;
+
+    public record Summary(
+            long checked,
+            long verified,
+            long unrecorded,
+            long diverged,
+            List<BattleReplay> divergences) {
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("checked:    %d%n", checked));
+            text.append(String.format("verified:   %d%n", verified));
+            text.append(String.format("unrecorded: %d%n", unrecorded));
+            text.append(String.format("diverged:   %d%n", diverged));
+            for (BattleReplay replay : divergences) {
+                text.append(String.format("  %s at turn %s: %s%n", replay.getBattleID(),
+                        replay.getDivergedAt(), replay.getDivergence()));
+            }
+            return text.toString();
+        }
+    }
+
+    private final BattleArchive battleArchive;
+    private final BattleJournal battleJournal;
+
+    public ReplayChecker(BattleArchive battleArchive, BattleJournal battleJournal) {
+        this.battleArchive = battleArchive;
+        this.battleJournal = battleJournal;
+    }
+
+    public Summary checkArchive(ForkJoinPool pool) {
+        return check(battleArchive.getBattleIDs(), pool);
+    }
+
+    public Summary check(Collection<String> battleIDs, ForkJoinPool pool) {
+        LongAdder verified = new LongAdder();
+        LongAdder unrecorded = new LongAdder();
+        LongAdder diverged = new LongAdder();
+        List<BattleReplay> divergences = new ArrayList<>();
+        pool.submit(() -> battleIDs.parallelStream().forEach(battleID -> {
+            Battle stored = battleArchive.getBattleByID(battleID);
+            BattleReplay replay = battleJournal.replayFromStart(battleID, stored, false);
+            if (replay.isVerified()) {
+                verified.increment();
+            } else if (!replay.isRecorded()) {
+                unrecorded.increment();
+            } else {
+                diverged.increment();
+                synchronized (divergences) {
+                    if (divergences.size() < MAX_REPORTED) {
+                        divergences.add(replay);
+                    }
+                }
+            }
+        })).join();
+        return new Summary(battleIDs.size(), verified.sum(), unrecorded.sum(),
+                diverged.sum(), divergences);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String archivePath = "archive";
+        String turnsPath = "data";
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --option=value but got " + arg);
+            }
+            switch (option[0]) {
+                case "--archive" -> archivePath = option[1];
+                case "--turns" -> turnsPath = option[1];
+                case "--threads" -> threads = Integer.parseInt(option[1]);
+                default -> throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        // the client is never called, the codec only needs the table model
+        BattleItemCodec codec = new BattleItemCodec(new DynamoDBMapper(AmazonDynamoDBClientBuilder
+                .standard()
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration(
+                                "http://localhost:8000",
+                                "us-east-1"))
+                .build()));
+        BattleArchive archive = new BattleArchive(codec, archivePath);
+        DiskTurnLog turnLog = DiskTurnLog.openReadOnly(turnsPath);
+        BattleJournal journal = new BattleJournal(turnLog, codec, new BattleMetrics(), false, 1);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        long start = System.nanoTime();
+        Summary summary = new ReplayChecker(archive, journal).checkArchive(pool);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        pool.shutdown();
+        turnLog.close();
+
+        System.out.print(summary);
+        System.out.printf("elapsed:    %d ms (%.0f battles/s)%n", elapsedMillis,
+                summary.checked() * 1000.0 / Math.max(1, elapsedMillis));
+    }
+}
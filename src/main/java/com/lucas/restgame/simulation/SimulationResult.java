@@ -0,0 +1,137 @@
+package com.lucas.restgame.simulation;
+
+import com.lucas.restgame.model.BattleAction;
+
+/*
+aggregate outcome of a batch of simulated battles. results from separate
+batches are combined with merge, which is how the fork-join tasks report.
+ */
+public class SimulationResult {
+
+    private long victories;
+    private long defeats;
+    // battles still going when the turn limit was reached
+    private long timeouts;
+    // turnCounts[n] is the number of battles that ended on turn n
+    private final long[] turnCounts;
+    private final long[] playerActions = new long[BattleAction.values().length];
+    private final long[] enemyActions = new long[BattleAction.values().length];
+
+    public SimulationResult(int maxTurns) {
+        this.turnCounts = new long[maxTurns + 1];
+    }
+
+    void recordVictory(int turns) {
+        victories++;
+        turnCounts[turns]++;
+    }
+
+    void recordDefeat(int turns) {
+        defeats++;
+        turnCounts[turns]++;
+    }
+
+    void recordTimeout() {
+        timeouts++;
+    }
+
+    void recordPlayerAction(BattleAction action) {
+        playerActions[action.ordinal()]++;
+    }
+
+    void recordEnemyAction(BattleAction action) {
+        enemyActions[action.ordinal()]++;
+    }
+
+    SimulationResult merge(SimulationResult other) {
+        victories += other.victories;
+        defeats += other.defeats;
+        timeouts += other.timeouts;
+        for (int i = 0; i < turnCounts.length; i++) {
+            turnCounts[i] += other.turnCounts[i];
+        }
+        for (int i = 0; i < playerActions.length; i++) {
+            playerActions[i] += other.playerActions[i];
+            enemyActions[i] += other.enemyActions[i];
+        }
+        return this;
+    }
+
+    public long getBattles() {
+        return victories + defeats + timeouts;
+    }
+
+    public long getVictories() {
+        return victories;
+    }
+
+    public long getDefeats() {
+        return defeats;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public double getWinRate() {
+        long battles = getBattles();
+        return battles == 0 ? 0 : (double) victories / battles;
+    }
+
+    public double getMeanTurns() {
+        long finished = victories + defeats;
+        if (finished == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int turn = 0; turn < turnCounts.length; turn++) {
+            total += turn * turnCounts[turn];
+        }
+        return (double) total / finished;
+    }
+
+    // the turn by which the given fraction of finished battles had ended
+    public int getTurnsPercentile(double fraction) {
+        long finished = victories + defeats;
+        long needed = (long) Math.ceil(finished * fraction);
+        long seen = 0;
+        for (int turn = 0; turn < turnCounts.length; turn++) {
+            seen += turnCounts[turn];
+            if (seen >= needed && seen > 0) {
+                return turn;
+            }
+        }
+        return 0;
+    }
+
+    public long getTurnCount(int turns) {
+        return turnCounts[turns];
+    }
+
+    public long getPlayerActionCount(BattleAction action) {
+        return playerActions[action.ordinal()];
+    }
+
+    public long getEnemyActionCount(BattleAction action) {
+        return enemyActions[action.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("battles:    %d%n", getBattles()));
+        report.append(String.format("win rate:   %.4f (%d won, %d lost, %d timed out)%n",
+                getWinRate(), victories, defeats, timeouts));
+        report.append(String.format("turns:      mean %.2f, p50 %d, p90 %d, p99 %d%n",
+                getMeanTurns(),
+                getTurnsPercentile(0.5),
+                getTurnsPercentile(0.9),
+                getTurnsPercentile(0.99)));
+        report.append("actions:    player / enemy\n");
+        for (BattleAction action : BattleAction.values()) {
+            report.append(String.format("  %-8s %d / %d%n",
+                    action, playerActions[action.ordinal()], enemyActions[action.ordinal()]));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package com.lucas.restgame.simulation;
+
+import com.lucas.restgame.entity.Player;
+
+// combat stats for one side of a simulated battle
+public record StatBlock(
+        String name,
+        int health,
+        int power,
+        int defense,
+        float dodgeChance) {
+
+    // parses "name,health,power,defense,dodgeChance"
+    public static StatBlock parse(String value) throws IllegalArgumentException {
+        String[] parts = value.split(",");
+        if (parts.length != 5) {
+            throw new IllegalArgumentException(
+                    "Expected name,health,power,defense,dodgeChance but got " + value);
+        }
+        return new StatBlock(
+                parts[0],
+                Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]),
+                Integer.parseInt(parts[3]),
+                Float.parseFloat(parts[4]));
+    }
+
+    public Player toPlayer() {
+        return new Player(name, health, power, defense, dodgeChance);
+    }
+}
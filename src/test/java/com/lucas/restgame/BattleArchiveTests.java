@@ -0,0 +1,238 @@
+package com.lucas.restgame;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.entity.TurnRecord;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.repository.BattleArchive;
+import com.lucas.restgame.repository.BattleItemCodec;
+import com.lucas.restgame.repository.BattleJournal;
+import com.lucas.restgame.repository.BattleRepository;
+import com.lucas.restgame.repository.InMemoryBattleStore;
+import com.lucas.restgame.repository.InMemoryTurnLog;
+import com.lucas.restgame.service.BattleArchiver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BattleArchiveTests {
+
+    @TempDir
+    Path directory;
+
+    private BattleItemCodec codec;
+    private BattleArchive archive;
+    private BattleRepository repository;
+    private InMemoryTurnLog turnLog;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        // the client is never called, the codec only needs the table model
+        codec = new BattleItemCodec(new DynamoDBMapper(AmazonDynamoDBClientBuilder
+                .standard()
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration(
+                                "http://localhost:8000",
+                                "us-east-1"))
+                .build()));
+        archive = new BattleArchive(codec, directory.toString());
+        repository = new BattleRepository();
+        ReflectionTestUtils.setField(repository, "battleStore", new InMemoryBattleStore(codec));
+        ReflectionTestUtils.setField(repository, "battleMetrics", new BattleMetrics());
+        ReflectionTestUtils.setField(repository, "battleArchive", archive);
+        ReflectionTestUtils.setField(repository, "expiryTTL", Duration.ofDays(7));
+        turnLog = new InMemoryTurnLog();
+        ReflectionTestUtils.setField(repository, "battleJournal",
+                new BattleJournal(turnLog, codec, new BattleMetrics(), false, 20));
+    }
+
+    private static Battle playedBattle(String battleID) {
+        Battle battle = new Battle(new Player(), new Enemy());
+        battle.setBattleID(battleID);
+        new BattleManager(battle).performTurn(BattleAction.ATTACK);
+        return battle;
+    }
+
+    private static TurnRecord turnRecord(String battleID) {
+        TurnRecord record = new TurnRecord();
+        record.setBattleID(battleID);
+        record.setTurn(1);
+        return record;
+    }
+
+    private Battle concludedBattle(BattleStatus status) {
+        Battle battle = repository.createBattle(new Battle(new Player(), new Enemy()));
+        battle.setStatus(status);
+        repository.updateBattle(battle.getBattleID(), battle);
+        return battle;
+    }
+
+    @Test
+    /*
+    Given two Battles are archived in a batch
+    When I look one up
+    Then it should read back as it was
+    And the batch file should read as one line of JSON per Battle
+     */
+    public void archivedBattlesCanBeReadBack() throws IOException {
+        Battle first = playedBattle("first");
+        Battle second = playedBattle("second");
+
+        archive.archive(List.of(first, second));
+        Battle loaded = archive.getBattleByID("second");
+
+        assertEquals(second.getText(), loaded.getText());
+        assertEquals(second.getRandomPosition(), loaded.getRandomPosition());
+        assertNull(archive.getBattleByID("third"));
+        Path batch = directory.resolve("battles-00000000.ndjson.gz");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(batch))) {
+            String[] lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(2, lines.length);
+            assertTrue(lines[0].contains("\"first\""));
+        }
+    }
+
+    @Test
+    /*
+    Given a Battle was archived
+    When the archive is reopened and archives another batch
+    Then both Battles should be found
+     */
+    public void archiveSurvivesReopening() throws IOException {
+        archive.archive(List.of(playedBattle("first")));
+
+        BattleArchive reopened = new BattleArchive(codec, directory.toString());
+        reopened.archive(List.of(playedBattle("second")));
+
+        assertEquals(2, reopened.size());
+        assertNotNull(reopened.getBattleByID("first"));
+        assertNotNull(reopened.getBattleByID("second"));
+    }
+
+    @Test
+    /*
+    Given an archived Battle with a recorded turn has been deleted through the repository
+    When the archive is reopened
+    Then the Battle should stay deleted
+    And its recorded turn should be gone
+     */
+    public void deletedArchivedBattleStaysDeleted() throws IOException {
+        archive.archive(List.of(playedBattle("first"), playedBattle("second")));
+        turnLog.append(turnRecord("first"));
+
+        assertTrue(repository.deleteBattleByID("first"));
+        assertFalse(repository.deleteBattleByID("first"));
+        BattleArchive reopened = new BattleArchive(codec, directory.toString());
+
+        assertNull(repository.getBattleByID("first"));
+        assertNull(reopened.getBattleByID("first"));
+        assertEquals(Set.of("second"), reopened.getBattleIDs());
+        assertTrue(turnLog.readAfter("first", 0).isEmpty());
+    }
+
+    @Test
+    /*
+    Given an archive index with malformed lines among valid ones
+    When the archive is reopened
+    Then the malformed lines should be skipped and the rest still found
+     */
+    public void malformedIndexLinesAreSkipped() throws IOException {
+        archive.archive(List.of(playedBattle("first")));
+        Path index = directory.resolve("battles-00000000.idx");
+        Files.writeString(index, "nospaces\nbad 1\nbad x 2\nbad 1 -3\n"
+                + Files.readString(index));
+        Files.writeString(directory.resolve("battles-junk.idx"), "other 0 1\n");
+
+        BattleArchive reopened = new BattleArchive(codec, directory.toString());
+
+        assertEquals(Set.of("first"), reopened.getBattleIDs());
+        assertNotNull(reopened.getBattleByID("first"));
+    }
+
+    @Test
+    /*
+    Given an ongoing Battle and one that has been won
+    When both are saved
+    Then only the won Battle should expire, about a TTL from now
+     */
+    public void concludedBattlesAreStampedWithExpiry() {
+        Battle ongoing = repository.createBattle(new Battle(new Player(), new Enemy()));
+        Battle won = concludedBattle(BattleStatus.VICTORY);
+
+        long expected = Instant.now().plus(Duration.ofDays(7)).getEpochSecond();
+        assertNull(ongoing.getExpiresAt());
+        assertEquals(expected, won.getExpiresAt(), 5);
+        assertEquals(won.getExpiresAt(),
+                repository.getBattleByID(won.getBattleID()).getExpiresAt());
+    }
+
+    @Test
+    /*
+    Given ongoing, won and lost Battles in the store, with recorded turns
+    When the archiver runs
+    Then only the concluded Battles should leave the store
+    And they should still be found through the repository
+    And only their recorded turns should be deleted
+     */
+    public void archiverMovesConcludedBattles() {
+        Battle ongoing = repository.createBattle(new Battle(new Player(), new Enemy()));
+        Battle won = concludedBattle(BattleStatus.VICTORY);
+        Battle lost = concludedBattle(BattleStatus.DEFEAT);
+        turnLog.append(turnRecord(ongoing.getBattleID()));
+        turnLog.append(turnRecord(won.getBattleID()));
+        BattleArchiver archiver = new BattleArchiver(repository, archive, 1, false);
+
+        int archived = archiver.archiveConcluded();
+
+        assertEquals(2, archived);
+        assertEquals(1, repository.getBattles(null, 10, null).getBattles().size());
+        assertEquals(BattleStatus.DEFEAT,
+                repository.getBattleByID(lost.getBattleID()).getStatus());
+        assertEquals(Set.of(ongoing.getBattleID(), won.getBattleID()),
+                repository.getBattlesByID(List.of(ongoing.getBattleID(),
+                        won.getBattleID(), "missing")).keySet());
+        assertEquals(0, archiver.archiveConcluded());
+        assertEquals(1, turnLog.readAfter(ongoing.getBattleID(), 0).size());
+        assertTrue(turnLog.readAfter(won.getBattleID(), 0).isEmpty());
+    }
+
+    @Test
+    /*
+    Given the repository pages battles up to MAX_PAGE_SIZE at a time
+    When I request a page with a limit outside 1 to MAX_PAGE_SIZE
+    Then it should be rejected before the store is read
+    And the limits themselves should be accepted
+     */
+    public void pageLimitIsBounded() {
+        repository.createBattle(new Battle(new Player(), new Enemy()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.getBattles(null, 0, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.getBattles(null, BattleRepository.MAX_PAGE_SIZE + 1, null));
+        assertEquals(1, repository.getBattles(null, 1, null).getBattles().size());
+        assertEquals(1, repository.getBattles(BattleStatus.ONGOING,
+                BattleRepository.MAX_PAGE_SIZE, null).getBattles().size());
+    }
+}
@@ -0,0 +1,229 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.repository.BattleCache;
+import com.lucas.restgame.repository.BattleConflictException;
+import com.lucas.restgame.repository.BattleLocks;
+import com.lucas.restgame.repository.BattleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BattleCacheTests {
+
+    private BattleRepository battleRepository;
+    private BattleCache battleCache;
+
+    @BeforeEach
+    public void setup() {
+        battleRepository = mock(BattleRepository.class);
+        battleCache = new BattleCache(battleRepository, new BattleLocks(16), 2, true);
+    }
+
+    private Battle battleWithID(String battleID) {
+        Battle battle = new Battle();
+        battle.setBattleID(battleID);
+        when(battleRepository.getBattleByID(battleID)).thenReturn(battle);
+        return battle;
+    }
+
+    @Test
+    /*
+    Given a Battle has been loaded into the cache
+    When I get it again
+    Then it should not be loaded from the repository a second time
+     */
+    public void cachedBattleIsServedFromMemory() {
+        Battle battle = battleWithID("xyz");
+
+        battleCache.getBattle("xyz");
+        Battle cached = battleCache.getBattle("xyz");
+
+        assertSame(battle, cached);
+        verify(battleRepository, times(1)).getBattleByID("xyz");
+    }
+
+    @Test
+    /*
+    Given a Battle that isn't cached
+    When I get it asynchronously twice
+    Then the first should load it from the repository
+    And the second should complete from memory without another load
+     */
+    public void asyncMissIsCachedForLaterHits() {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(battle));
+
+        Battle loaded = battleCache.getBattleAsync("xyz").join();
+        CompletableFuture<Battle> cached = battleCache.getBattleAsync("xyz");
+
+        assertSame(battle, loaded);
+        assertTrue(cached.isDone());
+        assertSame(battle, cached.join());
+        verify(battleRepository, times(1)).getBattleByIDAsync("xyz");
+        verify(battleRepository, never()).getBattleByID("xyz");
+    }
+
+    @Test
+    /*
+    Given a Battle has been saved to the cache several times
+    When the cache is flushed
+    Then the Battle should be written to the repository once
+     */
+    public void savesAreCoalescedUntilFlush() {
+        Battle battle = battleWithID("xyz");
+
+        battleCache.saveBattle(battle);
+        battleCache.saveBattle(battle);
+        battleCache.saveBattle(battle);
+        verify(battleRepository, never()).updateBattle(any(), any());
+
+        battleCache.flushAll();
+        battleCache.flushAll();
+        verify(battleRepository, times(1)).updateBattle("xyz", battle);
+    }
+
+    @Test
+    /*
+    Given an ongoing Battle in the cache
+    When it is saved with a VICTORY status
+    Then it should be written to the repository immediately
+     */
+    public void concludedBattleIsWrittenImmediately() {
+        Battle battle = battleWithID("xyz");
+        battle.setStatus(BattleStatus.VICTORY);
+
+        battleCache.saveBattle(battle);
+
+        verify(battleRepository, times(1)).updateBattle("xyz", battle);
+        assertEquals(0, battleCache.dirtyCount());
+    }
+
+    @Test
+    /*
+    Given the cache is full of dirty Battles
+    When another Battle is added
+    Then the least recently used Battle should be written and evicted
+     */
+    public void evictedDirtyBattleIsWritten() {
+        Battle first = battleWithID("a");
+        Battle second = battleWithID("b");
+        Battle third = battleWithID("c");
+
+        battleCache.saveBattle(first);
+        battleCache.saveBattle(second);
+        battleCache.saveBattle(third);
+
+        // written in the background
+        verify(battleRepository, timeout(1000).times(1)).updateBattle("a", first);
+        verify(battleRepository, never()).updateBattle("b", second);
+        assertEquals(2, battleCache.size());
+    }
+
+    @Test
+    /*
+    Given the repository fails to write a dirty Battle
+    When the cache is flushed
+    Then the Battle should stay dirty and be written on the next flush
+     */
+    public void failedWriteIsRetried() {
+        Battle battle = battleWithID("xyz");
+        when(battleRepository.updateBattle("xyz", battle))
+                .thenThrow(new RuntimeException("unavailable"))
+                .thenReturn("xyz");
+
+        battleCache.saveBattle(battle);
+        battleCache.flushAll();
+        assertEquals(1, battleCache.dirtyCount());
+
+        battleCache.flushAll();
+        assertEquals(0, battleCache.dirtyCount());
+        verify(battleRepository, times(2)).updateBattle("xyz", battle);
+    }
+
+    @Test
+    /*
+    Given a concluded Battle was changed by another request
+    When it is saved to the cache
+    Then the conflict should be raised
+    And the stale Battle should be evicted
+     */
+    public void conflictingBattleIsEvicted() {
+        Battle battle = battleWithID("xyz");
+        battle.setStatus(BattleStatus.DEFEAT);
+        when(battleRepository.updateBattle("xyz", battle))
+                .thenThrow(new BattleConflictException("xyz", null));
+
+        battleCache.getBattle("xyz");
+        assertThrows(BattleConflictException.class,
+                () -> battleCache.saveBattle(battle));
+
+        assertEquals(0, battleCache.size());
+        assertEquals(0, battleCache.dirtyCount());
+    }
+
+    @Test
+    /*
+    Given write-behind is turned off
+    When an ongoing Battle is saved to the cache
+    Then it should be written to the repository immediately
+     */
+    public void writeThroughSavesImmediately() {
+        battleCache = new BattleCache(battleRepository, new BattleLocks(16), 2, false);
+        Battle battle = battleWithID("xyz");
+
+        battleCache.saveBattle(battle);
+
+        verify(battleRepository, times(1)).updateBattle("xyz", battle);
+        assertEquals(0, battleCache.dirtyCount());
+    }
+
+    @Test
+    /*
+    Given a cached Battle has played turns that weren't written yet
+    When the flush conflicts with a write from another node
+    Then the Battle should be dropped from the cache
+    And the turns it loses should be counted
+     */
+    public void conflictingFlushCountsLostTurns() {
+        Battle battle = battleWithID("xyz");
+        battleCache.getBattle("xyz");
+        battle.setTurnCount(3);
+        battleCache.saveBattle(battle);
+        doThrow(new BattleConflictException("xyz", null))
+                .when(battleRepository).updateBattle("xyz", battle);
+
+        battleCache.flushAll();
+
+        assertEquals(0, battleCache.size());
+        assertEquals(1, battleCache.getDiscardedBattles());
+        assertEquals(3, battleCache.getDiscardedTurns());
+    }
+
+    @Test
+    /*
+    Given write-behind is turned off
+    When writing a changed Battle through fails
+    Then the Battle should be evicted
+    And the next read should load the stored copy
+     */
+    public void failedWriteThroughEvicts() {
+        battleCache = new BattleCache(battleRepository, new BattleLocks(16), 2, false);
+        Battle battle = battleWithID("xyz");
+        battleCache.getBattle("xyz");
+        doThrow(new IllegalStateException("store is down"))
+                .when(battleRepository).updateBattle("xyz", battle);
+
+        assertThrows(IllegalStateException.class, () -> battleCache.saveBattle(battle));
+
+        battleCache.getBattle("xyz");
+        verify(battleRepository, times(2)).getBattleByID("xyz");
+    }
+}
@@ -2,13 +2,29 @@ package com.lucas.restgame;
 
         import com.fasterxml.jackson.databind.ObjectMapper;
         import com.lucas.restgame.entity.Battle;
+        import com.lucas.restgame.entity.BattleEvent;
         import com.lucas.restgame.model.BattleAction;
-        import com.lucas.restgame.model.BattleRequest;
+        import com.lucas.restgame.model.BattleEventType;
+        import com.lucas.restgame.model.BattlePage;
+        import com.lucas.restgame.model.BattleReplay;
+import com.lucas.restgame.model.BattleRequest;
+        import com.lucas.restgame.model.BattleStatus;
+        import com.lucas.restgame.model.BattleTurnRequest;
+        import com.lucas.restgame.repository.BattleCache;
+        import com.lucas.restgame.repository.BattleConflictException;
         import com.lucas.restgame.repository.BattleRepository;
         import org.json.JSONObject;
+        import org.junit.jupiter.api.AfterEach;
         import org.junit.jupiter.api.Test;
 
+        import java.util.List;
+        import java.util.Map;
+        import java.util.concurrent.CompletableFuture;
+        import java.util.concurrent.RejectedExecutionException;
+
         import static org.junit.jupiter.api.Assertions.*;
+        import static org.mockito.ArgumentMatchers.any;
+        import static org.mockito.ArgumentMatchers.eq;
         import static org.mockito.Mockito.when;
 
         import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,11 +36,15 @@ package com.lucas.restgame;
         import org.springframework.http.MediaType;
         import org.springframework.test.web.servlet.MockMvc;
         import org.springframework.test.web.servlet.MvcResult;
+        import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
         import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
         import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
         import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
         import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+        import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+        import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
         import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+        import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
         import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -41,6 +61,15 @@ public class BattleControllerTests {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private BattleCache battleCache;
+
+    // the cache outlives each test, so drop whatever it picked up
+    @AfterEach
+    public void teardown() {
+        battleCache.evictAll();
+    }
+
     @Test
     /*
     Given there is a Battle with ID "xyz" in the repo
@@ -54,17 +83,149 @@ public class BattleControllerTests {
         request.setAction(BattleAction.ATTACK);
         request.setTarget(0);
 
-        when(battleRepository.getBattleByID("xyz"))
-                .thenReturn(battle);
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(battle));
         MvcResult response = mvc.perform(post("/battles/xyz")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
                 .andReturn();
+        mvc.perform(asyncDispatch(response))
+                .andExpect(status().isOk());
         String responseString = response.getResponse().getContentAsString();
         Battle returnedBattle = objectMapper.readValue(responseString, Battle.class);
         assertEquals("xyz", returnedBattle.getBattleID());
     }
 
+    @Test
+    /*
+    Given there is a Battle with ID "xyz" in the repo
+    When I send a POST to /battles/xyz preferring a minimal response
+    Then the response should hold what the turn changed
+    And not the whole Battle
+     */
+    public void performBattleActionWithMinimalResponse() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        BattleRequest request = new BattleRequest();
+        request.setAction(BattleAction.ATTACK);
+
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(battle));
+        MvcResult result = mvc.perform(post("/battles/xyz")
+                .header("Prefer", "return=minimal")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Preference-Applied", "return=minimal"))
+                .andExpect(jsonPath("$.battleID").value("xyz"))
+                .andExpect(jsonPath("$.lastEventSeq").value(battle.getLastEventSeq()))
+                .andExpect(jsonPath("$.events").isArray())
+                .andExpect(jsonPath("$.healthChanges").isArray())
+                .andExpect(jsonPath("$.player").doesNotExist())
+                .andExpect(jsonPath("$.text").doesNotExist());
+    }
+
+    @Test
+    /*
+    Given I have loaded Battle xyz and kept its ETag
+    When I send a GET to /battles/xyz with that ETag in If-None-Match
+    Then the response should be 304 without a body
+    And once a turn is logged the same request should get the Battle again
+     */
+    public void getBattleIsConditionalOnETag() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        battle.setVersion(3L);
+
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(battle));
+        MvcResult first = mvc.perform(get("/battles/xyz"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String etag = mvc.perform(asyncDispatch(first))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        MvcResult unchanged = mvc.perform(get("/battles/xyz").header("If-None-Match", etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(unchanged))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+
+        battle.addEvent(new BattleEvent(BattleEventType.NOTHING, null, null, null, 0));
+        MvcResult changed = mvc.perform(get("/battles/xyz").header("If-None-Match", etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(changed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.battleID").value("xyz"));
+    }
+
+    @Test
+    /*
+    Given the goblin archetype is registered and dragon isn't
+    When I send a POST to /battles/spawn for each
+    Then I should get a new goblin battle
+    And the dragon should be rejected
+     */
+    public void spawnBattleByArchetype() throws Exception {
+        when(battleRepository.createBattleAsync(any(Battle.class))).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArgument(0)));
+
+        MvcResult goblin = mvc.perform(post("/battles/spawn").param("archetype", "goblin"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(goblin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enemies[0].archetype").value("goblin"))
+                .andExpect(jsonPath("$.enemies[0].name").value("Goblin"));
+
+        MvcResult dragon = mvc.perform(post("/battles/spawn").param("archetype", "dragon"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(dragon))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    /*
+    Given a recorded battle "xyz" and no battle "abc"
+    When I GET their replays without steps
+    Then "xyz" should be reported as verified
+    And "abc" should not be found
+     */
+    public void replayBattle() throws Exception {
+        BattleReplay replay = new BattleReplay();
+        replay.setBattleID("xyz");
+        replay.setRecorded(true);
+        replay.setVerified(true);
+        replay.setTurns(4);
+        when(battleRepository.replayBattleAsync("xyz", false))
+                .thenReturn(CompletableFuture.completedFuture(replay));
+        when(battleRepository.replayBattleAsync("abc", false))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        MvcResult found = mvc.perform(get("/battles/xyz/replay").param("steps", "false"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(found))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.verified").value(true))
+                .andExpect(jsonPath("$.turns").value(4));
+
+        MvcResult missing = mvc.perform(get("/battles/abc/replay").param("steps", "false"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(missing))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     /*
     Given there is NOT a battle with ID "xyz" in the repo
@@ -77,12 +238,262 @@ public class BattleControllerTests {
         request.setAction(BattleAction.ATTACK);
         request.setTarget(0);
 
-        when(battleRepository.getBattleByID("xyz"))
-                .thenReturn(null);
-        mvc.perform(post("/battles/xyz")
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        MvcResult result = mvc.perform(post("/battles/xyz")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
                 .andExpect(status().isNotFound())
                 .andExpect(status().reason("Battle with ID xyz does not exist"));
     }
+
+    @Test
+    /*
+    Given there is a Battle with ID "xyz" but none with ID "abc"
+    When I send a POST to /battles/turns with a turn for each
+    Then each turn should report its own outcome
+     */
+    public void performBatchTurns() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        BattleTurnRequest found = new BattleTurnRequest();
+        found.setBattleID("xyz");
+        found.setAction(BattleAction.DEFEND);
+        BattleTurnRequest missing = new BattleTurnRequest();
+        missing.setBattleID("abc");
+        missing.setAction(BattleAction.DEFEND);
+
+        when(battleRepository.getBattlesByIDAsync(any()))
+                .thenReturn(CompletableFuture.completedFuture(Map.of("xyz", battle)));
+        MvcResult result = mvc.perform(post("/battles/turns")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(found, missing))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].outcome").value("APPLIED"))
+                .andExpect(jsonPath("$[1].outcome").value("NOT_FOUND"));
+    }
+
+    @Test
+    /*
+    Given I request a page of battles
+    When the limit is larger than the maximum page size
+    Then I should receive a 400 Bad Request response
+     */
+    public void getBattlesWithInvalidLimit() throws Exception {
+        when(battleRepository.getBattlesAsync(null, 1000, null))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new IllegalArgumentException("Limit must be between 1 and 100")));
+        MvcResult result = mvc.perform(get("/battles").param("limit", "1000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    /*
+    Given the store's I/O threads and queue are full
+    When I request a Battle that isn't cached
+    Then I should receive a 503 Service Unavailable response
+     */
+    public void saturatedStoreIsUnavailable() throws Exception {
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenThrow(new RejectedExecutionException());
+        MvcResult result = mvc.perform(get("/battles/xyz"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    /*
+    Given I request active battles with a page token
+    When the repository returns a page
+    Then the response should contain its battles and next token
+     */
+    public void getActiveBattlesPage() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        when(battleRepository.getBattlesAsync(BattleStatus.ONGOING, 10, "abc"))
+                .thenReturn(CompletableFuture.completedFuture(
+                        new BattlePage(List.of(battle), "def")));
+        MvcResult result = mvc.perform(get("/battles")
+                .param("active", "true")
+                .param("limit", "10")
+                .param("nextToken", "abc"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.battles[0].battleID").value("xyz"))
+                .andExpect(jsonPath("$.nextToken").value("def"));
+    }
+
+    @Test
+    /*
+    Given there are two Battles in the repo
+    When I send a GET to /battles/stream
+    Then I should receive one JSON document per line
+     */
+    public void streamBattlesAsNDJSON() throws Exception {
+        Battle first = new Battle();
+        first.setBattleID("abc");
+        Battle second = new Battle();
+        second.setBattleID("xyz");
+        when(battleRepository.scanAllBattles())
+                .thenReturn(List.of(first, second));
+
+        MvcResult result = mvc.perform(get("/battles/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"));
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("abc", objectMapper.readValue(lines[0], Battle.class).getBattleID());
+        assertEquals("xyz", objectMapper.readValue(lines[1], Battle.class).getBattleID());
+    }
+
+    @Test
+    /*
+    Given Battle xyz was changed since I loaded it
+    When I send a PUT to /battles/xyz with my stale copy
+    Then I should receive a 409 Conflict response
+     */
+    public void updateBattleWithStaleVersion() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        battle.setVersion(1L);
+
+        when(battleRepository.updateBattle(eq("xyz"), any(Battle.class)))
+                .thenThrow(new BattleConflictException("xyz", null));
+        mvc.perform(put("/battles/xyz")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(battle)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    /*
+    Given Battle xyz has logged two events
+    When I send a GET to /battles/xyz/text preferring French
+    Then I should receive the events as French text, one per line
+    And without a preference they should be in English
+     */
+    public void getBattleTextInPreferredLanguage() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        battle.addEvent(new BattleEvent(BattleEventType.DAMAGE, "Player", "Goblin", null, 7));
+        battle.addEvent(new BattleEvent(BattleEventType.NOTHING, null, null, null, 0));
+
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(battle));
+        MvcResult french = mvc.perform(get("/battles/xyz/text")
+                        .header("Accept-Language", "fr-CA,fr;q=0.9,en;q=0.5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(french))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "Player inflige 7 dégâts à Goblin !\nRien ne se passe..."));
+
+        MvcResult english = mvc.perform(get("/battles/xyz/text"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(english))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "Player hits Goblin for 7 damage!\nNothing happens..."));
+    }
+
+    @Test
+    /*
+    Given Battle xyz has logged three events
+    When I send a GET to /battles/xyz/events?after=1
+    Then I should only receive the last two events
+     */
+    public void getBattleEventsAfterSequence() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        battle.addEvent(new BattleEvent(BattleEventType.NOTHING, null, null, null, 0));
+        battle.addEvent(new BattleEvent(BattleEventType.REPOSITION, null, null, null, 0));
+        battle.addEvent(new BattleEvent(BattleEventType.STALEMATE, null, null, null, 0));
+
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(battle));
+        MvcResult result = mvc.perform(get("/battles/xyz/events").param("after", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].seq").value(2))
+                .andExpect(jsonPath("$[1].type").value("STALEMATE"));
+    }
+
+    @Test
+    /*
+    Given the Battle with ID "xyz" has been won
+    When I subscribe to its events as a server-sent event stream
+    Then I should receive the events I missed
+    And the stream should end
+     */
+    public void streamEventsOfConcludedBattle() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        battle.addEvent(new BattleEvent(BattleEventType.VICTORY, "Player", null, null, 0));
+        battle.setStatus(BattleStatus.VICTORY);
+
+        when(battleRepository.getBattleByID("xyz"))
+                .thenReturn(battle);
+        MvcResult result = mvc.perform(get("/battles/xyz/events")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        String stream = result.getResponse().getContentAsString();
+        assertTrue(stream.contains("id:1"));
+        assertTrue(stream.contains("event:turn"));
+        assertTrue(stream.contains("\"status\":\"VICTORY\""));
+    }
+
+    @Test
+    /*
+    Given a turn has been played
+    When I send a GET to /metrics
+    Then I should receive the turn latency histogram in the Prometheus format
+     */
+    public void scrapeMetrics() throws Exception {
+        Battle battle = new Battle();
+        battle.setBattleID("xyz");
+        when(battleRepository.getBattleByIDAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(battle));
+        BattleRequest request = new BattleRequest();
+        request.setAction(BattleAction.DEFEND);
+        MvcResult turn = mvc.perform(post("/battles/xyz")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andReturn();
+        mvc.perform(asyncDispatch(turn));
+
+        String metrics = mvc.perform(get("/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/plain"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(metrics.contains("# TYPE battle_turn_seconds histogram"));
+        assertTrue(metrics.contains("battle_turn_seconds_bucket{le=\"+Inf\"}"));
+        assertTrue(metrics.contains("battle_sessions_active"));
+    }
 }
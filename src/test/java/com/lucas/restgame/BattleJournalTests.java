@@ -0,0 +1,251 @@
+package com.lucas.restgame;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.entity.TurnRecord;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleRequest;
+import com.lucas.restgame.model.BattleReplay;
+import com.lucas.restgame.repository.BattleArchive;
+import com.lucas.restgame.repository.BattleCache;
+import com.lucas.restgame.repository.BattleConflictException;
+import com.lucas.restgame.repository.BattleItemCodec;
+import com.lucas.restgame.repository.BattleJournal;
+import com.lucas.restgame.repository.BattleLocks;
+import com.lucas.restgame.repository.BattleRepository;
+import com.lucas.restgame.repository.InMemoryBattleStore;
+import com.lucas.restgame.repository.InMemoryTurnLog;
+import com.lucas.restgame.service.BattlePublisher;
+import com.lucas.restgame.service.BattleService;
+import com.lucas.restgame.service.TurnExecutor;
+import com.lucas.restgame.simulation.ReplayChecker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class BattleJournalTests {
+
+    @TempDir
+    Path directory;
+
+    private InMemoryTurnLog turnLog;
+    private BattleJournal journal;
+    private InMemoryBattleStore store;
+    private BattleArchive archive;
+    private BattleRepository repository;
+    private BattleCache cache;
+    private BattleService service;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        // the client is never called, the codec only needs the table model
+        BattleItemCodec codec = new BattleItemCodec(new DynamoDBMapper(AmazonDynamoDBClientBuilder
+                .standard()
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration(
+                                "http://localhost:8000",
+                                "us-east-1"))
+                .build()));
+        BattleMetrics metrics = new BattleMetrics();
+        turnLog = new InMemoryTurnLog();
+        journal = new BattleJournal(turnLog, codec, metrics, true, 3);
+        store = new InMemoryBattleStore(codec);
+        repository = new BattleRepository();
+        ReflectionTestUtils.setField(repository, "battleStore", store);
+        ReflectionTestUtils.setField(repository, "battleMetrics", metrics);
+        archive = new BattleArchive(codec, directory.toString());
+        ReflectionTestUtils.setField(repository, "battleArchive", archive);
+        ReflectionTestUtils.setField(repository, "battleJournal", journal);
+        ReflectionTestUtils.setField(repository, "expiryTTL", Duration.ofDays(7));
+        BattleLocks locks = new BattleLocks(16);
+        cache = new BattleCache(repository, locks, 10, false);
+        service = new BattleService(cache, locks,
+                mock(BattlePublisher.class), metrics, journal, new TurnExecutor(1, 1, false), 3);
+    }
+
+    @Test
+    /*
+    Given Battles are journaled with a snapshot every 3 turns
+    When 4 turns are played
+    Then every turn should be in the log
+    And the stored snapshot should be the one taken after turn 3
+     */
+    public void snapshotsAreTakenEveryInterval() {
+        Battle battle = repository.createBattle(new Battle(new Player(), new Enemy()));
+        String battleID = battle.getBattleID();
+
+        for (int i = 0; i < 4; i++) {
+            service.performTurn(battleID, BattleAction.DEFEND);
+        }
+
+        List<TurnRecord> turns = turnLog.readAfter(battleID, 0);
+        assertEquals(4, turns.size());
+        assertEquals(List.of(1L, 2L, 3L, 4L), turns.stream().map(TurnRecord::getTurn).toList());
+        assertEquals(BattleAction.DEFEND, turns.get(3).getAction());
+        assertEquals(3, store.getBattleByID(battleID).getTurnCount());
+        assertEquals(2L, store.getBattleByID(battleID).getVersion());
+    }
+
+    @Test
+    /*
+    Given a journaled Battle has played past its last snapshot
+    When it is loaded from the repository
+    Then the turns after the snapshot should be replayed
+    And it should match the Battle as it was played
+     */
+    public void loadedBattleReplaysTail() {
+        Battle battle = repository.createBattle(new Battle(new Player(), new Enemy()));
+        String battleID = battle.getBattleID();
+        Battle played = null;
+        for (BattleAction action : List.of(BattleAction.DEFEND, BattleAction.DODGE,
+                BattleAction.DEFEND, BattleAction.DODGE, BattleAction.DEFEND)) {
+            played = service.performTurn(battleID, action);
+        }
+
+        Battle rebuilt = repository.getBattleByID(battleID);
+
+        assertNotSame(played, rebuilt);
+        assertEquals(5, rebuilt.getTurnCount());
+        assertEquals(played.getText(), rebuilt.getText());
+        assertEquals(played.getRandomPosition(), rebuilt.getRandomPosition());
+        assertEquals(played.getPlayer().getHealth(), rebuilt.getPlayer().getHealth());
+        assertEquals(played.getPriority(), rebuilt.getPriority());
+    }
+
+    @Test
+    /*
+    Given a turn has been appended to the log
+    When the same turn is appended again
+    Then it should be rejected as a conflict
+     */
+    public void duplicateTurnConflicts() {
+        TurnRecord record = new TurnRecord();
+        record.setBattleID("xyz");
+        record.setTurn(1);
+        journal.append(List.of(record));
+
+        assertThrows(BattleConflictException.class, () -> journal.append(List.of(record)));
+        assertEquals(1, turnLog.readAfter("xyz", 0).size());
+    }
+
+    @Test
+    /*
+    Given a Battle is cached at turn 0
+    And another node has already appended its turn 2
+    When a sequence of 2 turns is played on the cached Battle
+    Then the append should conflict on its second record
+    And the retry should play each turn of the sequence exactly once
+     */
+    public void conflictedSequenceIsPlayedOnce() {
+        String battleID = repository.createBattle(
+                new Battle(new Player(), new Enemy())).getBattleID();
+        cache.getBattle(battleID);
+        TurnRecord played = new TurnRecord();
+        played.setBattleID(battleID);
+        played.setTurn(2);
+        played.setAction(BattleAction.DODGE);
+        turnLog.append(played);
+
+        service.performTurnSequence(battleID, List.of(
+                request(BattleAction.ATTACK), request(BattleAction.DEFEND)));
+
+        assertEquals(List.of(BattleAction.DODGE, BattleAction.ATTACK, BattleAction.DEFEND),
+                turnLog.readAfter(battleID, 0).stream().map(TurnRecord::getAction).toList());
+        assertEquals(4, cache.getBattle(battleID).getTurnCount());
+    }
+
+    private static BattleRequest request(BattleAction action) {
+        BattleRequest request = new BattleRequest();
+        request.setAction(action);
+        return request;
+    }
+
+    private String playedBattle(BattleAction... actions) {
+        String battleID = repository.createBattle(
+                new Battle(new Player(), new Enemy())).getBattleID();
+        for (BattleAction action : actions) {
+            service.performTurn(battleID, action);
+        }
+        return battleID;
+    }
+
+    @Test
+    /*
+    Given a journaled Battle has played 4 turns
+    When it is replayed from the start
+    Then every turn and the stored snapshot should be verified
+    And each turn's step should be reported
+     */
+    public void recordedBattleReplaysFromStart() {
+        String battleID = playedBattle(BattleAction.DEFEND, BattleAction.DODGE,
+                BattleAction.ATTACK, BattleAction.DEFEND);
+
+        BattleReplay replay = repository.replayBattle(battleID, true);
+
+        assertTrue(replay.isRecorded());
+        assertTrue(replay.isVerified(), replay.getDivergence());
+        assertEquals(4, replay.getTurns());
+        assertEquals(4, replay.getSteps().size());
+        assertEquals(BattleAction.ATTACK, replay.getSteps().get(2).action());
+        assertFalse(replay.getSteps().get(0).events().isEmpty());
+        assertNull(repository.replayBattle("missing", true));
+    }
+
+    @Test
+    /*
+    Given a recorded turn no longer plays out the way it was recorded
+    When the Battle is replayed from the start
+    Then it should be reported as diverging at that turn
+     */
+    public void changedTurnDiverges() {
+        String battleID = playedBattle(BattleAction.DEFEND, BattleAction.DEFEND,
+                BattleAction.DEFEND);
+        // as if the rules had changed since the turn was played
+        turnLog.readAfter(battleID, 1).get(0).setHealth(List.of(1, 1));
+
+        BattleReplay replay = repository.replayBattle(battleID, false);
+
+        assertFalse(replay.isVerified());
+        assertEquals(2L, replay.getDivergedAt());
+        assertEquals(2, replay.getTurns());
+        assertNull(replay.getSteps());
+    }
+
+    @Test
+    /*
+    Given two recorded Battles and one without a history are archived
+    When the archive is checked in parallel
+    Then the recorded ones should verify and the other be counted as unrecorded
+     */
+    public void checkerVerifiesArchive() {
+        String first = playedBattle(BattleAction.DEFEND, BattleAction.DODGE);
+        String second = playedBattle(BattleAction.ATTACK);
+        Battle unrecorded = new Battle(new Player(), new Enemy());
+        unrecorded.setBattleID("unrecorded");
+        archive.archive(List.of(store.getBattleByID(first), store.getBattleByID(second),
+                unrecorded));
+
+        ReplayChecker.Summary summary = new ReplayChecker(archive, journal)
+                .checkArchive(new ForkJoinPool(2));
+
+        assertEquals(3, summary.checked());
+        assertEquals(2, summary.verified());
+        assertEquals(1, summary.unrecorded());
+        assertEquals(0, summary.diverged());
+    }
+}
@@ -0,0 +1,72 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.repository.BattleLocks;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BattleLocksTests {
+
+    @Test
+    /*
+    Given many threads change the same Battle
+    When each change is made while holding the Battle's lock
+    Then no change should be lost
+     */
+    public void sameBattleIsSerialized() throws InterruptedException {
+        BattleLocks battleLocks = new BattleLocks(16);
+        int[] counter = {0};
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            executor.execute(() -> battleLocks.withLock("xyz", () -> counter[0]++));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8000, counter[0]);
+        assertEquals(8000, battleLocks.getAcquisitions());
+    }
+
+    @Test
+    /*
+    Given one thread holds a Battle's lock
+    When another thread tries to lock the same Battle
+    Then it should wait and be counted as contended
+     */
+    public void waitingThreadIsCountedAsContended() throws InterruptedException {
+        BattleLocks battleLocks = new BattleLocks(16);
+        CountDownLatch acquired = new CountDownLatch(1);
+        battleLocks.lock("xyz");
+        Thread waiter = new Thread(() -> {
+            battleLocks.lock("xyz");
+            acquired.countDown();
+            battleLocks.unlock("xyz");
+        });
+        waiter.start();
+        while (battleLocks.getQueueLength() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertEquals(1, battleLocks.getContentions());
+        assertEquals(1, acquired.getCount());
+        battleLocks.unlock("xyz");
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    /*
+    Given a stripe count that is not a power of two
+    When the locks are created
+    Then the stripe count should be rounded up to one
+     */
+    public void stripeCountIsRoundedUp() {
+        assertEquals(1024, new BattleLocks(1000).getStripeCount());
+        assertEquals(16, new BattleLocks(16).getStripeCount());
+        assertEquals(1, new BattleLocks(1).getStripeCount());
+    }
+}
@@ -27,14 +27,14 @@ public class BattleManagerTests {
     }
 
     public void enemyStubBattleAction(BattleAction action) {
-        when(enemyStub.battleAction()).thenReturn(action);
+        doReturn(action).when(enemyStub).battleAction(any());
     }
     public void enemyStubDodgeOutcome(boolean outcome) {
-        when(enemyStub.attemptDodge()).thenReturn(outcome);
+        doReturn(outcome).when(enemyStub).attemptDodge(any());
     }
     public void forcePlayerDodgeOutcome(boolean outcome) {
         Player player = spy(battle.getPlayer());
-        when(player.attemptDodge()).thenReturn(outcome);
+        doReturn(outcome).when(player).attemptDodge(any());
         battle.setPlayer(player);
     }
 
@@ -389,4 +389,122 @@ public class BattleManagerTests {
         assertTrue(player.getHealth() < startingPlayerHealth);
         assertEquals(-1, battle.getPriority());
     }
+
+    @Test
+    /*
+    Given any pair of player and enemy actions
+    When a turn is performed
+    Then it should resolve without error
+     */
+    public void everyActionPairResolves() {
+        for (BattleAction playerAction : BattleAction.values()) {
+            for (BattleAction enemyAction : BattleAction.values()) {
+                setup();
+                enemyStubBattleAction(enemyAction);
+
+                assertDoesNotThrow(() -> battleManager.performTurn(playerAction));
+                assertEquals(BattleStatus.ONGOING, battle.getStatus());
+            }
+        }
+    }
+
+    private Enemy stubbedEnemy(String name, BattleAction action) {
+        Enemy enemy = spy(new Enemy(name, 100, 20, 10, 0.5f));
+        doReturn(action).when(enemy).battleAction(any());
+        return enemy;
+    }
+
+    @Test
+    /*
+    Given there are two enemies that both defend
+    When the player attacks the second enemy
+    Then only the second enemy should take damage
+     */
+    public void playerAttacksTargetedEnemy() {
+        Enemy first = stubbedEnemy("First", BattleAction.DEFEND);
+        Enemy second = stubbedEnemy("Second", BattleAction.DEFEND);
+        battle.replaceEnemies(first, second);
+
+        battleManager.performTurn(BattleAction.ATTACK, 1);
+
+        assertEquals(100, first.getHealth());
+        assertTrue(second.getHealth() < 100);
+    }
+
+    @Test
+    /*
+    Given there are two enemies
+    And the enemy the player doesn't target attacks
+    When the player attacks the other enemy
+    Then the untargeted attack should land at full strength
+     */
+    public void untargetedEnemyAttackIsUnopposed() {
+        Enemy first = stubbedEnemy("First", BattleAction.DEFEND);
+        Enemy second = stubbedEnemy("Second", BattleAction.ATTACK);
+        battle.replaceEnemies(first, second);
+        int expectedHealth = battle.getPlayer().getHealth()
+                - (second.getPower() - battle.getPlayer().getDefense());
+
+        battleManager.performTurn(BattleAction.ATTACK, 0);
+
+        assertEquals(expectedHealth, battle.getPlayer().getHealth());
+        assertEquals(100, second.getHealth());
+    }
+
+    @Test
+    /*
+    Given there are two enemies that both attack
+    When the player defends
+    Then both attacks should be halved
+     */
+    public void playerDefendsAgainstEveryEnemy() {
+        Enemy first = stubbedEnemy("First", BattleAction.ATTACK);
+        Enemy second = stubbedEnemy("Second", BattleAction.ATTACK);
+        battle.replaceEnemies(first, second);
+        int halvedDamage = Math.round(
+                (first.getPower() - battle.getPlayer().getDefense()) * 0.5f);
+        int expectedHealth = battle.getPlayer().getHealth() - 2 * halvedDamage;
+
+        battleManager.performTurn(BattleAction.DEFEND, 0);
+
+        assertEquals(expectedHealth, battle.getPlayer().getHealth());
+    }
+
+    @Test
+    /*
+    Given the first of three enemies is already dead
+    And the last enemy gains priority this turn
+    When the turn ends
+    Then the dead enemy should be removed
+    And priority should follow the last enemy to its new index
+     */
+    public void priorityFollowsEnemyWhenDeadAreRemoved() {
+        Enemy dead = stubbedEnemy("Dead", BattleAction.DEFEND);
+        dead.setHealth(0);
+        Enemy second = stubbedEnemy("Second", BattleAction.ATTACK);
+        Enemy third = stubbedEnemy("Third", BattleAction.DEFEND);
+        battle.replaceEnemies(dead, second, third);
+        forcePlayerDodgeOutcome(true);
+
+        battleManager.performTurn(BattleAction.DODGE, 1);
+
+        assertEquals(2, battle.getEnemies().size());
+        assertSame(third, battle.getEnemy(1));
+        assertEquals(2, battle.getPriority());
+    }
+
+    @Test
+    /*
+    Given there is one enemy
+    When the player targets an enemy that doesn't exist
+    Then the turn should be rejected before anything changes
+     */
+    public void invalidTargetIsRejected() {
+        long lastEventSeq = battle.getLastEventSeq();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> battleManager.performTurn(BattleAction.ATTACK, 1));
+        assertEquals(lastEventSeq, battle.getLastEventSeq());
+        assertEquals(100, battle.getPlayer().getHealth());
+    }
 }
@@ -0,0 +1,62 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.metrics.LatencyHistogram;
+import com.lucas.restgame.metrics.PrometheusWriter;
+import com.lucas.restgame.model.BattleAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BattleMetricsTests {
+
+    @Test
+    /*
+    Given latencies of 30 microseconds, 3 milliseconds and 30 seconds
+    When the histogram is written
+    Then each should count towards every bucket at or above it
+    And the sum and count should cover all three
+     */
+    public void histogramBucketsAreCumulative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(30_000);
+        histogram.record(3_000_000);
+        histogram.record(30_000_000_000L);
+
+        List<String> lines = new PrometheusWriter()
+                .histogram("latency_seconds", histogram, "operation", "load")
+                .toString().lines().toList();
+
+        assertTrue(lines.contains("latency_seconds_bucket{operation=\"load\",le=\"0.00005\"} 1"));
+        assertTrue(lines.contains("latency_seconds_bucket{operation=\"load\",le=\"0.0025\"} 1"));
+        assertTrue(lines.contains("latency_seconds_bucket{operation=\"load\",le=\"0.005\"} 2"));
+        assertTrue(lines.contains("latency_seconds_bucket{operation=\"load\",le=\"10\"} 2"));
+        assertTrue(lines.contains("latency_seconds_bucket{operation=\"load\",le=\"+Inf\"} 3"));
+        assertTrue(lines.contains("latency_seconds_count{operation=\"load\"} 3"));
+        assertTrue(lines.contains("latency_seconds_sum{operation=\"load\"} 30.00303"));
+    }
+
+    @Test
+    /*
+    Given a few exchanges have been recorded
+    When the metrics are written
+    Then every action pair should have its own counter
+     */
+    public void exchangesAreCountedPerActionPair() {
+        BattleMetrics battleMetrics = new BattleMetrics();
+        battleMetrics.recordExchange(BattleAction.ATTACK, BattleAction.DODGE);
+        battleMetrics.recordExchange(BattleAction.ATTACK, BattleAction.DODGE);
+
+        PrometheusWriter writer = new PrometheusWriter();
+        battleMetrics.writeTo(writer);
+        List<String> lines = writer.toString().lines().toList();
+
+        assertTrue(lines.contains("battle_exchanges_total"
+                + "{player_action=\"ATTACK\",enemy_action=\"DODGE\"} 2"));
+        assertTrue(lines.contains("battle_exchanges_total"
+                + "{player_action=\"DODGE\",enemy_action=\"ATTACK\"} 0"));
+        assertTrue(lines.contains("# TYPE battle_turn_seconds histogram"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.lucas.restgame;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
+import com.lucas.restgame.model.BattleEventType;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.service.BattlePublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BattlePublisherTests {
+
+    private BattlePublisher battlePublisher;
+    private Battle battle;
+
+    // records what it is sent instead of writing to a response
+    private static class RecordingEmitter extends SseEmitter {
+        final List<SseEventBuilder> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sent.add(builder);
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+    }
+
+    // blocks on its first send, like a client that has stopped reading
+    private static class StalledEmitter extends RecordingEmitter {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            super.send(builder);
+        }
+    }
+
+    private void playTurn() {
+        long after = battle.getLastEventSeq();
+        battle.addEvent(new BattleEvent(BattleEventType.NOTHING, null, null, null, 0));
+        battlePublisher.publish(battle, after);
+    }
+
+    private static void await(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (emitter.sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        battlePublisher = new BattlePublisher(new ObjectMapper(), 4, 60_000, 2, false);
+        battle = new Battle();
+        battle.setBattleID("xyz");
+    }
+
+    @AfterEach
+    public void teardown() {
+        battlePublisher.shutdown();
+    }
+
+    @Test
+    /*
+    Given two clients are subscribed to a Battle
+    When a turn is published
+    Then both should receive it
+     */
+    public void updatesFanOutToEverySubscriber() throws Exception {
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        battlePublisher.subscribe(battle, 0, first);
+        battlePublisher.subscribe(battle, 0, second);
+
+        playTurn();
+        await(first, 1);
+        await(second, 1);
+
+        assertEquals(1, first.sent.size());
+        assertEquals(1, second.sent.size());
+        assertEquals(2, battlePublisher.getSubscriberCount());
+    }
+
+    @Test
+    /*
+    Given one subscriber has stopped reading
+    When more turns are published than its queue holds
+    Then it should be dropped
+    And the other subscriber should still receive every turn
+     */
+    public void slowSubscriberIsDropped() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        RecordingEmitter healthy = new RecordingEmitter();
+        battlePublisher.subscribe(battle, 0, stalled);
+        battlePublisher.subscribe(battle, 0, healthy);
+
+        // one update held by the stalled send, four queued, one too many
+        for (int i = 1; i <= 6; i++) {
+            playTurn();
+            await(healthy, i);
+        }
+
+        assertEquals(6, healthy.sent.size());
+        assertEquals(1, battlePublisher.getDroppedCount());
+        assertEquals(1, battlePublisher.getSubscriberCount());
+        // the stalled stream is ended once its blocked send returns
+        stalled.release.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    /*
+    Given a client subscribes to a Battle that has already concluded
+    When the subscription opens
+    Then it should receive the missed events and the stream should end
+     */
+    public void concludedBattleSendsCatchUpAndEnds() throws Exception {
+        battle.addEvent(new BattleEvent(BattleEventType.VICTORY, "Player", null, null, 0));
+        battle.setStatus(BattleStatus.VICTORY);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        battlePublisher.subscribe(battle, 0, emitter);
+
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, emitter.sent.size());
+        assertEquals(0, battlePublisher.getSubscriberCount());
+    }
+}
@@ -3,28 +3,39 @@ package com.lucas.restgame;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
 import com.lucas.restgame.entity.Battle;
 import com.lucas.restgame.entity.Enemy;
 import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.model.BattlePage;
 import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.repository.BattleConflictException;
 import com.lucas.restgame.repository.BattleRepository;
-import org.junit.After;
-import org.junit.Before;
-import org.junit.Test;
-import org.junit.runner.RunWith;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
-import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+// needs DynamoDB Local on port 8000, and is skipped without it
 @SpringBootTest
-@RunWith(SpringJUnit4ClassRunner.class)
+@EnabledIf("dynamoDBLocalIsRunning")
 @TestPropertySource(properties = {
         "amazon.dynamodb.endpoint=http://localhost:8000/",
         "amazon.aws.accesskey=key",
@@ -40,7 +51,16 @@ public class BattleRepositoryTests {
     @Autowired
     BattleRepository battleRepository;
 
-    @Before
+    static boolean dynamoDBLocalIsRunning() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", 8000), 500);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @BeforeEach
     public void setup() {
         dynamoDBMapper = new DynamoDBMapper(amazonDynamoDB);
         CreateTableRequest tableRequest = dynamoDBMapper
@@ -48,11 +68,15 @@ public class BattleRepositoryTests {
         tableRequest.setProvisionedThroughput(
                 new ProvisionedThroughput(1L, 1L)
         );
+        for (GlobalSecondaryIndex index : tableRequest.getGlobalSecondaryIndexes()) {
+            index.setProvisionedThroughput(new ProvisionedThroughput(1L, 1L));
+            index.setProjection(new Projection().withProjectionType(ProjectionType.KEYS_ONLY));
+        }
         amazonDynamoDB.createTable(tableRequest);
     }
 
     // TODO clear table after each test if conflicts arise
-    @After
+    @AfterEach
     public void teardown() {
         amazonDynamoDB.deleteTable(dynamoDBMapper
                 .generateDeleteTableRequest(Battle.class));
@@ -81,6 +105,21 @@ public class BattleRepositoryTests {
         assertNotNull(loadedBattle);
     }
 
+    @Test
+    /*
+    Given a Battle has played a turn
+    When it is saved and loaded again
+    Then its random seed and position should be restored
+    */
+    public void randomStateIsPersisted() throws AssertionError {
+        Battle battle = new Battle(new Player(), new Enemy());
+        new BattleManager(battle).performTurn(BattleAction.DODGE);
+        battleRepository.createBattle(battle);
+        Battle loadedBattle = battleRepository.getBattleByID(battle.getBattleID());
+        assertEquals(battle.getRandomSeed(), loadedBattle.getRandomSeed());
+        assertEquals(battle.getRandomPosition(), loadedBattle.getRandomPosition());
+    }
+
     @Test
     /*
     Given there is a Battle in the table
@@ -100,6 +139,44 @@ public class BattleRepositoryTests {
         assertNotEquals(oldHealth, newHealth);
     }
 
+    @Test
+    /*
+    Given two copies of the same Battle were loaded
+    When both are changed and saved
+    Then the second save should fail with a conflict
+    */
+    public void concurrentUpdateConflicts() throws AssertionError {
+        Battle battle = battleRepository.createBattle(new Battle());
+        Battle firstCopy = battleRepository.getBattleByID(battle.getBattleID());
+        Battle secondCopy = battleRepository.getBattleByID(battle.getBattleID());
+        firstCopy.getPlayer().setHealth(90);
+        battleRepository.updateBattle(battle.getBattleID(), firstCopy);
+        secondCopy.getPlayer().setHealth(80);
+        assertThrows(BattleConflictException.class, () ->
+                battleRepository.updateBattle(battle.getBattleID(), secondCopy));
+    }
+
+    @Test
+    /*
+    Given I have created several Battles in one batch
+    When I load one of them, change it and save
+    Then each should have started at version 1
+    And the update should succeed and move it to version 2
+    */
+    public void batchCreatedBattlesAreVersioned() throws AssertionError {
+        List<Battle> created = battleRepository.createBattles(List.of(
+                new Battle(new Player(), new Enemy()), new Battle(new Player(), new Enemy())));
+        assertEquals(2, created.size());
+        for (Battle battle : created) {
+            assertEquals(1L, battle.getVersion());
+            assertEquals(1L, battleRepository.getBattleByID(battle.getBattleID()).getVersion());
+        }
+        Battle loaded = battleRepository.getBattleByID(created.get(0).getBattleID());
+        loaded.getPlayer().setHealth(90);
+        battleRepository.updateBattle(loaded.getBattleID(), loaded);
+        assertEquals(2L, battleRepository.getBattleByID(loaded.getBattleID()).getVersion());
+    }
+
     @Test
     /*
     Given I have saved a Battle to the table
@@ -125,7 +202,8 @@ public class BattleRepositoryTests {
             Battle battle = battleRepository.createBattle(new Battle());
             battleIDMap.put(battle.getBattleID(), true);
         }
-        List<Battle> battlesList = battleRepository.getAllBattles();
+        List<Battle> battlesList = readAllPages(null, 2);
+        assertEquals(5, battlesList.size());
         for (Battle battle : battlesList) {
             assertTrue(battleIDMap.containsKey(battle.getBattleID()));
         }
@@ -145,9 +223,22 @@ public class BattleRepositoryTests {
             }
             battleRepository.createBattle(battle);
         }
-        List<Battle> activeBattles = battleRepository.getActiveBattles();
+        List<Battle> activeBattles = readAllPages(BattleStatus.ONGOING, 2);
+        assertEquals(3, activeBattles.size());
         for (Battle battle : activeBattles) {
             assertEquals(battle.getStatus(), BattleStatus.ONGOING);
         }
     }
+
+    private List<Battle> readAllPages(BattleStatus status, int limit) {
+        List<Battle> battles = new ArrayList<>();
+        String nextToken = null;
+        do {
+            BattlePage page = battleRepository.getBattles(status, limit, nextToken);
+            assertTrue(page.getBattles().size() <= limit);
+            battles.addAll(page.getBattles());
+            nextToken = page.getNextToken();
+        } while (nextToken != null);
+        return battles;
+    }
 }
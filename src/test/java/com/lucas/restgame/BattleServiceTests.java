@@ -0,0 +1,290 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.metrics.BattleMetrics;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleEventType;
+import com.lucas.restgame.model.BattleRequest;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.BattleTurnRequest;
+import com.lucas.restgame.model.TurnDelta;
+import com.lucas.restgame.model.TurnResult;
+import com.lucas.restgame.repository.BattleCache;
+import com.lucas.restgame.repository.BattleConflictException;
+import com.lucas.restgame.repository.BattleItemCodec;
+import com.lucas.restgame.repository.BattleJournal;
+import com.lucas.restgame.repository.BattleLocks;
+import com.lucas.restgame.repository.InMemoryTurnLog;
+import com.lucas.restgame.service.BattlePublisher;
+import com.lucas.restgame.service.BattleService;
+import com.lucas.restgame.service.TurnExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BattleServiceTests {
+
+    private static BattleRequest turn(BattleAction action) {
+        BattleRequest request = new BattleRequest();
+        request.setAction(action);
+        return request;
+    }
+
+    private static BattleTurnRequest turn(String battleID, BattleAction action) {
+        BattleTurnRequest request = new BattleTurnRequest();
+        request.setBattleID(battleID);
+        request.setAction(action);
+        return request;
+    }
+
+    private BattleCache battleCache;
+    private BattleMetrics battleMetrics;
+    private BattleService battleService;
+
+    @BeforeEach
+    public void setup() {
+        battleCache = mock(BattleCache.class);
+        battleMetrics = new BattleMetrics();
+        battleService = new BattleService(battleCache, new BattleLocks(16),
+                mock(BattlePublisher.class), battleMetrics,
+                new BattleJournal(new InMemoryTurnLog(), mock(BattleItemCodec.class), battleMetrics, false, 20),
+                new TurnExecutor(1, 1, false), 3);
+        // every load returns a fresh copy, like a reload after eviction
+        when(battleCache.getBattle("xyz")).thenAnswer(invocation -> {
+            Battle battle = new Battle();
+            battle.setBattleID("xyz");
+            return battle;
+        });
+    }
+
+    @Test
+    /*
+    Given the first save of a turn conflicts
+    When I perform the turn
+    Then the turn should be retried on a freshly loaded Battle
+     */
+    public void conflictingTurnIsRetried() {
+        doThrow(new BattleConflictException("xyz", null))
+                .doNothing()
+                .when(battleCache).saveBattle(any(Battle.class));
+
+        Battle battle = battleService.performTurn("xyz", BattleAction.DEFEND);
+
+        assertNotNull(battle);
+        verify(battleCache, times(2)).getBattle("xyz");
+        verify(battleCache, times(2)).saveBattle(any(Battle.class));
+    }
+
+    @Test
+    /*
+    Given every save of a turn conflicts
+    When I perform the turn
+    Then the conflict should be raised after the last attempt
+     */
+    public void conflictIsRaisedWhenRetriesRunOut() {
+        doThrow(new BattleConflictException("xyz", null))
+                .when(battleCache).saveBattle(any(Battle.class));
+
+        assertThrows(BattleConflictException.class,
+                () -> battleService.performTurn("xyz", BattleAction.DEFEND));
+        verify(battleCache, times(3)).saveBattle(any(Battle.class));
+    }
+
+    @Test
+    /*
+    Given a Battle whose only enemy always defends and is one hit from death
+    When the player attacks it
+    Then the exchange should be counted by both actions
+    And the victory should be counted once
+     */
+    public void turnMetricsAreRecorded() {
+        Enemy enemy = spy(new Enemy());
+        doReturn(BattleAction.DEFEND).when(enemy).battleAction(any());
+        enemy.setHealth(1);
+        Battle battle = new Battle(new Player(), enemy);
+        battle.setBattleID("abc");
+        when(battleCache.getBattle("abc")).thenReturn(battle);
+
+        battleService.performTurn("abc", BattleAction.ATTACK);
+
+        assertEquals(1, battleMetrics.getExchangeCount(BattleAction.ATTACK, BattleAction.DEFEND));
+        assertEquals(BattleStatus.VICTORY, battle.getStatus());
+        assertEquals(1, battleMetrics.getOutcomeCount(BattleStatus.VICTORY));
+        assertEquals(0, battleMetrics.getOutcomeCount(BattleStatus.DEFEAT));
+    }
+
+    @Test
+    /*
+    Given a Battle with two defending enemies, the first one hit from death
+    When the player attacks the first enemy with a minimal response
+    Then only the killed enemy's health should be reported, by its old index
+    And the turn's events should be included, ending with its death
+     */
+    public void turnDeltaCarriesOnlyChanges() {
+        Enemy doomed = spy(new Enemy());
+        Enemy survivor = spy(new Enemy());
+        doReturn(BattleAction.DEFEND).when(doomed).battleAction(any());
+        doReturn(BattleAction.DEFEND).when(survivor).battleAction(any());
+        doomed.setHealth(1);
+        Battle battle = new Battle(new Player(), new ArrayList<>(List.of(doomed, survivor)));
+        battle.setBattleID("abc");
+        when(battleCache.getBattle("abc")).thenReturn(battle);
+
+        TurnDelta delta = battleService.performTurnDelta("abc", BattleAction.ATTACK, 0);
+
+        assertEquals(List.of(new TurnDelta.HealthChange(1, 0, -1)), delta.getHealthChanges());
+        assertEquals(BattleStatus.ONGOING, delta.getStatus());
+        assertEquals(battle.getLastEventSeq(), delta.getLastEventSeq());
+        assertEquals(battle.getEventsAfter(0), delta.getEvents());
+        assertEquals(BattleEventType.DEATH,
+                delta.getEvents().get(delta.getEvents().size() - 1).getType());
+        assertEquals(1, battle.getEnemies().size());
+    }
+
+    @Test
+    /*
+    Given loading the Battle with ID "xyz" has to wait on the store
+    When I perform a turn on it asynchronously and the load completes
+    Then the turn should be played on a turn thread, not the loading thread
+     */
+    public void loadedTurnIsPlayedOnTurnExecutor() throws Exception {
+        Battle loaded = new Battle();
+        loaded.setBattleID("xyz");
+        CompletableFuture<Battle> load = new CompletableFuture<>();
+        when(battleCache.getBattleAsync("xyz")).thenReturn(load);
+        doAnswer(invocation -> {
+            assertTrue(Thread.currentThread().getName().startsWith("battle-turn-"));
+            return null;
+        }).when(battleCache).saveBattle(any(Battle.class));
+
+        CompletableFuture<Battle> turn =
+                battleService.performTurnAsync("xyz", BattleAction.DEFEND, 0);
+        load.complete(loaded);
+
+        assertNotNull(turn.get());
+        verify(battleCache).saveBattle(any(Battle.class));
+    }
+
+    @Test
+    /*
+    Given the Battle with ID "xyz" is cached, so loading it completes at once
+    When I perform a turn on it asynchronously
+    Then the turn should still be played on a turn thread, not the caller's
+     */
+    public void cachedTurnIsPlayedOnTurnExecutor() throws Exception {
+        Battle cached = new Battle();
+        cached.setBattleID("xyz");
+        when(battleCache.getBattleAsync("xyz"))
+                .thenReturn(CompletableFuture.completedFuture(cached));
+        doAnswer(invocation -> {
+            assertTrue(Thread.currentThread().getName().startsWith("battle-turn-"));
+            return null;
+        }).when(battleCache).saveBattle(any(Battle.class));
+
+        CompletableFuture<Battle> turn =
+                battleService.performTurnAsync("xyz", BattleAction.DEFEND, 0);
+
+        assertNotNull(turn.get());
+        verify(battleCache).saveBattle(any(Battle.class));
+    }
+
+    @Test
+    /*
+    Given there is no Battle with ID "abc"
+    When I perform a turn on it
+    Then no Battle should be returned
+     */
+    public void turnOnMissingBattle() {
+        assertNull(battleService.performTurn("abc", BattleAction.DEFEND));
+    }
+
+    @Test
+    /*
+    Given there is a Battle with ID "xyz"
+    When I perform a sequence of three turns on it
+    Then every turn should be applied
+    And the Battle should be loaded and saved once
+     */
+    public void turnSequenceSavesOnce() {
+        List<TurnResult> results = battleService.performTurnSequence("xyz",
+                List.of(turn(BattleAction.DEFEND), turn(BattleAction.DEFEND),
+                        turn(BattleAction.DEFEND)));
+
+        assertEquals(3, results.size());
+        results.forEach(result ->
+                assertEquals(TurnResult.Outcome.APPLIED, result.getOutcome()));
+        verify(battleCache, times(1)).getBattle("xyz");
+        verify(battleCache, times(1)).saveBattle(any(Battle.class));
+    }
+
+    @Test
+    /*
+    Given the Battle with ID "won" has already concluded
+    When I perform a sequence of turns on it
+    Then every turn should be skipped
+    And nothing should be saved
+     */
+    public void turnsOnConcludedBattleAreSkipped() {
+        Battle won = new Battle();
+        won.setBattleID("won");
+        won.setStatus(BattleStatus.VICTORY);
+        when(battleCache.getBattle("won")).thenReturn(won);
+
+        List<TurnResult> results = battleService.performTurnSequence("won",
+                List.of(turn(BattleAction.ATTACK), turn(BattleAction.ATTACK)));
+
+        results.forEach(result ->
+                assertEquals(TurnResult.Outcome.SKIPPED, result.getOutcome()));
+        verify(battleCache, never()).saveBattle(any(Battle.class));
+    }
+
+    @Test
+    /*
+    Given there is a Battle with ID "xyz" but none with ID "abc"
+    When I send a batch with turns for both
+    Then the turns on "xyz" should be applied with a single save
+    And the turn on "abc" should be reported as not found
+     */
+    public void batchReportsEachTurn() {
+        when(battleCache.getBattles(any())).thenAnswer(invocation ->
+                Map.of("xyz", battleCache.getBattle("xyz")));
+
+        List<TurnResult> results = battleService.performTurnBatch(List.of(
+                turn("xyz", BattleAction.DEFEND),
+                turn("abc", BattleAction.DEFEND),
+                turn("xyz", BattleAction.DODGE)));
+
+        assertEquals(TurnResult.Outcome.APPLIED, results.get(0).getOutcome());
+        assertEquals(TurnResult.Outcome.NOT_FOUND, results.get(1).getOutcome());
+        assertEquals("abc", results.get(1).getBattleID());
+        assertEquals(TurnResult.Outcome.APPLIED, results.get(2).getOutcome());
+        assertEquals(BattleAction.DODGE, results.get(2).getAction());
+        verify(battleCache, times(1)).saveBattle(any(Battle.class));
+    }
+
+    @Test
+    /*
+    Given a batch holds more turns than allowed
+    When I send it
+    Then it should be rejected without touching any Battle
+     */
+    public void oversizedBatchIsRejected() {
+        List<BattleTurnRequest> turns = new ArrayList<>(Collections.nCopies(
+                BattleService.MAX_BATCH_SIZE + 1, turn("xyz", BattleAction.DEFEND)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> battleService.performTurnBatch(turns));
+        verify(battleCache, never()).getBattles(any());
+    }
+}
@@ -0,0 +1,70 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.simulation.BattleSimulator;
+import com.lucas.restgame.simulation.PlayerPolicy;
+import com.lucas.restgame.simulation.SimulationResult;
+import com.lucas.restgame.simulation.StatBlock;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BattleSimulatorTests {
+
+    private static final StatBlock PLAYER = new StatBlock("Player", 100, 25, 5, 0.5f);
+    private static final StatBlock ENEMY = new StatBlock("Enemy", 100, 25, 5, 0.5f);
+
+    @Test
+    /*
+    Given two simulations with the same seed
+    When they run on pools with different parallelism
+    Then they should produce identical results
+     */
+    public void sameSeedGivesSameResult() {
+        BattleSimulator simulator = new BattleSimulator(
+                PLAYER, ENEMY, PlayerPolicy.uniform(), 200);
+
+        SimulationResult serial = simulator.run(10_000, 42, new ForkJoinPool(1));
+        SimulationResult parallel = simulator.run(10_000, 42, new ForkJoinPool(4));
+
+        assertEquals(serial.toString(), parallel.toString());
+    }
+
+    @Test
+    /*
+    Given a simulation of many battles
+    When it finishes
+    Then every battle should be accounted for exactly once
+     */
+    public void everyBattleIsCounted() {
+        SimulationResult result = new BattleSimulator(
+                PLAYER, ENEMY, PlayerPolicy.uniform(), 200).run(5_000, 7);
+
+        assertEquals(5_000, result.getBattles());
+        long playerActions = 0;
+        for (BattleAction action : BattleAction.values()) {
+            playerActions += result.getPlayerActionCount(action);
+        }
+        assertTrue(playerActions >= 5_000);
+    }
+
+    @Test
+    /*
+    Given the player only ever defends
+    And the enemy has no power to hurt them
+    When battles are simulated
+    Then none should be lost
+     */
+    public void harmlessEnemyNeverWins() {
+        StatBlock harmless = new StatBlock("Dummy", 100, 0, 5, 0.0f);
+        SimulationResult result = new BattleSimulator(
+                PLAYER, harmless, PlayerPolicy.always(BattleAction.DEFEND), 50)
+                .run(1_000, 3);
+
+        assertEquals(0, result.getDefeats());
+        assertEquals(1_000, result.getTimeouts());
+        assertEquals(50_000, result.getPlayerActionCount(BattleAction.DEFEND));
+    }
+}
@@ -0,0 +1,217 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.model.EnemyArchetypes;
+import com.lucas.restgame.repository.BattleRepository;
+import com.lucas.restgame.service.BattleSpawner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class BattleSpawnerTests {
+
+    private BattleRepository battleRepository;
+
+    @BeforeEach
+    public void setup() {
+        battleRepository = mock(BattleRepository.class);
+        // created battles get an ID, like the store would give them
+        when(battleRepository.createBattles(anyCollection())).thenAnswer(invocation -> {
+            List<Battle> created = new ArrayList<>(invocation.<Collection<Battle>>getArgument(0));
+            created.forEach(battle -> battle.setBattleID(UUID.randomUUID().toString()));
+            return created;
+        });
+        when(battleRepository.createBattleAsync(any(Battle.class))).thenAnswer(invocation ->
+                CompletableFuture.completedFuture(invocation.getArgument(0)));
+        when(battleRepository.getBattles(any(), anyInt(), any()))
+                .thenReturn(new BattlePage(List.of(), null));
+    }
+
+    private static void awaitPooled(BattleSpawner spawner, int pooled) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (spawner.getPooledCount() < pooled && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(pooled, spawner.getPooledCount());
+    }
+
+    @Test
+    /*
+    Given pools of four battles per archetype, refilled two at a time
+    When the pools have been filled and I spawn a goblin battle
+    Then it should come from the pool, already created
+    And the pools should have been written in batches of two
+     */
+    public void spawnsComeFromTheFilledPool() throws Exception {
+        BattleSpawner spawner = new BattleSpawner(battleRepository, 4, 2, Duration.ofHours(1));
+        int archetypes = EnemyArchetypes.all().size();
+
+        spawner.fillPools();
+        awaitPooled(spawner, 4 * archetypes);
+        Battle battle = spawner.spawnAsync("goblin").get();
+
+        assertNotNull(battle.getBattleID());
+        assertEquals("goblin", battle.getEnemy(0).getArchetype());
+        assertEquals(1, spawner.getPoolHits());
+        verify(battleRepository, times(2 * archetypes)).createBattles(
+                argThat(batch -> batch.size() == 2));
+        verify(battleRepository, never()).createBattleAsync(any());
+        spawner.shutdown();
+    }
+
+    @Test
+    /*
+    Given the pools are turned off
+    When I spawn a goblin battle
+    Then it should be created directly
+    And be counted as a pool miss
+     */
+    public void emptyPoolCreatesDirectly() throws Exception {
+        BattleSpawner spawner = new BattleSpawner(battleRepository, 0, 2, Duration.ofHours(1));
+
+        Battle battle = spawner.spawnAsync("goblin").get();
+
+        assertEquals("goblin", battle.getEnemy(0).getArchetype());
+        assertEquals(1, spawner.getPoolMisses());
+        verify(battleRepository).createBattleAsync(battle);
+        verify(battleRepository, never()).createBattles(anyCollection());
+    }
+
+    @Test
+    /*
+    Given an archetype that isn't registered
+    When I spawn a battle against it
+    Then it should be rejected
+     */
+    public void unknownArchetypeIsRejected() {
+        BattleSpawner spawner = new BattleSpawner(battleRepository, 0, 2, Duration.ofHours(1));
+
+        assertThrows(IllegalArgumentException.class, () -> spawner.spawnAsync("dragon"));
+    }
+
+    @Test
+    /*
+    Given filled pools
+    When the spawner shuts down
+    Then every pooled battle should be deleted from the store
+     */
+    public void pooledBattlesAreDeletedOnShutdown() throws Exception {
+        BattleSpawner spawner = new BattleSpawner(battleRepository, 2, 2, Duration.ofHours(1));
+        int archetypes = EnemyArchetypes.all().size();
+        spawner.fillPools();
+        awaitPooled(spawner, 2 * archetypes);
+
+        spawner.shutdown();
+
+        assertEquals(0, spawner.getPooledCount());
+        verify(battleRepository, times(2 * archetypes)).deleteBattleByID(anyString());
+    }
+
+    @Test
+    /*
+    Given pools filled with battles stored under a 1 hour TTL
+    When a battle is spawned from one
+    Then the pooled battles should have been stored with an expiry about an hour away
+    And the spawned battle should no longer carry it
+     */
+    public void pooledBattlesAreStoredWithExpiry() throws Exception {
+        List<Battle> stored = new ArrayList<>();
+        when(battleRepository.createBattles(anyCollection())).thenAnswer(invocation -> {
+            List<Battle> created = new ArrayList<>(invocation.<Collection<Battle>>getArgument(0));
+            created.forEach(battle -> battle.setBattleID(UUID.randomUUID().toString()));
+            created.forEach(battle -> stored.add(battle.snapshot()));
+            return created;
+        });
+        BattleSpawner spawner = new BattleSpawner(battleRepository, 1, 1, Duration.ofHours(1));
+        spawner.fillPools();
+        awaitPooled(spawner, EnemyArchetypes.all().size());
+
+        Battle battle = spawner.spawnAsync("goblin").get();
+
+        long expected = Instant.now().plus(Duration.ofHours(1)).getEpochSecond();
+        stored.forEach(pooled -> assertEquals(expected, pooled.getExpiresAt(), 5));
+        assertNull(battle.getExpiresAt());
+        spawner.shutdown();
+    }
+
+    @Test
+    /*
+    Given a pool TTL so short that pooled battles are stale as soon as they're made
+    When I spawn a battle
+    Then the stale pooled battle should be deleted and a new one created instead
+     */
+    public void stalePooledBattlesAreNotHandedOut() throws Exception {
+        BattleSpawner spawner = new BattleSpawner(battleRepository, 1, 1, Duration.ZERO);
+        spawner.fillPools();
+        awaitPooled(spawner, EnemyArchetypes.all().size());
+
+        Battle battle = spawner.spawnAsync("goblin").get();
+
+        assertNull(battle.getBattleID());
+        assertEquals(1, spawner.getPoolMisses());
+        verify(battleRepository, timeout(5000)).deleteBattleByID(anyString());
+        spawner.shutdown();
+    }
+
+    @Test
+    /*
+    Given ongoing Battles in the store, one left expired by a crash while pooled
+    When the expired pooled battles are swept
+    Then only the expired one should be deleted
+     */
+    public void expiredPooledBattlesAreSwept() {
+        Battle orphan = new Battle();
+        orphan.setBattleID("orphan");
+        orphan.setExpiresAt(Instant.now().minusSeconds(60).getEpochSecond());
+        Battle playing = new Battle();
+        playing.setBattleID("playing");
+        when(battleRepository.getBattles(BattleStatus.ONGOING, BattleRepository.MAX_PAGE_SIZE, null))
+                .thenReturn(new BattlePage(List.of(orphan, playing), null));
+        when(battleRepository.deleteBattleByID("orphan")).thenReturn(true);
+        BattleSpawner spawner = new BattleSpawner(battleRepository, 0, 1, Duration.ofHours(1));
+
+        assertEquals(1, spawner.sweepExpired());
+        verify(battleRepository).deleteBattleByID("orphan");
+        verify(battleRepository, never()).deleteBattleByID("playing");
+    }
+
+    @Test
+    /*
+    Given one store that expires battles itself and one that doesn't
+    When the pools are filled at startup
+    Then only the store that doesn't should be swept for expired battles
+     */
+    public void onlyStoresWithoutExpiryAreSwept() throws Exception {
+        when(battleRepository.storeExpiresBattles()).thenReturn(true);
+        BattleSpawner expiring = new BattleSpawner(battleRepository, 0, 2, Duration.ofHours(1));
+        expiring.fillPools();
+        expiring.shutdown();
+        verify(battleRepository, never()).getBattles(any(), anyInt(), any());
+
+        when(battleRepository.storeExpiresBattles()).thenReturn(false);
+        BattleSpawner sweeping = new BattleSpawner(battleRepository, 0, 2, Duration.ofHours(1));
+        sweeping.fillPools();
+
+        verify(battleRepository, timeout(5000)).getBattles(
+                eq(BattleStatus.ONGOING), anyInt(), isNull());
+        sweeping.shutdown();
+    }
+}
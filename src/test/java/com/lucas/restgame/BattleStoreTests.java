@@ -0,0 +1,154 @@
+package com.lucas.restgame;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.model.BattlePage;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.repository.BattleConflictException;
+import com.lucas.restgame.repository.BattleItemCodec;
+import com.lucas.restgame.repository.BattleStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the contract every BattleStore has to meet
+public abstract class BattleStoreTests {
+
+    protected BattleItemCodec codec;
+    protected BattleStore store;
+
+    protected abstract BattleStore createStore() throws Exception;
+
+    @BeforeEach
+    public void setupStore() throws Exception {
+        // the client is never called, the codec only needs the table model
+        codec = new BattleItemCodec(new DynamoDBMapper(AmazonDynamoDBClientBuilder
+                .standard()
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration(
+                                "http://localhost:8000",
+                                "us-east-1"))
+                .build()));
+        store = createStore();
+    }
+
+    protected static Battle newBattle() {
+        return new Battle(new Player(), new Enemy());
+    }
+
+    @Test
+    /*
+    Given a new Battle
+    When it is created and read back
+    Then it should have an ID and version 1
+    And the copy read back should match it
+     */
+    public void createdBattleCanBeRead() {
+        Battle battle = store.createBattle(newBattle());
+
+        Battle loaded = store.getBattleByID(battle.getBattleID());
+
+        assertNotNull(battle.getBattleID());
+        assertEquals(1L, battle.getVersion());
+        assertEquals(battle.getText(), loaded.getText());
+        assertEquals(battle.getPlayer().getHealth(), loaded.getPlayer().getHealth());
+        assertNotSame(battle, loaded);
+    }
+
+    @Test
+    /*
+    Given a stored Battle
+    When it is updated from a copy loaded before another update
+    Then the stale update should conflict
+    And the first update should be kept
+     */
+    public void staleUpdateConflicts() {
+        Battle battle = store.createBattle(newBattle());
+        Battle stale = store.getBattleByID(battle.getBattleID());
+
+        new BattleManager(battle).performTurn(BattleAction.DEFEND);
+        store.updateBattle(battle.getBattleID(), battle);
+
+        assertEquals(2L, battle.getVersion());
+        assertThrows(BattleConflictException.class,
+                () -> store.updateBattle(stale.getBattleID(), stale));
+        assertEquals(battle.getText(),
+                store.getBattleByID(battle.getBattleID()).getText());
+    }
+
+    @Test
+    /*
+    Given a stored Battle
+    When it is deleted
+    Then it should no longer be found
+    And deleting it again should report nothing was deleted
+     */
+    public void deletedBattleIsGone() {
+        Battle battle = store.createBattle(newBattle());
+
+        assertTrue(store.deleteBattleByID(battle.getBattleID()));
+
+        assertNull(store.getBattleByID(battle.getBattleID()));
+        assertFalse(store.deleteBattleByID(battle.getBattleID()));
+        assertThrows(BattleConflictException.class,
+                () -> store.updateBattle(battle.getBattleID(), battle));
+    }
+
+    @Test
+    /*
+    Given some ongoing and some concluded Battles
+    When I page through the concluded ones
+    Then every concluded Battle should be returned exactly once
+     */
+    public void pagesFilterByStatus() {
+        Set<String> concluded = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            Battle battle = store.createBattle(newBattle());
+            if (i % 2 == 0) {
+                battle.setStatus(BattleStatus.VICTORY);
+                store.updateBattle(battle.getBattleID(), battle);
+                concluded.add(battle.getBattleID());
+            }
+        }
+
+        List<String> seen = new ArrayList<>();
+        String token = null;
+        do {
+            BattlePage page = store.getBattles(BattleStatus.VICTORY, 2, token);
+            page.getBattles().forEach(battle -> seen.add(battle.getBattleID()));
+            token = page.getNextToken();
+        } while (token != null);
+
+        assertEquals(concluded.size(), seen.size());
+        assertEquals(concluded, new HashSet<>(seen));
+    }
+
+    @Test
+    /*
+    Given some stored Battles
+    When I ask for them along with one that doesn't exist
+    Then only the stored ones should be returned
+     */
+    public void batchReadSkipsMissing() {
+        Battle first = store.createBattle(newBattle());
+        Battle second = store.createBattle(newBattle());
+
+        Map<String, Battle> found = store.getBattlesByID(
+                List.of(first.getBattleID(), second.getBattleID(), "missing"));
+
+        assertEquals(Set.of(first.getBattleID(), second.getBattleID()), found.keySet());
+    }
+}
@@ -0,0 +1,148 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.BattleEvent;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleEventType;
+import com.lucas.restgame.model.BattleManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BattleTests {
+
+    private static BattleEvent nothing() {
+        return new BattleEvent(BattleEventType.NOTHING, null, null, null, 0);
+    }
+
+    @Test
+    /*
+    Given a Battle has logged more events than it retains
+    When I read its events
+    Then only the most recent events should remain
+    And sequence numbers should keep counting
+     */
+    public void eventLogIsCapped() {
+        Battle battle = new Battle();
+        for (int i = 0; i < Battle.MAX_EVENTS + 10; i++) {
+            battle.addEvent(nothing());
+        }
+
+        List<BattleEvent> events = battle.getEvents();
+        assertEquals(Battle.MAX_EVENTS, events.size());
+        assertEquals(11, events.get(0).getSeq());
+        assertEquals(Battle.MAX_EVENTS + 10, battle.getLastEventSeq());
+    }
+
+    @Test
+    /*
+    Given a Battle has logged several events
+    When I ask for the events after a sequence number
+    Then only newer events should be returned
+     */
+    public void eventsAfterSequence() {
+        Battle battle = new Battle();
+        for (int i = 0; i < 5; i++) {
+            battle.addEvent(nothing());
+        }
+
+        List<BattleEvent> events = battle.getEventsAfter(3);
+        assertEquals(2, events.size());
+        assertEquals(4, events.get(0).getSeq());
+        assertTrue(battle.getEventsAfter(5).isEmpty());
+    }
+
+    @Test
+    /*
+    Given a Battle has logged an action and a hit
+    When I read its text
+    Then each event should be rendered on its own line
+     */
+    public void textIsRenderedFromEvents() {
+        Player player = new Player();
+        Enemy enemy = new Enemy();
+        Battle battle = new Battle(player, enemy);
+        battle.addEvent(new BattleEvent(
+                BattleEventType.ACTION, "Player", null, BattleAction.ATTACK, 0));
+        battle.addEvent(new BattleEvent(
+                BattleEventType.DAMAGE, "Player", "Enemy", null, 20));
+
+        assertEquals("Player uses ATTACK!\nPlayer hits Enemy for 20 damage!",
+                battle.getText());
+    }
+
+    @Test
+    /*
+    Given two Battles that share a random seed and position
+    When the same actions are played in both
+    Then they should play out identically
+     */
+    public void sameSeedReplaysTurns() {
+        Battle original = new Battle(new Player(), new Enemy());
+        for (int i = 0; i < 3; i++) {
+            new BattleManager(original).performTurn(BattleAction.DEFEND);
+        }
+        Battle replay = new Battle(new Player(), new Enemy());
+        replay.setRandomSeed(original.getRandomSeed());
+        replay.setRandomPosition(0);
+        for (int i = 0; i < 3; i++) {
+            new BattleManager(replay).performTurn(BattleAction.DEFEND);
+        }
+
+        assertEquals(original.getText(), replay.getText());
+        assertEquals(original.getRandomPosition(), replay.getRandomPosition());
+    }
+
+    @Test
+    /*
+    Given a Battle has played some turns
+    When a copy resumes from its saved seed and position
+    Then the next turn should match the original's
+     */
+    public void savedPositionResumesSequence() {
+        Battle original = new Battle(new Player(), new Enemy());
+        new BattleManager(original).performTurn(BattleAction.DODGE);
+        Battle copy = new Battle(new Player(), new Enemy());
+        copy.getPlayer().setHealth(original.getPlayer().getHealth());
+        copy.getEnemy(0).setHealth(original.getEnemy(0).getHealth());
+        copy.setPriority(original.getPriority());
+        copy.setRandomSeed(original.getRandomSeed());
+        copy.setRandomPosition(original.getRandomPosition());
+
+        new BattleManager(original).performTurn(BattleAction.ATTACK);
+        new BattleManager(copy).performTurn(BattleAction.ATTACK);
+
+        assertEquals(original.getPlayer().getHealth(), copy.getPlayer().getHealth());
+        assertEquals(original.getEnemy(0).getHealth(), copy.getEnemy(0).getHealth());
+        assertEquals(original.getEvents().get(original.getEvents().size() - 1).render(),
+                copy.getEvents().get(copy.getEvents().size() - 1).render());
+    }
+
+    @Test
+    /*
+    Given a snapshot of a Battle
+    When turns are played on the Battle
+    Then the snapshot should keep the state it was taken in
+     */
+    public void snapshotIsUnaffectedByLaterTurns() {
+        Battle battle = new Battle(new Player(), new Enemy());
+        battle.setBattleID("xyz");
+        Battle snapshot = battle.snapshot();
+
+        for (int i = 0; i < 3; i++) {
+            new BattleManager(battle).performTurn(BattleAction.ATTACK);
+        }
+
+        assertEquals("xyz", snapshot.getBattleID());
+        assertEquals(100, snapshot.getPlayer().getHealth());
+        assertEquals(new Enemy().getHealth(), snapshot.getEnemy(0).getHealth());
+        assertEquals(0, snapshot.getLastEventSeq());
+        assertTrue(snapshot.getEvents().isEmpty());
+        assertEquals(battle.getRandomSeed(), snapshot.getRandomSeed());
+        assertNotEquals(battle.getRandomPosition(), snapshot.getRandomPosition());
+    }
+}
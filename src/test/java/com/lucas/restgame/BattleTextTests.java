@@ -0,0 +1,86 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.entity.BattleEvent;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleEventType;
+import com.lucas.restgame.model.BattleText;
+import com.lucas.restgame.model.MessageTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BattleTextTests {
+
+    @Test
+    /*
+    Given an event of every type
+    When each is rendered from its compiled template
+    Then the text should be what String.format gives for the template
+     */
+    public void compiledTemplatesMatchFormat() {
+        for (BattleEventType type : BattleEventType.values()) {
+            BattleEvent event = new BattleEvent(type, "Player", "Goblin", BattleAction.SPELL, 12);
+            assertEquals(String.format(type.getTemplate(), "Player", "Goblin",
+                    BattleAction.SPELL, 12), event.render(), type.name());
+        }
+    }
+
+    @Test
+    /*
+    Given more distinct locales than are remembered, most with no bundle
+    When events are rendered in each of them
+    Then French ones should still use the French templates
+    And the rest should fall back to English
+     */
+    public void manyLocalesStillResolve() {
+        BattleEvent event = new BattleEvent(BattleEventType.DEFEAT, null, null, null, 0);
+
+        for (int i = 0; i < 1000; i++) {
+            String region = String.format("%03d", i);
+            assertEquals("La bataille est perdue.",
+                    BattleText.render(event, Locale.forLanguageTag("fr-" + region)));
+            assertEquals("The battle is lost.",
+                    BattleText.render(event, Locale.forLanguageTag("de-" + region)));
+        }
+    }
+
+    @Test
+    /*
+    Given events rendered in French, Canadian French and German
+    When there are only French templates
+    Then Canadian French should use them too
+    And German should fall back to English
+     */
+    public void localeFallsBackToEnglish() {
+        List<BattleEvent> events = List.of(
+                new BattleEvent(BattleEventType.ACTION, "Player", null, BattleAction.ATTACK, 0),
+                new BattleEvent(BattleEventType.DEFEAT, null, null, null, 0));
+
+        String french = "Player utilise ATTACK !\nLa bataille est perdue.";
+        assertEquals(french, BattleText.render(events, Locale.FRENCH));
+        assertEquals(french, BattleText.render(events, Locale.CANADA_FRENCH));
+        assertEquals("Player uses ATTACK!\nThe battle is lost.",
+                BattleText.render(events, Locale.GERMAN));
+    }
+
+    @Test
+    /*
+    Given templates with placeholders other than %1$s to %4$d
+    When they are compiled
+    Then they should be rejected
+    And %% should render as a percent sign
+     */
+    public void unsupportedPlaceholdersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("%s wins"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("%5$s"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("%1$d"));
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplate.compile("100%"));
+
+        StringBuilder text = new StringBuilder();
+        MessageTemplate.compile("%1$s is at %4$d%%").renderTo(text, "Goblin", null, null, 40);
+        assertEquals("Goblin is at 40%", text.toString());
+    }
+}
@@ -0,0 +1,187 @@
+package com.lucas.restgame;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.AttributeTransformer;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Goblin;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.repository.CompactItemTransformer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactItemTransformerTests {
+
+    private DynamoDBMapperTableModel<Battle> tableModel;
+    private CompactItemTransformer transformer;
+    private Battle battle;
+
+    private static AttributeTransformer.Parameters<Battle> parameters(
+            Map<String, AttributeValue> values) {
+        return new AttributeTransformer.Parameters<>() {
+            public Map<String, AttributeValue> getAttributeValues() { return values; }
+            public boolean isPartialUpdate() { return false; }
+            public Class<Battle> getModelClass() { return Battle.class; }
+            public DynamoDBMapperConfig getMapperConfig() { return DynamoDBMapperConfig.DEFAULT; }
+            public String getTableName() { return "battles"; }
+            public String getHashKeyName() { return "battleID"; }
+            public String getRangeKeyName() { return null; }
+        };
+    }
+
+    // roughly how DynamoDB sizes an item: names plus values, nesting included
+    private static int itemSize(Map<String, AttributeValue> item) {
+        int size = 0;
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            size += entry.getKey().getBytes(StandardCharsets.UTF_8).length
+                    + valueSize(entry.getValue());
+        }
+        return size;
+    }
+
+    private static int valueSize(AttributeValue value) {
+        if (value.getS() != null) {
+            return value.getS().getBytes(StandardCharsets.UTF_8).length;
+        } else if (value.getN() != null) {
+            return value.getN().length();
+        } else if (value.getB() != null) {
+            return value.getB().remaining();
+        } else if (value.getM() != null) {
+            return 3 + itemSize(value.getM());
+        } else if (value.getL() != null) {
+            int size = 3;
+            for (AttributeValue element : value.getL()) {
+                size += 1 + valueSize(element);
+            }
+            return size;
+        }
+        return 1;
+    }
+
+    @BeforeEach
+    public void setup() {
+        // the client is never called, it only has to exist
+        DynamoDBMapper mapper = new DynamoDBMapper(AmazonDynamoDBClientBuilder
+                .standard()
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration(
+                                "http://localhost:8000",
+                                "us-east-1"))
+                .build());
+        tableModel = mapper.getTableModel(Battle.class);
+        transformer = new CompactItemTransformer(Set.of("status", "version"));
+
+        battle = new Battle(new Player(), new Enemy());
+        battle.addEnemy(new Goblin());
+        battle.setBattleID("xyz");
+        battle.setVersion(7L);
+        for (int i = 0; i < 20; i++) {
+            battle.getPlayer().setHealth(100);
+            new BattleManager(battle).performTurn(BattleAction.DEFEND);
+        }
+    }
+
+    @Test
+    /*
+    Given a Battle partway through a fight
+    When it is packed and unpacked again
+    Then every attribute should be restored
+     */
+    public void packedBattleRoundTrips() {
+        Map<String, AttributeValue> item = tableModel.convert(battle);
+
+        Map<String, AttributeValue> packed = transformer.transform(parameters(item));
+        Map<String, AttributeValue> unpacked = transformer.untransform(parameters(packed));
+
+        assertEquals(item, unpacked);
+        Battle loaded = tableModel.unconvert(unpacked);
+        assertEquals(battle.getText(), loaded.getText());
+        assertEquals(battle.getRandomPosition(), loaded.getRandomPosition());
+    }
+
+    @Test
+    /*
+    Given a Battle is packed
+    When I look at the stored attributes
+    Then the key, status index key and version should be readable as before
+    And everything else should be in the state attribute
+    And the item should be smaller than in the document format
+     */
+    public void keysStayTopLevel() {
+        Map<String, AttributeValue> item = tableModel.convert(battle);
+
+        Map<String, AttributeValue> packed = transformer.transform(parameters(item));
+
+        assertEquals(Set.of("battleID", "status", "version",
+                CompactItemTransformer.STATE_ATTRIBUTE), packed.keySet());
+        assertEquals("7", packed.get("version").getN());
+        assertTrue(itemSize(packed) < itemSize(item) / 2);
+    }
+
+    @Test
+    /*
+    Given an item written in the document format
+    When it is read with the transformer
+    Then it should be returned unchanged
+     */
+    public void documentItemsAreReadAsTheyAre() {
+        Map<String, AttributeValue> item = tableModel.convert(battle);
+
+        assertEquals(item, transformer.untransform(parameters(item)));
+    }
+
+    @Test
+    /*
+    Given a packed item holds an attribute the model doesn't know about
+    When it is unpacked
+    Then that attribute should come back too
+     */
+    public void unknownAttributesSurvive() {
+        Map<String, AttributeValue> item = new HashMap<>(tableModel.convert(battle));
+        item.put("addedLater", new AttributeValue().withS("new value"));
+
+        Map<String, AttributeValue> unpacked = transformer.untransform(
+                parameters(transformer.transform(parameters(item))));
+
+        assertEquals("new value", unpacked.get("addedLater").getS());
+    }
+
+    @Test
+    /*
+    Given an item packed in version 1 of the format
+    When it is unpacked
+    Then its strings should be read against the version 1 dictionary
+     */
+    public void versionOneItemsStillDecode() {
+        byte[] state = {
+                1, 7, 2,
+                // "note" is the first string after the 38 in the dictionary
+                0, 4, 'n', 'o', 't', 'e', 5, 39,
+                // "health", then 5 as a zigzag varint
+                9, 3, 10};
+        Map<String, AttributeValue> item = Map.of(
+                "battleID", new AttributeValue().withS("xyz"),
+                CompactItemTransformer.STATE_ATTRIBUTE,
+                new AttributeValue().withB(ByteBuffer.wrap(state)));
+
+        Map<String, AttributeValue> unpacked = transformer.untransform(parameters(item));
+
+        assertEquals("note", unpacked.get("note").getS());
+        assertEquals("5", unpacked.get("health").getN());
+    }
+}
@@ -0,0 +1,138 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleManager;
+import com.lucas.restgame.repository.BattleStore;
+import com.lucas.restgame.repository.DiskBattleStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskBattleStoreTests extends BattleStoreTests {
+
+    @TempDir
+    Path directory;
+
+    private DiskBattleStore diskStore;
+
+    @Override
+    protected BattleStore createStore() throws IOException {
+        diskStore = new DiskBattleStore(codec, directory.toString(), false);
+        return diskStore;
+    }
+
+    @AfterEach
+    public void closeStore() throws IOException {
+        diskStore.close();
+    }
+
+    private void reopen() throws IOException {
+        diskStore.close();
+        store = createStore();
+    }
+
+    @Test
+    /*
+    Given Battles that were created, updated and deleted
+    When the store is reopened
+    Then the latest version of every remaining Battle should be read back
+     */
+    public void battlesSurviveReopening() throws IOException {
+        Battle kept = store.createBattle(newBattle());
+        Battle deleted = store.createBattle(newBattle());
+        new BattleManager(kept).performTurn(BattleAction.DEFEND);
+        store.updateBattle(kept.getBattleID(), kept);
+        store.deleteBattleByID(deleted.getBattleID());
+
+        reopen();
+
+        Battle loaded = store.getBattleByID(kept.getBattleID());
+        assertEquals(kept.getText(), loaded.getText());
+        assertEquals(2L, loaded.getVersion());
+        assertNull(store.getBattleByID(deleted.getBattleID()));
+        store.updateBattle(loaded.getBattleID(), loaded);
+    }
+
+    @Test
+    /*
+    Given a Battle updated many times
+    When the log is compacted
+    Then the log should shrink
+    And the Battle should still be read back, before and after reopening
+     */
+    public void compactionKeepsLatestVersions() throws IOException {
+        Battle battle = store.createBattle(newBattle());
+        for (int i = 0; i < 50; i++) {
+            battle.getPlayer().setHealth(100);
+            new BattleManager(battle).performTurn(BattleAction.DEFEND);
+            store.updateBattle(battle.getBattleID(), battle);
+        }
+        long before = diskStore.logSize();
+
+        diskStore.compact();
+
+        assertTrue(diskStore.logSize() < before / 10);
+        assertEquals(battle.getText(), store.getBattleByID(battle.getBattleID()).getText());
+        store.updateBattle(battle.getBattleID(), battle);
+        reopen();
+        assertEquals(52L, store.getBattleByID(battle.getBattleID()).getVersion());
+    }
+
+    @Test
+    /*
+    Given a write that was torn partway through by a crash
+    When the store is reopened
+    Then the Battles written before it should be read back
+    And new writes should succeed and survive another reopening
+     */
+    public void tornWriteIsDiscarded() throws IOException {
+        Battle battle = store.createBattle(newBattle());
+        store.createBattle(newBattle());
+        long tornAt = diskStore.logSize();
+        diskStore.close();
+        // a record header and half a record's worth of nonsense
+        try (FileChannel log = FileChannel.open(directory.resolve("battles.log"),
+                StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(64);
+            torn.putInt(200).putInt(12345);
+            torn.rewind();
+            log.write(torn, tornAt);
+        }
+
+        store = createStore();
+
+        assertNotNull(store.getBattleByID(battle.getBattleID()));
+        assertEquals(tornAt, diskStore.logSize());
+        Battle created = store.createBattle(newBattle());
+        reopen();
+        assertNotNull(store.getBattleByID(created.getBattleID()));
+    }
+
+    @Test
+    /*
+    Given a Battle whose ID is longer than a log record can hold
+    When it is created
+    Then it should be rejected
+    And the Battles logged before it should survive reopening
+     */
+    public void oversizedIDIsRejected() throws IOException {
+        Battle kept = store.createBattle(newBattle());
+        Battle oversized = newBattle();
+        oversized.setBattleID("x".repeat(70_000));
+
+        assertThrows(IllegalArgumentException.class, () -> store.createBattle(oversized));
+        reopen();
+
+        assertNotNull(store.getBattleByID(kept.getBattleID()));
+        assertNull(store.getBattleByID(oversized.getBattleID()));
+    }
+}
@@ -0,0 +1,154 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.entity.TurnRecord;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleStatus;
+import com.lucas.restgame.repository.BattleConflictException;
+import com.lucas.restgame.repository.DiskTurnLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskTurnLogTests {
+
+    @TempDir
+    Path directory;
+
+    private DiskTurnLog turnLog;
+
+    @BeforeEach
+    public void open() throws IOException {
+        turnLog = new DiskTurnLog(directory.toString(), false);
+    }
+
+    @AfterEach
+    public void close() throws IOException {
+        turnLog.close();
+    }
+
+    private void reopen() throws IOException {
+        turnLog.close();
+        open();
+    }
+
+    private static TurnRecord record(String battleID, long turn, BattleAction action) {
+        TurnRecord record = new TurnRecord();
+        record.setBattleID(battleID);
+        record.setTurn(turn);
+        record.setAction(action);
+        record.setHealth(List.of(90, 0));
+        record.setStatus(BattleStatus.ONGOING);
+        return record;
+    }
+
+    @Test
+    /*
+    Given turns of two Battles were appended, after the start of one
+    When the log is reopened
+    Then each Battle's turns after a given turn should be read back in order
+    And the start should keep its encoded Battle
+    And appending a turn that's already there should conflict
+     */
+    public void turnsSurviveReopening() throws IOException {
+        TurnRecord origin = record("a", 0, null);
+        origin.setOrigin(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+        turnLog.append(origin);
+        turnLog.append(record("a", 1, BattleAction.ATTACK));
+        turnLog.append(record("b", 1, BattleAction.DODGE));
+        turnLog.append(record("a", 2, BattleAction.DEFEND));
+        turnLog.append(record("a", 3, BattleAction.SPELL));
+
+        reopen();
+
+        List<TurnRecord> tail = turnLog.readAfter("a", 1);
+        assertEquals(List.of(2L, 3L), tail.stream().map(TurnRecord::getTurn).toList());
+        assertEquals(BattleAction.SPELL, tail.get(1).getAction());
+        assertEquals(List.of(90, 0), tail.get(1).getHealth());
+        assertEquals(1, turnLog.readAfter("b", 0).size());
+        assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}),
+                turnLog.readAfter("a", -1).get(0).getOrigin());
+        assertNull(tail.get(0).getOrigin());
+        assertTrue(turnLog.readAfter("c", 0).isEmpty());
+        assertThrows(BattleConflictException.class,
+                () -> turnLog.append(record("a", 2, BattleAction.ATTACK)));
+    }
+
+    @Test
+    /*
+    Given the last append was torn by a crash
+    When the log is reopened
+    Then the turns before it should be kept
+    And the next append should take its place
+     */
+    public void tornAppendIsDiscarded() throws IOException {
+        turnLog.append(record("a", 1, BattleAction.ATTACK));
+        turnLog.append(record("a", 2, BattleAction.DEFEND));
+        turnLog.close();
+        try (FileChannel channel = FileChannel.open(directory.resolve("turns.log"),
+                StandardOpenOption.WRITE)) {
+            // a header promising more than was written
+            channel.write(ByteBuffer.allocate(8).putInt(500).putInt(0).flip(), channel.size());
+        }
+
+        open();
+        turnLog.append(record("a", 3, BattleAction.DODGE));
+        reopen();
+
+        assertEquals(3, turnLog.readAfter("a", 0).size());
+    }
+
+    @Test
+    /*
+    Given turns of two Battles were appended
+    When one Battle's turns are deleted and the log is reopened
+    Then only the other Battle's turns should be left
+     */
+    public void deletedTurnsStayDeleted() throws IOException {
+        turnLog.append(record("a", 1, BattleAction.ATTACK));
+        turnLog.append(record("a", 2, BattleAction.DEFEND));
+        turnLog.append(record("b", 1, BattleAction.DODGE));
+
+        turnLog.delete("a");
+        assertTrue(turnLog.readAfter("a", 0).isEmpty());
+        reopen();
+
+        assertTrue(turnLog.readAfter("a", 0).isEmpty());
+        assertEquals(1, turnLog.readAfter("b", 0).size());
+    }
+
+    @Test
+    /*
+    Given a Battle has turn 3 in the log
+    When turns 2 to 4 are appended together, and then turns 2 and 4
+    Then the first append should conflict and leave nothing behind
+    And the second should be read back in order, also after reopening
+     */
+    public void turnsAppendedTogetherGoInWhole() throws IOException {
+        turnLog.append(record("a", 1, BattleAction.ATTACK));
+        turnLog.append(record("a", 3, BattleAction.DODGE));
+
+        assertThrows(BattleConflictException.class, () -> turnLog.appendAll(List.of(
+                record("a", 2, BattleAction.DEFEND), record("a", 3, BattleAction.DEFEND),
+                record("a", 4, BattleAction.DEFEND))));
+        assertEquals(List.of(1L, 3L),
+                turnLog.readAfter("a", 0).stream().map(TurnRecord::getTurn).toList());
+
+        turnLog.appendAll(List.of(
+                record("a", 2, BattleAction.SPELL), record("a", 4, BattleAction.DEFEND)));
+        reopen();
+
+        assertEquals(List.of(BattleAction.ATTACK, BattleAction.SPELL, BattleAction.DODGE,
+                        BattleAction.DEFEND),
+                turnLog.readAfter("a", 0).stream().map(TurnRecord::getAction).toList());
+    }
+}
@@ -0,0 +1,167 @@
+package com.lucas.restgame;
+
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lucas.restgame.entity.Battle;
+import com.lucas.restgame.entity.Enemy;
+import com.lucas.restgame.entity.Goblin;
+import com.lucas.restgame.entity.Player;
+import com.lucas.restgame.model.AliasTable;
+import com.lucas.restgame.model.BattleAction;
+import com.lucas.restgame.model.BattleRandom;
+import com.lucas.restgame.model.EnemyArchetype;
+import com.lucas.restgame.model.EnemyArchetypes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnemyArchetypesTests {
+
+    private DynamoDBMapperTableModel<Battle> tableModel;
+
+    @BeforeEach
+    public void setup() {
+        // the client is never called, it only has to exist
+        DynamoDBMapper mapper = new DynamoDBMapper(AmazonDynamoDBClientBuilder
+                .standard()
+                .withEndpointConfiguration(
+                        new AwsClientBuilder.EndpointConfiguration(
+                                "http://localhost:8000",
+                                "us-east-1"))
+                .build());
+        tableModel = mapper.getTableModel(Battle.class);
+    }
+
+    @Test
+    /*
+    Given the archetypes on the classpath
+    When I create a Goblin
+    Then it should have the goblin's stats from the file
+     */
+    public void goblinStatsComeFromTheRegistry() {
+        Enemy goblin = new Goblin();
+
+        assertEquals("goblin", goblin.getArchetype());
+        assertEquals("Goblin", goblin.getName());
+        assertEquals(80, goblin.getHealth());
+        assertEquals(20, goblin.getPower());
+        assertEquals(5, goblin.getDefense());
+        assertEquals(0.5f, goblin.getDodgeChance());
+    }
+
+    @Test
+    /*
+    Given the goblin archetype
+    When it picks many actions
+    Then each action should come up in proportion to its weight
+    And an action without weight should never come up
+     */
+    public void actionsFollowTheirWeights() {
+        EnemyArchetype goblin = EnemyArchetypes.get("goblin");
+        BattleRandom random = new BattleRandom(42);
+        Map<BattleAction, Integer> counts = new EnumMap<>(BattleAction.class);
+        int samples = 100_000;
+
+        for (int i = 0; i < samples; i++) {
+            counts.merge(goblin.sampleAction(random), 1, Integer::sum);
+        }
+
+        assertEquals(0.5, counts.get(BattleAction.ATTACK) / (double) samples, 0.01);
+        assertEquals(0.3, counts.get(BattleAction.DEFEND) / (double) samples, 0.01);
+        assertEquals(0.2, counts.get(BattleAction.DODGE) / (double) samples, 0.01);
+        assertNull(counts.get(BattleAction.SPELL));
+    }
+
+    @Test
+    /*
+    Given weights that are all zero
+    When an AliasTable is built from them
+    Then it should be rejected
+     */
+    public void zeroWeightsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AliasTable(new double[] {0, 0, 0}));
+    }
+
+    @Test
+    /*
+    Given a Battle with a wounded goblin
+    When it is stored and loaded
+    Then the enemy should still be a goblin with its health
+    And only the archetype and health should have been stored for it
+     */
+    public void storedEnemyKeepsItsArchetype() {
+        Enemy goblin = new Goblin();
+        goblin.setHealth(35);
+        Battle battle = new Battle(new Player(), goblin);
+        battle.setBattleID("xyz");
+
+        Map<String, AttributeValue> item = tableModel.convert(battle);
+        Battle loaded = tableModel.unconvert(item);
+
+        Map<String, AttributeValue> stored = item.get("enemies").getL().get(0).getM();
+        assertEquals(Map.of("archetype", new AttributeValue().withS("goblin"),
+                "health", new AttributeValue().withN("35")), stored);
+        Enemy enemy = loaded.getEnemy(0);
+        assertEquals("goblin", enemy.getArchetype());
+        assertEquals("Goblin", enemy.getName());
+        assertEquals(35, enemy.getHealth());
+        assertEquals(20, enemy.getPower());
+    }
+
+    @Test
+    /*
+    Given an enemy stored before archetypes, with all of its stats
+    When it is loaded
+    Then it should get the default archetype
+    And keep the stats it was stored with
+     */
+    public void enemiesWithoutArchetypeKeepTheirStats() {
+        Map<String, AttributeValue> item = new HashMap<>(tableModel.convert(
+                new Battle(new Player(), new Enemy())));
+        Map<String, AttributeValue> legacy = Map.of(
+                "name", new AttributeValue().withS("Goblin"),
+                "health", new AttributeValue().withN("80"),
+                "power", new AttributeValue().withN("20"),
+                "defense", new AttributeValue().withN("5"),
+                "dodgeChance", new AttributeValue().withN("0.5"));
+        item.put("enemies", new AttributeValue().withL(new AttributeValue().withM(legacy)));
+
+        Enemy enemy = tableModel.unconvert(item).getEnemy(0);
+
+        assertEquals(EnemyArchetypes.DEFAULT_ID, enemy.getArchetype());
+        assertEquals("Goblin", enemy.getName());
+        assertEquals(80, enemy.getHealth());
+        assertEquals(20, enemy.getPower());
+    }
+
+    @Test
+    /*
+    Given a client sends an enemy as only an archetype
+    When it is read as JSON
+    Then it should have the archetype's stats
+    And they should be written back out with the archetype
+     */
+    public void enemiesCanBeSentByArchetype() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Enemy goblin = objectMapper.readValue("{\"archetype\":\"goblin\"}", Enemy.class);
+        Map<?, ?> json = objectMapper.readValue(
+                objectMapper.writeValueAsString(goblin), Map.class);
+
+        assertEquals("Goblin", goblin.getName());
+        assertEquals(80, goblin.getHealth());
+        assertEquals("goblin", json.get("archetype"));
+        assertEquals(20, json.get("power"));
+        assertFalse(json.containsKey("changedPower"));
+    }
+}
@@ -0,0 +1,12 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.repository.BattleStore;
+import com.lucas.restgame.repository.InMemoryBattleStore;
+
+public class InMemoryBattleStoreTests extends BattleStoreTests {
+
+    @Override
+    protected BattleStore createStore() {
+        return new InMemoryBattleStore(codec);
+    }
+}
@@ -0,0 +1,70 @@
+package com.lucas.restgame;
+
+import com.lucas.restgame.config.VirtualThreads;
+import com.lucas.restgame.repository.StoreExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoreExecutorTests {
+
+    @Test
+    /*
+    Given a store executor with one thread and room for one queued call
+    When a third call arrives while the first is still running
+    Then it should be rejected
+    And calls should be accepted again once the first finishes
+     */
+    public void saturatedExecutorRejectsCalls() throws Exception {
+        StoreExecutor executor = new StoreExecutor(1, 1, false);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> running = CompletableFuture.runAsync(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor);
+            CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> { }, executor);
+
+            assertThrows(RejectedExecutionException.class,
+                    () -> CompletableFuture.runAsync(() -> { }, executor));
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+            CompletableFuture.runAsync(() -> { }, executor).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    /*
+    Given virtual threads are switched on
+    When the store executor is created
+    Then it should run calls on virtual threads on Java 21 and later
+    And refuse to start on older versions
+     */
+    public void virtualModeNeedsJava21() throws Exception {
+        if (!VirtualThreads.isSupported()) {
+            assertThrows(IllegalStateException.class, () -> new StoreExecutor(1, 1, true));
+            return;
+        }
+        StoreExecutor executor = new StoreExecutor(1, 1, true);
+        try {
+            Boolean virtual = CompletableFuture.supplyAsync(
+                    () -> Thread.currentThread().toString().startsWith("VirtualThread"),
+                    executor).get(5, TimeUnit.SECONDS);
+            assertTrue(virtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}